@@ -1,12 +1,24 @@
 package io.github.artlibs.autotrace4j;
 
+import io.github.artlibs.autotrace4j.context.DefaultIdGenerator;
+import io.github.artlibs.autotrace4j.context.IdGenerator;
 import io.github.artlibs.autotrace4j.context.TraceContext;
+import io.github.artlibs.autotrace4j.context.TraceSnapshot;
 import io.github.artlibs.autotrace4j.exception.LoadInterceptorException;
 import io.github.artlibs.autotrace4j.logger.Logger;
 import io.github.artlibs.autotrace4j.logger.LoggerFactory;
 import io.github.artlibs.autotrace4j.transformer.At4jTransformer;
+import io.github.artlibs.autotrace4j.transformer.ClassNamePrefilter;
+import io.github.artlibs.autotrace4j.transformer.CombinedTransformer;
+import io.github.artlibs.autotrace4j.transformer.ParallelDiscovery;
+import io.github.artlibs.autotrace4j.transformer.TransformCache;
 import io.github.artlibs.autotrace4j.transformer.TransformListener;
+import io.github.artlibs.autotrace4j.transformer.TransformProfiler;
+import io.github.artlibs.autotrace4j.transformer.TypePoolCache;
+import io.github.artlibs.autotrace4j.transformer.abs.AbsDelegateTransformer;
+import io.github.artlibs.autotrace4j.support.ClassIndex;
 import io.github.artlibs.autotrace4j.support.ClassUtils;
+import io.github.artlibs.autotrace4j.support.Constants;
 import io.github.artlibs.autotrace4j.support.ModuleUtils;
 import net.bytebuddy.agent.builder.AgentBuilder;
 
@@ -17,7 +29,6 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
-import static net.bytebuddy.matcher.ElementMatchers.nameStartsWith;
 import static io.github.artlibs.autotrace4j.logger.LoggerFactory.getLogFileDirectory;
 import static io.github.artlibs.autotrace4j.logger.LoggerFactory.loggerEnabled;
 
@@ -89,38 +100,101 @@ public final class AutoTrace4j {
                 logger.debug("已开启[autotrace4j]日志：" + getLogFileDirectory());
             }
 
-            AgentBuilder builder = this.newAgentBuilder();
-            for (At4jTransformer transformer : loadTransformers()) {
-                builder = builder.type(transformer.typeMatcher()).transform(transformer);
+            this.initIdGenerator();
+
+            List<At4jTransformer> transformers = loadTransformers();
+            TransformProfiler profiler = TransformProfiler.create();
+            TransformCache cache = TransformCache.create(transformers);
+            TypePoolCache typePoolCache = TypePoolCache.create();
+            ClassNamePrefilter prefilter = ClassNamePrefilter.create(transformers,
+                    "jdk.jfr.", "com.intellij.rt.", AutoTrace4j.class.getPackage().getName());
+            if (Objects.nonNull(profiler)) {
+                profiler.prefilter(prefilter);
+                if (Objects.nonNull(typePoolCache)) {
+                    profiler.typePoolCache(typePoolCache);
+                }
+            }
+            // all transformers share one combined type matcher, see CombinedTransformer
+            CombinedTransformer transformer = new CombinedTransformer(transformers, profiler);
+            this.newAgentBuilder(profiler, cache, typePoolCache, prefilter, transformer)
+                    .type(transformer).transform(transformer)
+                    .installOn(instrument);
+            if (Objects.nonNull(profiler)) {
+                profiler.installed();
+            }
+            if (Objects.nonNull(cache)) {
+                cache.installed();
             }
-            builder.installOn(instrument);
+            if (Objects.nonNull(typePoolCache)) {
+                typePoolCache.installed();
+            }
+            prefilter.installed();
 
             // init trace for main thread.
-            TraceContext.setSpanId(TraceContext.generate());
-            TraceContext.setTraceId(TraceContext.generate());
+            TraceContext.restore(TraceSnapshot.newTrace());
+        }
+
+        /**
+         * 根据系统属性设置ID生成器：default、w3c 或自定义实现类的全限定名，
+         * 自定义实现类加载失败时使用默认生成器
+         */
+        private void initIdGenerator() {
+            String name = System.getProperty(Constants.SYSTEM_PROPERTY_ID_GENERATOR);
+            if (Objects.isNull(name) || name.trim().isEmpty()) {
+                return;
+            }
+
+            IdGenerator generator = DefaultIdGenerator.of(name.trim());
+            if (Objects.isNull(generator)) {
+                try {
+                    generator = (IdGenerator) Class.forName(name.trim(), true, ClassLoader.getSystemClassLoader())
+                            .getConstructor().newInstance();
+                } catch (Exception e) {
+                    logger.error("load id generator fail: %s", name, e);
+                }
+            }
+            TraceContext.setIdGenerator(generator);
+            logger.debug("id generator: %s", TraceContext.getIdGenerator());
         }
 
         /**
-         * 创建一个 ByteBuddy AgentBuilder 实例，忽略掉部分转换筛选范围：
-         *   - jdk.jfr.*
-         *   - com.intellij.rt.*
-         *   - io.github.artlibs.autotrace4j.*
+         * 创建一个 ByteBuddy AgentBuilder 实例，以{@link ClassNamePrefilter}作为忽略匹配：
+         *   - 默认排除的前缀(JDK自身的包、Kotlin、Netty、Jackson等)，转换器声明的类型及其父类型所在的包除外
+         *   - autotrace4j.prefilter.deny/allow追加的前缀，autotrace4j.prefilter.disable=true时不排除以上前缀
+         *   - 任何情况下都排除: jdk.jfr.*、com.intellij.rt.*、io.github.artlibs.autotrace4j.*
          * <p>
+         * @param profiler 转换耗时统计，未开启时为null
+         * @param cache 转换缓存，未开启时为null
+         * @param typePoolCache 按类加载器缓存的类型描述，未开启时为null
+         * @param prefilter 按类名前缀提前排除的类型
+         * @param transformer 所有转换器合并后的匹配，用于并行筛选需要重转换的已加载类
          * @return AgentBuilder 一个 ByteBuddy Agent Builder
          */
-        private AgentBuilder newAgentBuilder() {
-            return new AgentBuilder.Default()
-                    .ignore(nameStartsWith("jdk.jfr.")
-                            .or(nameStartsWith("com.intellij.rt."))
-                            .or(nameStartsWith(AutoTrace4j.class.getPackage().getName()))
-                    )
+        private AgentBuilder newAgentBuilder(TransformProfiler profiler, TransformCache cache,
+                                             TypePoolCache typePoolCache, ClassNamePrefilter prefilter,
+                                             CombinedTransformer transformer) {
+            AgentBuilder.CircularityLock circularityLock = new AgentBuilder.CircularityLock.Default();
+            AgentBuilder builder = new AgentBuilder.Default()
+                    .ignore(prefilter)
+                    .with(circularityLock)
                     .with(AgentBuilder.RedefinitionStrategy.RETRANSFORMATION)
+                    // retransform all matched classes in one call
+                    .with(AgentBuilder.RedefinitionStrategy.BatchAllocator.ForTotal.INSTANCE)
+                    .with(ParallelDiscovery.of(circularityLock, prefilter, transformer))
                     .with(AgentBuilder.InjectionStrategy.UsingUnsafe.INSTANCE)
-                    .with(new TransformListener());
+                    .with(new TransformListener(profiler, cache));
+            if (Objects.nonNull(typePoolCache)) {
+                // cached descriptions reference the class file locator, keep the class loader weakly reachable;
+                // describe loaded types from the cached pool too, instead of reflecting on them
+                builder = builder.with(typePoolCache)
+                        .with(AgentBuilder.LocationStrategy.ForClassLoader.WEAK)
+                        .with(AgentBuilder.DescriptionStrategy.Default.POOL_FIRST);
+            }
+            return Objects.isNull(cache) ? builder : builder.with(cache);
         }
 
         /**
-         * 从指定包加载所有增强类并为其创建单例对象
+         * 从指定包加载所有增强类并为其创建单例对象，优先使用构建时生成的索引
          * <p>
          * @return 增强类实例列表
          * @throws IOException -
@@ -132,6 +206,15 @@ public final class AutoTrace4j {
             }
 
             transformerList = new ArrayList<>(64);
+            List<String> indexed = ClassIndex.read(Constants.TRANSFORMER_CLASS_INDEX);
+            if (Objects.nonNull(indexed)) {
+                for (String className : indexed) {
+                    transformerList.add(newTransformer(className));
+                }
+                AbsDelegateTransformer.assignAdviceIndexes(transformerList);
+                return transformerList;
+            }
+
             ClassUtils.walkClassFiles((path, classCanonicalName) -> {
                 try {
                     Class<?> clazz = Class.forName(classCanonicalName);
@@ -143,7 +226,16 @@ public final class AutoTrace4j {
                 }
             }, At4jTransformer.class.getPackage().getName() + ".impl", true);
 
+            AbsDelegateTransformer.assignAdviceIndexes(transformerList);
             return transformerList;
         }
+
+        private static At4jTransformer newTransformer(String className) {
+            try {
+                return (At4jTransformer) Class.forName(className).getDeclaredConstructor().newInstance();
+            } catch (Exception e) {
+                throw new LoadInterceptorException(e);
+            }
+        }
     }
 }
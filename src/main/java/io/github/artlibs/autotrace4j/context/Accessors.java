@@ -0,0 +1,40 @@
+package io.github.artlibs.autotrace4j.context;
+
+/**
+ * Method Accessors
+ *      增强逻辑中频繁调用的方法，在此处定义一次，按目标类绑定一次，
+ *      JDK类中内联的Advice也能访问到
+ * <p>
+ * @author Fury
+ * @since 2024-12-15
+ * <p>
+ * All rights Reserved.
+ */
+public final class Accessors {
+    private Accessors() {}
+
+    /* --------------- servlet --------------- */
+    public static final MethodAccessor GET_ATTRIBUTE = MethodAccessor.of("getAttribute", String.class);
+    public static final MethodAccessor SET_ATTRIBUTE = MethodAccessor.of("setAttribute", String.class, Object.class);
+    public static final MethodAccessor GET_HEADER = MethodAccessor.of("getHeader", String.class);
+    public static final MethodAccessor SET_HEADER = MethodAccessor.of("setHeader", String.class, String.class);
+
+    /* --------------- dubbo --------------- */
+    public static final MethodAccessor GET_ATTACHMENT = MethodAccessor.of("getAttachment", String.class);
+    public static final MethodAccessor SET_ATTACHMENT = MethodAccessor.of("setAttachment", String.class, String.class);
+
+    /* --------------- rocketmq --------------- */
+    public static final MethodAccessor GET_USER_PROPERTY = MethodAccessor.of("getUserProperty", String.class);
+
+    /* --------------- kafka --------------- */
+    public static final MethodAccessor HEADERS = MethodAccessor.of("headers");
+    public static final MethodAccessor ADD_HEADER = MethodAccessor.of("add", String.class, byte[].class);
+    public static final MethodAccessor LAST_HEADER = MethodAccessor.of("lastHeader", String.class);
+    public static final MethodAccessor HEADER_VALUE = MethodAccessor.of("value");
+
+    /* --------------- jdk http client --------------- */
+    public static final MethodAccessor SET_IF_NOT_SET = MethodAccessor.of("setIfNotSet", String.class, String.class);
+
+    /* --------------- enhanced object --------------- */
+    public static final MethodAccessor GET_TRACE_SNAPSHOT = MethodAccessor.of(TraceContext.TRACE_SNAPSHOT_KEY_GETTER);
+}
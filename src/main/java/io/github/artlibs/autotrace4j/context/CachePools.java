@@ -2,11 +2,16 @@ package io.github.artlibs.autotrace4j.context;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Cache pools
+ *      反射成员缓存，按类通过ClassValue挂载，成员按(名称, 参数签名)区分重载，
+ *      查找时不拼接字符串；查找失败也会缓存，之后的查找不会再次抛出异常；
+ *      缓存与类的生命周期一致，不会持有已卸载ClassLoader中的类
  *
  * @author Fury
  * @since 2024-03-30
@@ -16,44 +21,134 @@ import java.util.concurrent.ConcurrentHashMap;
 public final class CachePools {
     private CachePools() {}
 
-    /** field cache */
-    private static final Map<String, Field> FIELD_POOL_CACHE = new ConcurrentHashMap<>();
-    /** method cache */
-    private static final Map<String, Method> METHOD_POOL_CACHE = new ConcurrentHashMap<>();
+    /** negative lookup entry */
+    private static final Object MISSING = new Object();
+
+    /** member cache per class */
+    private static final ClassValue<Members> MEMBER_POOL_CACHE = new ClassValue<Members>() {
+        @Override
+        protected Members computeValue(Class<?> type) {
+            return new Members();
+        }
+    };
 
     /**
-     * get field from cache
-     * @param key field name
-     * @return Field
+     * get field from cache, resolve it if absent
+     * @param clazz class
+     * @param fieldName field name
+     * @param declared declared field or not
+     * @return Field, null if not found
      */
-    public static Field getFieldCache(String key) {
-        return FIELD_POOL_CACHE.get(key);
+    public static Field getField(Class<?> clazz, String fieldName, boolean declared) {
+        Members members = MEMBER_POOL_CACHE.get(clazz);
+        ConcurrentMap<String, Object> fields = declared ? members.declaredFields : members.fields;
+        Object field = fields.get(fieldName);
+        if (Objects.isNull(field)) {
+            field = resolveField(clazz, fieldName, declared);
+            Object prev = fields.putIfAbsent(fieldName, field);
+            if (Objects.nonNull(prev)) {
+                field = prev;
+            }
+        }
+        return field == MISSING ? null : (Field) field;
     }
 
     /**
-     * cache field
-     * @param key field name
-     * @param field Field
+     * get method from cache, resolve it if absent
+     * @param clazz class
+     * @param methodName method name
+     * @param declared declared method or not
+     * @param parameterTypes param types
+     * @return Method, null if not found
      */
-    public static void setFieldCache(String key, Field field) {
-        FIELD_POOL_CACHE.put(key, field);
+    public static Method getMethod(Class<?> clazz, String methodName, boolean declared, Class<?>... parameterTypes) {
+        Members members = MEMBER_POOL_CACHE.get(clazz);
+        ConcurrentMap<String, MethodEntry> methods = declared ? members.declaredMethods : members.methods;
+        MethodEntry head = methods.get(methodName);
+        MethodEntry entry = MethodEntry.find(head, parameterTypes);
+        if (Objects.isNull(entry)) {
+            Object method = resolveMethod(clazz, methodName, declared, parameterTypes);
+            entry = putMethod(methods, methodName, head, parameterTypes, method);
+        }
+        return entry.method == MISSING ? null : (Method) entry.method;
+    }
+
+    private static MethodEntry putMethod(ConcurrentMap<String, MethodEntry> methods, String methodName
+            , MethodEntry head, Class<?>[] parameterTypes, Object method) {
+        MethodEntry entry = new MethodEntry(parameterTypes.clone(), method, head);
+        while (true) {
+            boolean put = Objects.isNull(head) ? Objects.isNull(methods.putIfAbsent(methodName, entry))
+                    : methods.replace(methodName, head, entry);
+            if (put) {
+                return entry;
+            }
+            // someone else got here first
+            head = methods.get(methodName);
+            MethodEntry exists = MethodEntry.find(head, parameterTypes);
+            if (Objects.nonNull(exists)) {
+                return exists;
+            }
+            entry = new MethodEntry(entry.parameterTypes, method, head);
+        }
+    }
+
+    private static Object resolveField(Class<?> clazz, String fieldName, boolean declared) {
+        try {
+            Field field = declared ? clazz.getDeclaredField(fieldName) : clazz.getField(fieldName);
+            field.setAccessible(true);
+            return field;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return MISSING;
+        }
+    }
+
+    private static Object resolveMethod(Class<?> clazz, String methodName, boolean declared, Class<?>... parameterTypes) {
+        try {
+            Method method = declared ? clazz.getDeclaredMethod(methodName, parameterTypes)
+                    : clazz.getMethod(methodName, parameterTypes);
+            method.setAccessible(true);
+            return method;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return MISSING;
+        }
     }
 
     /**
-     * get method from cache
-     * @param key method name
-     * @return Method
+     * members of one class
      */
-    public static Method getMethodCache(String key) {
-        return METHOD_POOL_CACHE.get(key);
+    private static final class Members {
+        /** field name -> Field or MISSING */
+        private final ConcurrentMap<String, Object> fields = new ConcurrentHashMap<>(4);
+        private final ConcurrentMap<String, Object> declaredFields = new ConcurrentHashMap<>(4);
+        /** method name -> overloads */
+        private final ConcurrentMap<String, MethodEntry> methods = new ConcurrentHashMap<>(4);
+        private final ConcurrentMap<String, MethodEntry> declaredMethods = new ConcurrentHashMap<>(4);
     }
 
     /**
-     * cache method
-     * @param key method name
-     * @param method Method
+     * immutable overload chain of one method name
      */
-    public static void setMethodCache(String key, Method method) {
-        METHOD_POOL_CACHE.put(key, method);
+    private static final class MethodEntry {
+        private final Class<?>[] parameterTypes;
+        /** Method or MISSING */
+        private final Object method;
+        private final MethodEntry next;
+
+        private MethodEntry(Class<?>[] parameterTypes, Object method, MethodEntry next) {
+            this.parameterTypes = parameterTypes;
+            this.method = method;
+            this.next = next;
+        }
+
+        private static MethodEntry find(MethodEntry head, Class<?>[] parameterTypes) {
+            for (MethodEntry entry = head; Objects.nonNull(entry); entry = entry.next) {
+                if (Arrays.equals(entry.parameterTypes, parameterTypes)) {
+                    return entry;
+                }
+            }
+            return null;
+        }
     }
 }
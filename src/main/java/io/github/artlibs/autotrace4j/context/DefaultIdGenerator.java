@@ -0,0 +1,112 @@
+package io.github.artlibs.autotrace4j.context;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Default ID Generator
+ *      基于线程本地的ThreadLocalRandom生成随机ID，直接编码为16进制字符数组，不产生中间字符串，
+ *      也不存在UUID.randomUUID()中SecureRandom的全局竞争
+ * <p>
+ * DEFAULT: 64位TraceId与SpanId，16位16进制字符
+ * W3C: 128位TraceId(32位16进制字符)与64位SpanId，与W3C Trace Context的trace-id/parent-id格式兼容
+ * <p>
+ * @author Fury
+ * @since 2024-12-15
+ * <p>
+ * All rights Reserved.
+ */
+public enum DefaultIdGenerator implements LongIdGenerator {
+    /** 64-bit trace id */
+    DEFAULT {
+        @Override
+        public boolean isWideTraceId() {
+            return false;
+        }
+    },
+    /** 128-bit trace id */
+    W3C {
+        @Override
+        public boolean isWideTraceId() {
+            return true;
+        }
+    };
+
+    private static final int HEX_LONG_LEN = 16;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String generateTraceId() {
+        // all zero trace id is invalid in w3c, the low part is always non-zero
+        return isWideTraceId() ? toHex(ThreadLocalRandom.current().nextLong(), generateLongId())
+                : toHex(generateLongId());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String generateSpanId() {
+        return toHex(generateLongId());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long generateLongId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long id;
+        do {
+            id = random.nextLong();
+        } while (id == 0);
+        return id;
+    }
+
+    /**
+     * find the generator by name, ignore case
+     * @param name default or w3c
+     * @return generator, null if not found
+     */
+    public static DefaultIdGenerator of(String name) {
+        for (DefaultIdGenerator generator : values()) {
+            if (generator.name().equalsIgnoreCase(name)) {
+                return generator;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * render a 64-bit id as 16 hex chars
+     * @param id -
+     * @return -
+     */
+    public static String toHex(long id) {
+        char[] chars = new char[HEX_LONG_LEN];
+        writeHex(chars, 0, id);
+        return new String(chars);
+    }
+
+    /**
+     * render a 128-bit id as 32 hex chars
+     * @param high high 64 bits
+     * @param low low 64 bits
+     * @return -
+     */
+    public static String toHex(long high, long low) {
+        char[] chars = new char[HEX_LONG_LEN << 1];
+        writeHex(chars, 0, high);
+        writeHex(chars, HEX_LONG_LEN, low);
+        return new String(chars);
+    }
+
+    private static void writeHex(char[] chars, int offset, long value) {
+        for (int i = offset + HEX_LONG_LEN - 1; i >= offset; i--) {
+            chars[i] = HEX_DIGITS[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package io.github.artlibs.autotrace4j.context;
+
+/**
+ * Trace/Span ID Generator
+ *      可通过系统属性 autotrace4j.id.generator 指定实现：default、w3c 或实现类的全限定名，
+ *      自定义实现需要有一个public无参构造器
+ * <p>
+ * @author Fury
+ * @since 2024-12-15
+ * <p>
+ * All rights Reserved.
+ */
+public interface IdGenerator {
+    /**
+     * generate a new trace id
+     * @return trace id
+     */
+    String generateTraceId();
+
+    /**
+     * generate a new span id
+     * @return span id
+     */
+    String generateSpanId();
+}
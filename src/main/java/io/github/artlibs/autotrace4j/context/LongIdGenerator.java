@@ -0,0 +1,23 @@
+package io.github.artlibs.autotrace4j.context;
+
+/**
+ * Long ID Generator
+ *      以long形式生成ID，上下文中只保存原始的long值，在日志注入、Header传递或MDC获取时才渲染为字符串
+ * <p>
+ * @author Fury
+ * @since 2024-12-15
+ * <p>
+ * All rights Reserved.
+ */
+public interface LongIdGenerator extends IdGenerator {
+    /**
+     * generate a new id, zero is reserved as "absent"
+     * @return non-zero id
+     */
+    long generateLongId();
+
+    /**
+     * @return true if the trace id is 128-bit(two long ids), otherwise 64-bit
+     */
+    boolean isWideTraceId();
+}
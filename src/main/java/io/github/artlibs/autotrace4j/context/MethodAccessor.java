@@ -0,0 +1,170 @@
+package io.github.artlibs.autotrace4j.context;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Objects;
+
+/**
+ * Method Accessor
+ *      按方法名与参数类型定义一次，按目标类通过ClassValue绑定一次MethodHandle，
+ *      之后的调用都是invokeExact，没有缓存Key拼接、Map查找、Wrapper对象与可变参数数组的开销；
+ *      绑定与类的生命周期一致，不会持有已卸载ClassLoader中的类
+ * <p>
+ *      注：该类会被注入到BootstrapClassLoader，不能通过LambdaMetafactory为应用类生成实现，
+ *      因此使用MethodHandle
+ * <p>
+ * @author Fury
+ * @since 2024-12-15
+ * <p>
+ * All rights Reserved.
+ */
+public final class MethodAccessor {
+    /** placeholder for method not found */
+    private static final MethodHandle NOT_FOUND = MethodHandles.constant(Object.class, null);
+
+    private final String methodName;
+    private final Class<?>[] parameterTypes;
+    private final MethodType invokeType;
+    private final ClassValue<MethodHandle> handles = new ClassValue<MethodHandle>() {
+        @Override
+        protected MethodHandle computeValue(Class<?> type) {
+            return bind(type);
+        }
+    };
+
+    private MethodAccessor(String methodName, Class<?>... parameterTypes) {
+        this.methodName = methodName;
+        this.parameterTypes = parameterTypes;
+        // (Object target, Object... args)Object, invoked with invokeExact
+        this.invokeType = MethodType.genericMethodType(parameterTypes.length + 1);
+    }
+
+    /**
+     * [public] method from the target class, or it's super class
+     * @param methodName method
+     * @param parameterTypes arg types, no more than 2
+     * @return accessor
+     */
+    public static MethodAccessor of(String methodName, Class<?>... parameterTypes) {
+        return new MethodAccessor(methodName, parameterTypes);
+    }
+
+    /**
+     * invoke the method without argument
+     * @param target object
+     * @return result, null if the target is null or the method not found
+     * @param <T> type
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T invoke(Object target) {
+        if (Objects.isNull(target)) {
+            return null;
+        }
+        try {
+            return (T) handle(target).invokeExact(target);
+        } catch (Throwable e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * invoke the method with one argument
+     * @param target object
+     * @param arg0 argument
+     * @return result, null if the target is null or the method not found
+     * @param <T> type
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T invoke(Object target, Object arg0) {
+        if (Objects.isNull(target)) {
+            return null;
+        }
+        try {
+            return (T) handle(target).invokeExact(target, arg0);
+        } catch (Throwable e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * invoke the method with two arguments
+     * @param target object
+     * @param arg0 argument
+     * @param arg1 argument
+     * @return result, null if the target is null or the method not found
+     * @param <T> type
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T invoke(Object target, Object arg0, Object arg1) {
+        if (Objects.isNull(target)) {
+            return null;
+        }
+        try {
+            return (T) handle(target).invokeExact(target, arg0, arg1);
+        } catch (Throwable e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private MethodHandle handle(Object target) {
+        return handles.get(target.getClass());
+    }
+
+    private MethodHandle bind(Class<?> type) {
+        try {
+            Method method = type.getMethod(methodName, parameterTypes);
+            try {
+                method.setAccessible(true);
+            } catch (RuntimeException e) {
+                // e.g. the class is not public and the module is not open, try the public interface
+                method = findPublicMethod(type);
+                if (Objects.isNull(method)) {
+                    throw e;
+                }
+            }
+            MethodHandle handle = MethodHandles.lookup().unreflect(method);
+            if (Modifier.isStatic(method.getModifiers())) {
+                handle = MethodHandles.dropArguments(handle, 0, Object.class);
+            }
+            if (method.getReturnType() == void.class) {
+                // void -> null
+                handle = MethodHandles.filterReturnValue(handle, MethodHandles.constant(Object.class, null));
+            }
+            return handle.asType(invokeType);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return MethodHandles.dropArguments(NOT_FOUND, 0, invokeType.parameterList());
+        }
+    }
+
+    private Method findPublicMethod(Class<?> type) {
+        if (Objects.isNull(type)) {
+            return null;
+        }
+        if (Modifier.isPublic(type.getModifiers())) {
+            try {
+                return type.getMethod(methodName, parameterTypes);
+            } catch (NoSuchMethodException ignore) {
+                // No sonar
+            }
+        }
+        for (Class<?> interfaceType : type.getInterfaces()) {
+            Method method = findPublicMethod(interfaceType);
+            if (Objects.nonNull(method)) {
+                return method;
+            }
+        }
+        return findPublicMethod(type.getSuperclass());
+    }
+
+    @Override
+    public String toString() {
+        return "MethodAccessor{" + methodName + "}";
+    }
+}
@@ -36,19 +36,7 @@ public final class MethodWrapper {
         wrapper.object = obj;
 
         Class<?> clazz = obj instanceof Class<?> ? (Class<?>)obj : obj.getClass();
-        try {
-            final String key = clazz.getName() + "." + methodName;
-            wrapper.method = CachePools.getMethodCache(key);
-            if (Objects.isNull(wrapper.method)) {
-                wrapper.method = declared
-                                 ? clazz.getDeclaredMethod(methodName, parameterTypes)
-                                 : clazz.getMethod(methodName, parameterTypes);
-                wrapper.method.setAccessible(true);
-                CachePools.setMethodCache(key, wrapper.method);
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        wrapper.method = CachePools.getMethod(clazz, methodName, declared, parameterTypes);
 
         return wrapper;
     }
@@ -61,7 +49,7 @@ public final class MethodWrapper {
      */
     @SuppressWarnings("unchecked")
     public <T> T invoke(Object... args) {
-        if (Objects.isNull(object)) {
+        if (Objects.isNull(object) || Objects.isNull(method)) {
             return null;
         }
 
@@ -69,19 +69,7 @@ public final class ReflectUtils {
         }
 
         Class<?> clazz = obj instanceof Class<?> ? (Class<?>) obj : obj.getClass();
-        String cacheKey = clazz.getName() + "." + fieldName;
-        Field field = CachePools.getFieldCache(cacheKey);
-        if (Objects.isNull(field)) {
-            try {
-                field = declared ? clazz.getDeclaredField(fieldName) : clazz.getField(fieldName);
-                field.setAccessible(true);
-                CachePools.setFieldCache(cacheKey, field);
-            } catch (Exception e) {
-                e.printStackTrace();
-                return null;
-            }
-        }
-        return field;
+        return CachePools.getField(clazz, fieldName, declared);
     }
 
     /**
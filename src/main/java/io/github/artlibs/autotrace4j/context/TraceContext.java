@@ -1,6 +1,6 @@
 package io.github.artlibs.autotrace4j.context;
 
-import java.util.UUID;
+import java.util.Objects;
 
 /**
  * Trace context
@@ -13,12 +13,12 @@ import java.util.UUID;
 public final class TraceContext {
     private TraceContext() {}
 
-    /** TraceId Context */
-    private static final ThreadLocal<String> TRACE_ID_CTX = new ThreadLocal<>();
-    /** SpanId Context */
-    private static final ThreadLocal<String> SPAN_ID_CTX = new ThreadLocal<>();
-    /** ParentSpanId Context */
-    private static final ThreadLocal<String> PARENT_SPAN_ID_CTX = new ThreadLocal<>();
+    /** Trace Context: TraceId/SpanId/ParentSpanId share one slot */
+    private static final ThreadLocal<TraceSnapshot> TRACE_CTX = new ThreadLocal<>();
+    /** id generator */
+    private static volatile IdGenerator idGenerator = DefaultIdGenerator.DEFAULT;
+    /** empty snapshot */
+    private static final TraceSnapshot EMPTY = TraceSnapshot.of(null, null, null);
 
     /** HTTP request/response Header */
     public static final String ATO_TRACE_ID = "X-Ato-Trace-Id";
@@ -27,6 +27,13 @@ public final class TraceContext {
     /** HTTP request/response Header */
     public static final String ATO_PARENT_SPAN_ID = "X-Ato-P-Span-ID";
 
+    /** snapshot field */
+    public static final String TRACE_SNAPSHOT_KEY = "autoTraceSnapshot";
+    /** snapshot field getter */
+    public static final String TRACE_SNAPSHOT_KEY_GETTER = "getAutoTraceSnapshot";
+    /** snapshot field setter */
+    public static final String TRACE_SNAPSHOT_KEY_SETTER = "setAutoTraceSnapshot";
+
     /** logger field */
     public static final String TRACE_KEY = "autoTraceId";
     /** logger field getter */
@@ -48,12 +55,33 @@ public final class TraceContext {
     /** logger field setter */
     public static final String PARENT_SPAN_KEY_SETTER = "setAutoParentSpanId";
 
+    /**
+     * capture current context, one ThreadLocal lookup
+     * @return snapshot, null if there is no context
+     */
+    public static TraceSnapshot capture() {
+        return TRACE_CTX.get();
+    }
+
+    /**
+     * restore the snapshot to current context, one ThreadLocal write
+     * @param snapshot null or empty snapshot will remove the context
+     */
+    public static void restore(TraceSnapshot snapshot) {
+        if (snapshot == null || snapshot.isEmpty()) {
+            TRACE_CTX.remove();
+        } else {
+            TRACE_CTX.set(snapshot);
+        }
+    }
+
     /**
      * get trace id from context
      * @return trace id
      */
     public static String getTraceId() {
-        return TRACE_ID_CTX.get();
+        TraceSnapshot snapshot = TRACE_CTX.get();
+        return snapshot == null ? null : snapshot.getTraceId();
     }
 
     /**
@@ -61,14 +89,14 @@ public final class TraceContext {
      * @param traceId -
      */
     public static void setTraceId(String traceId) {
-        TRACE_ID_CTX.set(traceId);
+        restore(current().withTraceId(traceId));
     }
 
     /**
      * remove trace id from context
      */
     public static void removeTraceId() {
-        TRACE_ID_CTX.remove();
+        setTraceId(null);
     }
 
     /**
@@ -76,7 +104,8 @@ public final class TraceContext {
      * @return -
      */
     public static String getSpanId() {
-        return SPAN_ID_CTX.get();
+        TraceSnapshot snapshot = TRACE_CTX.get();
+        return snapshot == null ? null : snapshot.getSpanId();
     }
 
     /**
@@ -84,14 +113,14 @@ public final class TraceContext {
      * @param spanId -
      */
     public static void setSpanId(String spanId) {
-        SPAN_ID_CTX.set(spanId);
+        restore(current().withSpanId(spanId));
     }
 
     /**
      * remove span id from context
      */
     public static void removeSpanId() {
-        SPAN_ID_CTX.remove();
+        setSpanId(null);
     }
 
     /**
@@ -99,7 +128,8 @@ public final class TraceContext {
      * @return -
      */
     public static String getParentSpanId() {
-        return PARENT_SPAN_ID_CTX.get();
+        TraceSnapshot snapshot = TRACE_CTX.get();
+        return snapshot == null ? null : snapshot.getParentSpanId();
     }
 
     /**
@@ -107,23 +137,58 @@ public final class TraceContext {
      * @param parentSpanId -
      */
     public static void setParentSpanId(String parentSpanId) {
-        PARENT_SPAN_ID_CTX.set(parentSpanId);
+        restore(current().withParentSpanId(parentSpanId));
     }
 
     /**
      * remove parent span id from context
      */
     public static void removeParentSpanId() {
-        PARENT_SPAN_ID_CTX.remove();
+        setParentSpanId(null);
     }
 
     /**
      * remove all context
      */
     public static void removeAll() {
-        removeTraceId();
-        removeSpanId();
-        removeParentSpanId();
+        TRACE_CTX.remove();
+    }
+
+    private static TraceSnapshot current() {
+        TraceSnapshot snapshot = TRACE_CTX.get();
+        return snapshot == null ? EMPTY : snapshot;
+    }
+
+    /**
+     * set the id generator
+     * @param generator null will reset to the default generator
+     */
+    public static void setIdGenerator(IdGenerator generator) {
+        idGenerator = Objects.isNull(generator) ? DefaultIdGenerator.DEFAULT : generator;
+    }
+
+    /**
+     * get the id generator
+     * @return -
+     */
+    public static IdGenerator getIdGenerator() {
+        return idGenerator;
+    }
+
+    /**
+     * generate trace id
+     * @return -
+     */
+    public static String generateTraceId() {
+        return idGenerator.generateTraceId();
+    }
+
+    /**
+     * generate span id
+     * @return -
+     */
+    public static String generateSpanId() {
+        return idGenerator.generateSpanId();
     }
 
     /**
@@ -131,10 +196,7 @@ public final class TraceContext {
      * @return -
      */
     public static String generate() {
-        return UUID.randomUUID()
-            .toString()
-            .substring(18)
-            .replace("-", "");
+        return generateSpanId();
     }
 
 }
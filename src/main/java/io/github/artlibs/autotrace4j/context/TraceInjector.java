@@ -1,5 +1,6 @@
 package io.github.artlibs.autotrace4j.context;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Objects;
 
 import static io.github.artlibs.autotrace4j.context.TraceContext.*;
@@ -41,6 +42,89 @@ public interface TraceInjector {
         return logMsg;
     }
 
+    /**
+     * inject trace into encoded log msg, the format is detected from the first
+     * non-whitespace byte, and the msg is never decoded: the result is allocated
+     * once and filled with the trace prefix and the original bytes
+     * <p>
+     * 注：要求日志编码兼容ASCII(如UTF-8、GBK、ISO-8859-1)，含非ASCII字符的id按UTF-8编码
+     * @param logBytes -
+     * @return the same array if nothing injected
+     */
+    default byte[] injectTrace(byte[] logBytes) {
+        if (Objects.isNull(logBytes)) {
+            return logBytes;
+        }
+
+        int start = 0;
+        int end = logBytes.length;
+        while (start < end && (logBytes[start] & 0xff) <= ' ') {
+            start++;
+        }
+        while (end > start && (logBytes[end - 1] & 0xff) <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            return logBytes;
+        }
+
+        try {
+            for (Format fmt : Format.values()) {
+                if (fmt.detect(logBytes, start, end)) {
+                    return fmt.inject(logBytes, start, end);
+                }
+            }
+
+            return Format.DEFAULT.inject(logBytes, start, end);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        return logBytes;
+    }
+
+    /**
+     * inject trace into the builder in place, only the prefix or json fields are
+     * inserted, the builder(e.g. reused by log4j2 garbage-free mode) is kept
+     * @param logMsg -
+     */
+    default void injectTrace(StringBuilder logMsg) {
+        Format fmt = Format.of(logMsg);
+        if (Objects.isNull(fmt)) {
+            return;
+        }
+
+        try {
+            int index = fmt.insertIndex(logMsg);
+            if (index >= 0) {
+                logMsg.insert(index, fmt.insertion());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * inject trace into the buffer in place
+     * @param logMsg -
+     * @see #injectTrace(StringBuilder)
+     */
+    default void injectTrace(StringBuffer logMsg) {
+        Format fmt = Format.of(logMsg);
+        if (Objects.isNull(fmt)) {
+            return;
+        }
+
+        try {
+            int index = fmt.insertIndex(logMsg);
+            if (index >= 0) {
+                logMsg.insert(index, fmt.insertion());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
     enum Format {
         CSV {
             /**
@@ -75,23 +159,71 @@ public interface TraceInjector {
              */
             @Override
             public String inject(String logMsg, String trimMsg) {
-                if (logMsg.contains(ATO_TRACE_ID) && logMsg.contains(getTraceId())) {
+                if (trimMsg.startsWith(JSON_MARKER, 1)) {
                     return logMsg;
                 }
 
-                String injectedTraceFields = "\"" + ATO_TRACE_ID +
-                        QUOTE_COLON + getTraceId() + "\",";
-                if (Objects.nonNull(getSpanId())) {
-                    injectedTraceFields = injectedTraceFields + "\"" + ATO_SPAN_ID +
-                            QUOTE_COLON + getSpanId() + "\",";
+                String injectedTraceFields = jsonFields(capture());
+                boolean lineFeed = logMsg.endsWith("\n");
+                return new StringBuilder(trimMsg.length() + injectedTraceFields.length() + 1)
+                        .append('{').append(injectedTraceFields).append(trimMsg, 1, trimMsg.length())
+                        .append(lineFeed ? "\n" : "").toString();
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public boolean detect(byte[] logBytes, int start, int end) {
+                return logBytes[start] == '{' && logBytes[end - 1] == '}';
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public byte[] inject(byte[] logBytes, int start, int end) {
+                if (regionMatches(logBytes, start + 1, end, JSON_MARKER)) {
+                    return logBytes;
                 }
-                if (Objects.nonNull(getParentSpanId())) {
-                    injectedTraceFields = injectedTraceFields + "\"" + ATO_PARENT_SPAN_ID +
-                            QUOTE_COLON + getParentSpanId() + "\",";
+
+                // {fields + trimMsg.substring(1) [+ \n]
+                String injectedTraceFields = jsonFields(capture());
+                boolean lineFeed = logBytes[logBytes.length - 1] == '\n';
+                int fieldsLength = utf8Length(injectedTraceFields);
+                byte[] injected = new byte[1 + fieldsLength + (end - start - 1) + (lineFeed ? 1 : 0)];
+                injected[0] = '{';
+                writeUtf8(injectedTraceFields, injected, 1);
+                System.arraycopy(logBytes, start + 1, injected, 1 + fieldsLength, end - start - 1);
+                if (lineFeed) {
+                    injected[injected.length - 1] = '\n';
                 }
-                trimMsg = "{" + injectedTraceFields + trimMsg.substring(1);
+                return injected;
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public boolean detect(CharSequence logMsg, int start, int end) {
+                return logMsg.charAt(start) == '{' && logMsg.charAt(end - 1) == '}';
+            }
 
-                return logMsg.endsWith("\n") ? trimMsg + "\n" : trimMsg;
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public int insertIndex(CharSequence logMsg) {
+                int start = trimStart(logMsg);
+                return regionMatches(logMsg, start + 1, JSON_MARKER) ? -1 : start + 1;
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public String insertion() {
+                return jsonFields(capture());
             }
         },
         XML {
@@ -147,19 +279,60 @@ public interface TraceInjector {
              */
             @Override
             public String inject(String logMsg, String trimMsg) {
-                if (logMsg.trim().isEmpty() || logMsg.contains("[TraceId]" + getTraceId())) {
+                if (logMsg.startsWith(TEXT_MARKER)) {
                     return logMsg;
                 }
 
-                String preTrimMessage = "[TraceId]" + getTraceId() + SEPARATOR;
-                if (Objects.nonNull(getSpanId())) {
-                    preTrimMessage += "[SpanId]" + getSpanId() + SEPARATOR;
-                }
-                if (Objects.nonNull(getParentSpanId())) {
-                    preTrimMessage += "[P-SpanId]" + getParentSpanId() + SEPARATOR;
+                return textPrefix(capture()).concat(logMsg);
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public boolean detect(byte[] logBytes, int start, int end) {
+                return true;
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public byte[] inject(byte[] logBytes, int start, int end) {
+                if (regionMatches(logBytes, 0, logBytes.length, TEXT_MARKER)) {
+                    return logBytes;
                 }
 
-                return preTrimMessage + logMsg;
+                String preTrimMessage = textPrefix(capture());
+                int prefixLength = utf8Length(preTrimMessage);
+                byte[] injected = new byte[prefixLength + logBytes.length];
+                writeUtf8(preTrimMessage, injected, 0);
+                System.arraycopy(logBytes, 0, injected, prefixLength, logBytes.length);
+                return injected;
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public boolean detect(CharSequence logMsg, int start, int end) {
+                return true;
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public int insertIndex(CharSequence logMsg) {
+                return regionMatches(logMsg, 0, TEXT_MARKER) ? -1 : 0;
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public String insertion() {
+                return textPrefix(capture());
             }
         },
         ;
@@ -179,7 +352,208 @@ public interface TraceInjector {
          */
         public abstract String inject(String logMsg, String trimMsg);
 
+        /**
+         * 检测编码后的文本是否是指定格式
+         * @param logBytes -
+         * @param start first non-whitespace byte
+         * @param end after the last non-whitespace byte
+         * @return -
+         */
+        public boolean detect(byte[] logBytes, int start, int end) {
+            // not support yet
+            return false;
+        }
+
+        /**
+         * 注入trace到编码后的log消息中
+         * @param logBytes -
+         * @param start first non-whitespace byte
+         * @param end after the last non-whitespace byte
+         * @return the same array if nothing injected
+         */
+        public byte[] inject(byte[] logBytes, int start, int end) {
+            // not support yet
+            return logBytes;
+        }
+
+        /**
+         * 检测可变文本是否是指定格式
+         * @param logMsg -
+         * @param start first non-whitespace char
+         * @param end after the last non-whitespace char
+         * @return -
+         */
+        public boolean detect(CharSequence logMsg, int start, int end) {
+            // not support yet
+            return false;
+        }
+
+        /**
+         * 原地注入的位置
+         * @param logMsg -
+         * @return -1 if nothing to inject
+         */
+        public int insertIndex(CharSequence logMsg) {
+            // not support yet
+            return -1;
+        }
+
+        /**
+         * 原地注入的内容，取自当前上下文
+         * @return -
+         */
+        public String insertion() {
+            // not support yet
+            return "";
+        }
+
+        /**
+         * detect the format of the mutable msg
+         * @param logMsg -
+         * @return null if the msg is null or blank
+         */
+        static Format of(CharSequence logMsg) {
+            if (Objects.isNull(logMsg)) {
+                return null;
+            }
+            int start = trimStart(logMsg);
+            int end = logMsg.length();
+            while (end > start && logMsg.charAt(end - 1) <= ' ') {
+                end--;
+            }
+            if (start == end) {
+                return null;
+            }
+            for (Format fmt : Format.values()) {
+                if (fmt.detect(logMsg, start, end)) {
+                    return fmt;
+                }
+            }
+            return DEFAULT;
+        }
+
+        private static int trimStart(CharSequence logMsg) {
+            int start = 0;
+            int len = logMsg.length();
+            while (start < len && logMsg.charAt(start) <= ' ') {
+                start++;
+            }
+            return start;
+        }
+
+        /**
+         * the string is at chars[offset, ...) or not
+         */
+        private static boolean regionMatches(CharSequence src, int offset, String target) {
+            int len = target.length();
+            if (src.length() - offset < len) {
+                return false;
+            }
+            for (int i = 0; i < len; i++) {
+                if (src.charAt(offset + i) != target.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * utf-8 length of the string, equals to its length when it's ascii
+         */
+        private static int utf8Length(String str) {
+            for (int i = 0, len = str.length(); i < len; i++) {
+                if (str.charAt(i) >= 0x80) {
+                    // ids set by users may contain any character
+                    return str.getBytes(StandardCharsets.UTF_8).length;
+                }
+            }
+            return str.length();
+        }
+
+        /**
+         * string to utf-8 bytes, ascii strings are copied without encoder
+         */
+        private static void writeUtf8(String str, byte[] dst, int offset) {
+            for (int i = 0, len = str.length(); i < len; i++) {
+                char c = str.charAt(i);
+                if (c >= 0x80) {
+                    byte[] utf8 = str.getBytes(StandardCharsets.UTF_8);
+                    System.arraycopy(utf8, 0, dst, offset, utf8.length);
+                    return;
+                }
+                dst[offset + i] = (byte) c;
+            }
+        }
+
+        /**
+         * the ascii string is at bytes[offset, to) or not
+         */
+        private static boolean regionMatches(byte[] src, int offset, int to, String target) {
+            int len = target.length();
+            if (to - offset < len) {
+                return false;
+            }
+            for (int i = 0; i < len; i++) {
+                if (src[offset + i] != (byte) target.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * text prefix of the snapshot, rendered once per snapshot
+         */
+        private static String textPrefix(TraceSnapshot snapshot) {
+            if (Objects.isNull(snapshot)) {
+                snapshot = NO_TRACE;
+            }
+            String prefix = snapshot.textPrefix;
+            if (Objects.isNull(prefix)) {
+                StringBuilder builder = new StringBuilder(64).append(TEXT_MARKER)
+                        .append(snapshot.getTraceId()).append(SEPARATOR);
+                if (Objects.nonNull(snapshot.getSpanId())) {
+                    builder.append("[SpanId]").append(snapshot.getSpanId()).append(SEPARATOR);
+                }
+                if (Objects.nonNull(snapshot.getParentSpanId())) {
+                    builder.append("[P-SpanId]").append(snapshot.getParentSpanId()).append(SEPARATOR);
+                }
+                prefix = builder.toString();
+                snapshot.textPrefix = prefix;
+            }
+            return prefix;
+        }
+
+        /**
+         * json fields of the snapshot, rendered once per snapshot
+         */
+        private static String jsonFields(TraceSnapshot snapshot) {
+            if (Objects.isNull(snapshot)) {
+                snapshot = NO_TRACE;
+            }
+            String fields = snapshot.jsonFields;
+            if (Objects.isNull(fields)) {
+                StringBuilder builder = new StringBuilder(96).append(JSON_MARKER)
+                        .append(snapshot.getTraceId()).append("\",");
+                if (Objects.nonNull(snapshot.getSpanId())) {
+                    builder.append('"').append(ATO_SPAN_ID).append(QUOTE_COLON)
+                            .append(snapshot.getSpanId()).append("\",");
+                }
+                if (Objects.nonNull(snapshot.getParentSpanId())) {
+                    builder.append('"').append(ATO_PARENT_SPAN_ID).append(QUOTE_COLON)
+                            .append(snapshot.getParentSpanId()).append("\",");
+                }
+                fields = builder.toString();
+                snapshot.jsonFields = fields;
+            }
+            return fields;
+        }
+
         private static final String SEPARATOR = " - ";
         private static final String QUOTE_COLON = "\":\"";
+        /** injected at the beginning, checked instead of scanning the whole msg */
+        private static final String TEXT_MARKER = "[TraceId]";
+        private static final String JSON_MARKER = "\"" + ATO_TRACE_ID + QUOTE_COLON;
+        private static final TraceSnapshot NO_TRACE = TraceSnapshot.of(null, null, null);
     }
 }
@@ -0,0 +1,212 @@
+package io.github.artlibs.autotrace4j.context;
+
+import java.util.Objects;
+
+/**
+ * Trace Snapshot
+ *      不可变的Trace上下文载体，TraceId、SpanId与ParentSpanId作为一个整体保存在
+ *      同一个ThreadLocal槽位中，跨线程传递时只需要复制一次引用
+ * <p>
+ *      由LongIdGenerator生成的ID以long形式保存，只有在日志注入、Header传递或MDC获取时
+ *      才渲染为字符串，渲染结果缓存在快照中；从Header等外部传入的ID直接以字符串保存
+ * <p>
+ *      快照不可变，注入日志的前缀与JSON片段同样缓存在快照中，Trace变化即产生新的快照，无需额外失效
+ * <p>
+ * @author Fury
+ * @since 2024-12-15
+ * <p>
+ * All rights Reserved.
+ */
+public final class TraceSnapshot {
+    /** 0 means absent */
+    private static final long NONE = 0L;
+
+    private final long traceIdHigh;
+    private final long traceIdLow;
+    private final boolean wideTraceId;
+    private final long spanIdBits;
+    private final long parentSpanIdBits;
+
+    /* rendered lazily, racy but idempotent */
+    private String traceId;
+    private String spanId;
+    private String parentSpanId;
+
+    /* log injection fragments, rendered lazily by TraceInjector, racy but idempotent */
+    String textPrefix;
+    String jsonFields;
+
+    private TraceSnapshot(String traceId, String spanId, String parentSpanId) {
+        this(traceId, NONE, NONE, false, spanId, NONE, parentSpanId, NONE);
+    }
+
+    private TraceSnapshot(String traceId, long traceIdHigh, long traceIdLow, boolean wideTraceId
+            , String spanId, long spanIdBits, String parentSpanId, long parentSpanIdBits) {
+        this.traceId = traceId;
+        this.traceIdHigh = traceIdHigh;
+        this.traceIdLow = traceIdLow;
+        this.wideTraceId = wideTraceId;
+        this.spanId = spanId;
+        this.spanIdBits = spanIdBits;
+        this.parentSpanId = parentSpanId;
+        this.parentSpanIdBits = parentSpanIdBits;
+    }
+
+    /**
+     * build a snapshot
+     * @param traceId trace id
+     * @param spanId span id
+     * @param parentSpanId parent span id
+     * @return snapshot
+     */
+    public static TraceSnapshot of(String traceId, String spanId, String parentSpanId) {
+        return new TraceSnapshot(traceId, spanId, parentSpanId);
+    }
+
+    /**
+     * start a new trace: a new trace id and span id, without parent span
+     * @return snapshot
+     */
+    public static TraceSnapshot newTrace() {
+        IdGenerator generator = TraceContext.getIdGenerator();
+        if (generator instanceof LongIdGenerator) {
+            LongIdGenerator longGenerator = (LongIdGenerator) generator;
+            boolean wide = longGenerator.isWideTraceId();
+            return new TraceSnapshot(null, wide ? longGenerator.generateLongId() : NONE
+                    , longGenerator.generateLongId(), wide, null, longGenerator.generateLongId(), null, NONE);
+        }
+        return new TraceSnapshot(generator.generateTraceId(), generator.generateSpanId(), null);
+    }
+
+    /**
+     * start a new span of the given trace(e.g. from a remote context), the trace id
+     * will be generated when it's absent
+     * @param traceId trace id, nullable
+     * @param parentSpanId parent span id, nullable
+     * @return snapshot
+     */
+    public static TraceSnapshot newSpan(String traceId, String parentSpanId) {
+        if (Objects.isNull(traceId)) {
+            return newTrace().withParentSpanId(parentSpanId);
+        }
+        IdGenerator generator = TraceContext.getIdGenerator();
+        if (generator instanceof LongIdGenerator) {
+            return new TraceSnapshot(traceId, NONE, NONE, false
+                    , null, ((LongIdGenerator) generator).generateLongId(), parentSpanId, NONE);
+        }
+        return new TraceSnapshot(traceId, generator.generateSpanId(), parentSpanId);
+    }
+
+    /**
+     * start a child span of this snapshot: keep the trace id, generate a new span id
+     * and use the current span id as the parent span id
+     * @return snapshot
+     */
+    public TraceSnapshot newChildSpan() {
+        if (!hasTraceId()) {
+            return newTrace().withParentSpanId(getSpanId());
+        }
+        IdGenerator generator = TraceContext.getIdGenerator();
+        if (generator instanceof LongIdGenerator) {
+            return new TraceSnapshot(traceId, traceIdHigh, traceIdLow, wideTraceId
+                    , null, ((LongIdGenerator) generator).generateLongId(), spanId, spanIdBits);
+        }
+        return new TraceSnapshot(traceId, traceIdHigh, traceIdLow, wideTraceId
+                , generator.generateSpanId(), NONE, spanId, spanIdBits);
+    }
+
+    /**
+     * @param traceId trace id
+     * @return a copy with the given trace id
+     */
+    public TraceSnapshot withTraceId(String traceId) {
+        return new TraceSnapshot(traceId, NONE, NONE, false
+                , spanId, spanIdBits, parentSpanId, parentSpanIdBits);
+    }
+
+    /**
+     * @param spanId span id
+     * @return a copy with the given span id
+     */
+    public TraceSnapshot withSpanId(String spanId) {
+        return new TraceSnapshot(traceId, traceIdHigh, traceIdLow, wideTraceId
+                , spanId, NONE, parentSpanId, parentSpanIdBits);
+    }
+
+    /**
+     * @param parentSpanId parent span id
+     * @return a copy with the given parent span id
+     */
+    public TraceSnapshot withParentSpanId(String parentSpanId) {
+        return new TraceSnapshot(traceId, traceIdHigh, traceIdLow, wideTraceId
+                , spanId, spanIdBits, parentSpanId, NONE);
+    }
+
+    /**
+     * @return true if there is a trace id, without rendering it
+     */
+    public boolean hasTraceId() {
+        return Objects.nonNull(traceId) || traceIdLow != NONE;
+    }
+
+    /**
+     * @return true if there is nothing in this snapshot
+     */
+    public boolean isEmpty() {
+        return !hasTraceId() && Objects.isNull(spanId) && spanIdBits == NONE
+                && Objects.isNull(parentSpanId) && parentSpanIdBits == NONE;
+    }
+
+    public String getTraceId() {
+        String id = traceId;
+        if (Objects.isNull(id) && traceIdLow != NONE) {
+            id = wideTraceId ? DefaultIdGenerator.toHex(traceIdHigh, traceIdLow)
+                    : DefaultIdGenerator.toHex(traceIdLow);
+            traceId = id;
+        }
+        return id;
+    }
+
+    public String getSpanId() {
+        String id = spanId;
+        if (Objects.isNull(id) && spanIdBits != NONE) {
+            id = DefaultIdGenerator.toHex(spanIdBits);
+            spanId = id;
+        }
+        return id;
+    }
+
+    public String getParentSpanId() {
+        String id = parentSpanId;
+        if (Objects.isNull(id) && parentSpanIdBits != NONE) {
+            id = DefaultIdGenerator.toHex(parentSpanIdBits);
+            parentSpanId = id;
+        }
+        return id;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof TraceSnapshot)) {
+            return false;
+        }
+        TraceSnapshot that = (TraceSnapshot) obj;
+        return Objects.equals(getTraceId(), that.getTraceId()) &&
+                Objects.equals(getSpanId(), that.getSpanId()) &&
+                Objects.equals(getParentSpanId(), that.getParentSpanId());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getTraceId(), getSpanId(), getParentSpanId());
+    }
+
+    @Override
+    public String toString() {
+        return "TraceSnapshot{traceId=" + getTraceId() + ", spanId=" + getSpanId()
+                + ", parentSpanId=" + getParentSpanId() + "}";
+    }
+}
@@ -1,5 +1,7 @@
 package io.github.artlibs.autotrace4j.context.jdk;
 
+import io.github.artlibs.autotrace4j.context.TraceSnapshot;
+
 /**
  * Priority Task
  *
@@ -9,8 +11,8 @@ package io.github.artlibs.autotrace4j.context.jdk;
  * All rights Reserved.
  */
 public class PriorityTask extends ThreadTask implements Comparable<PriorityTask> {
-    public PriorityTask(Runnable rawTask, String traceId, String spanId) {
-        super(rawTask, traceId, spanId);
+    public PriorityTask(Runnable rawTask, TraceSnapshot snapshot) {
+        super(rawTask, snapshot);
     }
 
     @SuppressWarnings("unchecked")
@@ -1,5 +1,7 @@
 package io.github.artlibs.autotrace4j.context.jdk;
 
+import io.github.artlibs.autotrace4j.context.TraceSnapshot;
+
 import java.util.concurrent.*;
 
 /**
@@ -13,8 +15,8 @@ import java.util.concurrent.*;
 public class ScheduledTask<T> extends ThreadTask implements RunnableScheduledFuture<T> {
     private final RunnableScheduledFuture<T> rawTask;
 
-    public ScheduledTask(RunnableScheduledFuture<T> rawTask, String traceId, String spanId) {
-        super(rawTask, traceId, spanId);
+    public ScheduledTask(RunnableScheduledFuture<T> rawTask, TraceSnapshot snapshot) {
+        super(rawTask, snapshot);
         this.rawTask = rawTask;
     }
 
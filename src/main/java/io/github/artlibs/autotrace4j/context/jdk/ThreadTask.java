@@ -1,6 +1,7 @@
 package io.github.artlibs.autotrace4j.context.jdk;
 
 import io.github.artlibs.autotrace4j.context.TraceContext;
+import io.github.artlibs.autotrace4j.context.TraceSnapshot;
 
 import java.util.Objects;
 
@@ -14,8 +15,9 @@ import java.util.Objects;
  * All rights Reserved.
  */
 public class ThreadTask implements Runnable {
-    private String spanId;
-    private String traceId;
+    private TraceSnapshot snapshot;
+    /** generated when no trace id is captured, reused by the repeated runs(e.g. periodic tasks) */
+    private TraceSnapshot generatedTrace;
     private Runnable rawTask;
     private long callerThreadId;
 
@@ -26,14 +28,13 @@ public class ThreadTask implements Runnable {
     }
 
     /**
-     * transfer the spanId and traceId to the next context
+     * transfer the captured context to the next context
      * @param rawTask The original runnable task
-     * @param traceId traceId for binding to this task
-     * @param spanId current context spanId，as the parent span id of the next context
+     * @param snapshot captured context for binding to this task, its span id will
+     *                 be the parent span id of the next context
      */
-    public ThreadTask(Runnable rawTask, String traceId, String spanId) {
-        this.spanId = spanId;
-        this.traceId = traceId;
+    public ThreadTask(Runnable rawTask, TraceSnapshot snapshot) {
+        this.snapshot = snapshot;
         this.rawTask = rawTask;
         this.callerThreadId = Thread.currentThread().getId();
     }
@@ -53,16 +54,8 @@ public class ThreadTask implements Runnable {
         }
 
         try {
-            if (Objects.isNull(traceId)) {
-                traceId = TraceContext.generate();
-            }
-            TraceContext.setTraceId(traceId);
             // Always start a new span with a new span id
-            TraceContext.setSpanId(TraceContext.generate());
-
-            if (Objects.nonNull(spanId)) {
-                TraceContext.setParentSpanId(spanId);
-            }
+            TraceContext.restore(nextSpan());
 
             this.rawTask.run();
         } finally {
@@ -70,6 +63,17 @@ public class ThreadTask implements Runnable {
         }
     }
 
+    private TraceSnapshot nextSpan() {
+        if (Objects.nonNull(snapshot) && snapshot.hasTraceId()) {
+            return snapshot.newChildSpan();
+        }
+        if (Objects.isNull(generatedTrace)) {
+            generatedTrace = TraceSnapshot.newTrace();
+        }
+        return generatedTrace.newChildSpan()
+                .withParentSpanId(Objects.isNull(snapshot) ? null : snapshot.getSpanId());
+    }
+
     @Override
     public boolean equals(Object obj) {
         return this.rawTask.equals(obj);
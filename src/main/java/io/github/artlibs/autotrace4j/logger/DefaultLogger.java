@@ -14,6 +14,8 @@ import io.github.artlibs.autotrace4j.logger.event.LogEvent;
  * All rights Reserved.
  */
 public final class DefaultLogger implements Logger {
+    private static final Object[] EMPTY_ARGS = new Object[0];
+
     private Level level;
     private final String name;
     private final Appender<LogEvent> appender;
@@ -46,38 +48,155 @@ public final class DefaultLogger implements Logger {
         );
     }
 
+    @Override
+    public void trace(String message) {
+        if (isEnabled(Level.TRACE)) {
+            append(Level.TRACE, message, EMPTY_ARGS);
+        }
+    }
+
+    @Override
+    public void trace(String message, Object arg) {
+        if (isEnabled(Level.TRACE)) {
+            append(Level.TRACE, message, new Object[]{arg});
+        }
+    }
+
+    @Override
+    public void trace(String message, Object arg1, Object arg2) {
+        if (isEnabled(Level.TRACE)) {
+            append(Level.TRACE, message, new Object[]{arg1, arg2});
+        }
+    }
+
     @Override
     public void trace(String message, Object... args) {
-        append(Level.TRACE, message, args);
+        if (isEnabled(Level.TRACE)) {
+            append(Level.TRACE, message, args);
+        }
+    }
+
+    @Override
+    public void debug(String message) {
+        if (isEnabled(Level.DEBUG)) {
+            append(Level.DEBUG, message, EMPTY_ARGS);
+        }
+    }
+
+    @Override
+    public void debug(String message, Object arg) {
+        if (isEnabled(Level.DEBUG)) {
+            append(Level.DEBUG, message, new Object[]{arg});
+        }
+    }
+
+    @Override
+    public void debug(String message, Object arg1, Object arg2) {
+        if (isEnabled(Level.DEBUG)) {
+            append(Level.DEBUG, message, new Object[]{arg1, arg2});
+        }
     }
 
     @Override
     public void debug(String message, Object... args) {
-        append(Level.DEBUG, message, args);
+        if (isEnabled(Level.DEBUG)) {
+            append(Level.DEBUG, message, args);
+        }
+    }
+
+    @Override
+    public void info(String message) {
+        if (isEnabled(Level.INFO)) {
+            append(Level.INFO, message, EMPTY_ARGS);
+        }
+    }
+
+    @Override
+    public void info(String message, Object arg) {
+        if (isEnabled(Level.INFO)) {
+            append(Level.INFO, message, new Object[]{arg});
+        }
+    }
+
+    @Override
+    public void info(String message, Object arg1, Object arg2) {
+        if (isEnabled(Level.INFO)) {
+            append(Level.INFO, message, new Object[]{arg1, arg2});
+        }
     }
 
     @Override
     public void info(String message, Object... args) {
-        append(Level.INFO, message, args);
+        if (isEnabled(Level.INFO)) {
+            append(Level.INFO, message, args);
+        }
+    }
+
+    @Override
+    public void warn(String message) {
+        if (isEnabled(Level.WARN)) {
+            append(Level.WARN, message, EMPTY_ARGS);
+        }
+    }
+
+    @Override
+    public void warn(String message, Object arg) {
+        if (isEnabled(Level.WARN)) {
+            append(Level.WARN, message, new Object[]{arg});
+        }
+    }
+
+    @Override
+    public void warn(String message, Object arg1, Object arg2) {
+        if (isEnabled(Level.WARN)) {
+            append(Level.WARN, message, new Object[]{arg1, arg2});
+        }
     }
 
     @Override
     public void warn(String message, Object... args) {
-        append(Level.WARN, message, args);
+        if (isEnabled(Level.WARN)) {
+            append(Level.WARN, message, args);
+        }
     }
 
     @Override
-    public void error(String message, Object... args) {
-        append(Level.ERROR, message, args);
+    public void error(String message) {
+        if (isEnabled(Level.ERROR)) {
+            append(Level.ERROR, message, EMPTY_ARGS);
+        }
     }
 
-    private void append(Level level, String message, Object... args) {
-        LogEvent event = buildLogEvent(level, message, args);
-        if (event.getLevel().compareTo(this.getLevel()) >= 0) {
-            appender.append(event);
+    @Override
+    public void error(String message, Object arg) {
+        if (isEnabled(Level.ERROR)) {
+            append(Level.ERROR, message, new Object[]{arg});
         }
     }
 
+    @Override
+    public void error(String message, Object arg1, Object arg2) {
+        if (isEnabled(Level.ERROR)) {
+            append(Level.ERROR, message, new Object[]{arg1, arg2});
+        }
+    }
+
+    @Override
+    public void error(String message, Object... args) {
+        if (isEnabled(Level.ERROR)) {
+            append(Level.ERROR, message, args);
+        }
+    }
+
+    @Override
+    public boolean isEnabled(Level level) {
+        return level.compareTo(this.level) >= 0;
+    }
+
+    private void append(Level level, String message, Object[] args) {
+        appender.append(buildLogEvent(level, message, args));
+    }
+
     @Override
     public String getName() {
         return name;
@@ -4,6 +4,9 @@ import io.github.artlibs.autotrace4j.logger.event.Level;
 
 /**
  * 功能：日志
+ * <p>
+ * 低于当前级别的日志在构建事件之前就被丢弃；固定参数个数的重载不会创建可变参数数组，
+ * 参数较多时可先判断isXxxEnabled()再调用.
  *
  * @author Fury
  * @since 2024/04/27
@@ -11,16 +14,72 @@ import io.github.artlibs.autotrace4j.logger.event.Level;
  * All rights Reserved.
  */
 public interface Logger {
+    void trace(String message);
+
+    void trace(String message, Object arg);
+
+    void trace(String message, Object arg1, Object arg2);
+
     void trace(String message, Object... args);
 
+    void debug(String message);
+
+    void debug(String message, Object arg);
+
+    void debug(String message, Object arg1, Object arg2);
+
     void debug(String message, Object... args);
 
+    void info(String message);
+
+    void info(String message, Object arg);
+
+    void info(String message, Object arg1, Object arg2);
+
     void info(String message, Object... args);
 
+    void warn(String message);
+
+    void warn(String message, Object arg);
+
+    void warn(String message, Object arg1, Object arg2);
+
     void warn(String message, Object... args);
 
+    void error(String message);
+
+    void error(String message, Object arg);
+
+    void error(String message, Object arg1, Object arg2);
+
     void error(String message, Object... args);
 
+    /**
+     * @param level 日志级别
+     * @return 该级别的日志是否会被输出
+     */
+    boolean isEnabled(Level level);
+
+    default boolean isTraceEnabled() {
+        return isEnabled(Level.TRACE);
+    }
+
+    default boolean isDebugEnabled() {
+        return isEnabled(Level.DEBUG);
+    }
+
+    default boolean isInfoEnabled() {
+        return isEnabled(Level.INFO);
+    }
+
+    default boolean isWarnEnabled() {
+        return isEnabled(Level.WARN);
+    }
+
+    default boolean isErrorEnabled() {
+        return isEnabled(Level.ERROR);
+    }
+
     String getName();
 
     Level getLevel();
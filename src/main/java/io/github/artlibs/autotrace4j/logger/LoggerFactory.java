@@ -6,7 +6,9 @@ import io.github.artlibs.autotrace4j.logger.appender.ConsoleAppender;
 import io.github.artlibs.autotrace4j.logger.appender.FileAppender;
 import io.github.artlibs.autotrace4j.logger.event.Level;
 import io.github.artlibs.autotrace4j.logger.event.LogEvent;
+import io.github.artlibs.autotrace4j.logger.layout.BinaryLayout;
 import io.github.artlibs.autotrace4j.logger.layout.DefaultLayout;
+import io.github.artlibs.autotrace4j.logger.layout.Layout;
 import io.github.artlibs.autotrace4j.support.SystemUtils;
 
 import java.io.PrintStream;
@@ -22,6 +24,7 @@ import static io.github.artlibs.autotrace4j.support.Constants.*;
  * 暂提供如下配置(通过SystemProperty配置):
  * 1. autotrace4j.log.dir autotrace4j产生的日志文件存放目录
  * 2. autotrace4j.log.level autotrace4j产生的日志的最低级别,大于对应级别的日志才会被打印.
+ * 3. autotrace4j.log.file.format 日志文件格式: text(默认)/binary.
  *
  * @author suopovate
  * @since 2024/04/27
@@ -47,7 +50,7 @@ public final class LoggerFactory {
             APPENDER_COMBINER.addAppender(consoleAppender);
 
             FileAppender fileAppender = new FileAppender(
-                    new DefaultLayout(), getLogFileDirectory(),
+                    fileLayout(), getLogFileDirectory(),
                     SystemUtils.getSysPropertyInteger(SYSTEM_PROPERTY_LOG_FILE_RETENTION)
                             .orElse(DEFAULT_LOG_FILE_RETENTION),
                     SystemUtils.getSysPropertyInteger(SYSTEM_PROPERTY_LOG_FILE_SIZE)
@@ -78,6 +81,14 @@ public final class LoggerFactory {
         return directory;
     }
 
+    /**
+     * autotrace4j.log.file.format=binary时文件按二进制格式输出
+     */
+    private static Layout<LogEvent> fileLayout() {
+        return "binary".equalsIgnoreCase(System.getProperty(SYSTEM_PROPERTY_LOG_FILE_FORMAT))
+                ? new BinaryLayout() : new DefaultLayout();
+    }
+
     private static Level getLevelConfig() {
         return Optional
             .ofNullable(System.getProperty(SYSTEM_PROPERTY_LOG_LEVEL))
@@ -95,8 +106,7 @@ public final class LoggerFactory {
         if (logger == null) {
             Appender<LogEvent> appender = APPENDER_COMBINER;
             if (name.startsWith(Logger.class.getPackage().getName())) {
-                appender = new ConsoleAppender(new DefaultLayout(), SYSTEM_OUT, SYSTEM_ERR);
-                appender.start();
+                appender = InternalAppenderHolder.APPENDER;
             }
             logger = new DefaultLogger(name, appender, LEVEL);
             Logger preLogger = LOGGER_MAP.putIfAbsent(name, logger);
@@ -106,4 +116,15 @@ public final class LoggerFactory {
         return logger;
     }
 
+    /**
+     * logger包自身的日志只输出到控制台，所有logger共用一个appender
+     */
+    private static final class InternalAppenderHolder {
+        private static final ConsoleAppender APPENDER = new ConsoleAppender(new DefaultLayout(), SYSTEM_OUT, SYSTEM_ERR);
+
+        static {
+            APPENDER.start();
+        }
+    }
+
 }
@@ -21,6 +21,15 @@ public interface Appender<E> extends Lifecycle {
      */
     boolean support(E event);
 
+    /**
+     * 是否支持所有非null的事件,是则AppenderCombiner在添加时即确定,分发时不再调用support.
+     *
+     * @return boolean 是否支持所有非null的事件
+     */
+    default boolean supportAllEvents() {
+        return false;
+    }
+
     /**
      * 往appender输出日志
      *
@@ -1,11 +1,14 @@
 package io.github.artlibs.autotrace4j.logger.appender;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 /**
  * 功能：appender 组合器
+ * <p>
+ * appender保存在不可变数组中，添加时复制(copy-on-write)，分发时无锁遍历；
+ * 添加时即确定是否需要逐个事件调用support，需要的appender包装为过滤appender后放入分发数组.
  *
  * @author suopovate
  * @since 2024/04/27
@@ -13,8 +16,14 @@ import java.util.List;
  * All rights Reserved.
  */
 public final class AppenderCombiner<E> extends AbstractAppender<E> {
-    private final List<Appender<E>> appenderList = Collections
-            .synchronizedList(new ArrayList<>(8));
+    private static final Appender<?>[] EMPTY = new Appender<?>[0];
+
+    /** 添加的appender */
+    @SuppressWarnings("unchecked")
+    private volatile Appender<E>[] appenders = (Appender<E>[]) EMPTY;
+    /** 分发数组，与appenders一一对应 */
+    @SuppressWarnings("unchecked")
+    private volatile Appender<E>[] targets = (Appender<E>[]) EMPTY;
 
     /**
      * appender 组合器
@@ -28,12 +37,24 @@ public final class AppenderCombiner<E> extends AbstractAppender<E> {
      *
      * @param appender Appender
      */
-    public void addAppender(Appender<E> appender) {
+    public synchronized void addAppender(Appender<E> appender) {
         if (appender != null) {
-            appenderList.add(appender);
+            Appender<E>[] newAppenders = Arrays.copyOf(appenders, appenders.length + 1);
+            newAppenders[appenders.length] = appender;
+            Appender<E>[] newTargets = Arrays.copyOf(targets, targets.length + 1);
+            newTargets[targets.length] = appender.supportAllEvents() ? appender : new SupportFilter<>(appender);
+            appenders = newAppenders;
+            targets = newTargets;
         }
     }
 
+    /**
+     * @return 已添加的appender
+     */
+    public List<Appender<E>> getAppenders() {
+        return Collections.unmodifiableList(Arrays.asList(appenders));
+    }
+
     @Override
     public boolean support(E event) {
         return true;
@@ -41,11 +62,39 @@ public final class AppenderCombiner<E> extends AbstractAppender<E> {
 
     @Override
     public void append(E event) {
-        if (started()) {
-            for (Appender<E> appender : appenderList) {
-                if (appender.support(event)) {
-                    appender.append(event);
-                }
+        Appender<E>[] fanOut = targets;
+        if (fanOut.length == 0 || event == null || !started()) {
+            // 未开启日志时没有任何appender
+            return;
+        }
+        if (fanOut.length == 1) {
+            fanOut[0].append(event);
+            return;
+        }
+        for (Appender<E> appender : fanOut) {
+            appender.append(event);
+        }
+    }
+
+    /**
+     * 逐个事件调用support的appender
+     */
+    private static final class SupportFilter<E> extends AbstractAppender<E> {
+        private final Appender<E> appender;
+
+        private SupportFilter(Appender<E> appender) {
+            this.appender = appender;
+        }
+
+        @Override
+        public boolean support(E event) {
+            return appender.support(event);
+        }
+
+        @Override
+        public void append(E event) {
+            if (appender.support(event)) {
+                appender.append(event);
             }
         }
     }
@@ -1,12 +1,25 @@
 package io.github.artlibs.autotrace4j.logger.appender;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import io.github.artlibs.autotrace4j.support.SystemUtils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static io.github.artlibs.autotrace4j.support.Constants.*;
 
 /**
  * 功能：异步appender
  * <p>
- * 注意: doAppend是单独开启一个线程,串行处理所有的event.
+ * 注意: doAppend由共享的异步线程执行(见AsyncDispatcher),同一个appender的event串行处理.
+ * <p>
+ * 事件放入预分配的有界环形队列，消费线程按批次取出处理，队列为空时按等待策略等待，
+ * 队列满时按溢出策略处理，可通过如下SystemProperty配置:
+ * 1. autotrace4j.log.queue.size 队列容量，默认8192
+ * 2. autotrace4j.log.queue.wait 等待策略: park(默认)/yield/block
+ * 3. autotrace4j.log.queue.overflow 溢出策略: count_and_discard(默认)/drop_newest/drop_oldest/block，
+ *    默认不阻塞被增强的业务线程
+ * 4. autotrace4j.log.async.threads 共享的异步线程数，默认1
  *
  * @author suopovate
  * @since 2024/04/27
@@ -14,44 +27,286 @@ import java.util.concurrent.LinkedBlockingQueue;
  * All rights Reserved.
  */
 public abstract class AsyncAppender<E> extends AbstractAppender<E> {
+    private static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long OVERFLOW_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
     /** 日志事件队列 */
-    private final BlockingQueue<E> queue;
+    private final RingBuffer<E> queue;
+    private final WaitStrategy waitStrategy;
+    private final OverflowPolicy overflowPolicy;
+    /** 溢出丢弃的事件数 */
+    private final AtomicLong discardedCount = new AtomicLong();
+    private long reportedDiscardedCount;
+
+    /** 绑定的消费线程，停止且队列处理完后解绑 */
+    private volatile AsyncDispatcher.Worker worker;
+
     /**
      * AsyncAppender构造函数，用于创建一个异步Appender实例。
-     * 该构造函数会初始化一个LinkedBlockingQueue作为Appender内部的消息队列。
+     * 队列容量与策略取自SystemProperty。
      */
     protected AsyncAppender() {
-        this.queue = new LinkedBlockingQueue<>();
+        this(SystemUtils.getSysPropertyInteger(SYSTEM_PROPERTY_LOG_QUEUE_SIZE).orElse(DEFAULT_LOG_QUEUE_SIZE),
+                SystemUtils.getSysPropertyEnum(SYSTEM_PROPERTY_LOG_QUEUE_WAIT, WaitStrategy.class)
+                        .orElse(WaitStrategy.PARK),
+                SystemUtils.getSysPropertyEnum(SYSTEM_PROPERTY_LOG_QUEUE_OVERFLOW, OverflowPolicy.class)
+                        .orElse(OverflowPolicy.COUNT_AND_DISCARD));
+    }
+
+    /**
+     * AsyncAppender构造函数
+     *
+     * @param capacity 队列容量
+     * @param waitStrategy 队列为空时消费线程的等待策略
+     * @param overflowPolicy 队列满时的溢出策略
+     */
+    protected AsyncAppender(int capacity, WaitStrategy waitStrategy, OverflowPolicy overflowPolicy) {
+        this.queue = new RingBuffer<>(capacity);
+        this.waitStrategy = waitStrategy;
+        this.overflowPolicy = overflowPolicy;
     }
 
     @Override
-    public boolean start() {
-        Thread async = new Thread(() -> {
-            while (true) {
+    public synchronized boolean start() {
+        if (started()) {
+            return true;
+        }
+        boolean result = super.start();
+        if (worker == null) {
+            // 还未解绑时继续由原来的线程消费
+            worker = AsyncDispatcher.register(this, waitStrategy);
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized boolean stop() {
+        boolean result = super.stop();
+        // 唤醒消费线程，处理完剩余事件后退出
+        wakeup(true);
+        return result;
+    }
+
+    @Override
+    public final void append(E event) {
+        if (queue.offer(event)) {
+            wakeup(false);
+            return;
+        }
+        overflowPolicy.overflow(this, event);
+    }
+
+    abstract void doAppend(E event);
+
+    /**
+     * 每处理完一个批次后调用，可用于批量刷盘等
+     */
+    void endBatch() {
+        // NO Sonar
+    }
+
+    /**
+     * 队列为空时调用(等待之前，以及停止后退出之前)，可用于刷盘等
+     */
+    void idle() {
+        // NO Sonar
+    }
+
+    /**
+     * @return 溢出丢弃的事件数
+     */
+    public long getDiscardedCount() {
+        return discardedCount.get();
+    }
+
+    /**
+     * 由消费线程调用，处理一个批次
+     *
+     * @param batch 消费线程预分配的批次数组
+     * @return 队列为空时返回false
+     */
+    boolean consume(Object[] batch) {
+        int count = queue.drain(batch);
+        if (count == 0) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            try {
+                @SuppressWarnings("unchecked")
+                E event = (E) batch[i];
+                doAppend(event);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            batch[i] = null;
+        }
+        try {
+            endBatch();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        reportDiscarded();
+        return true;
+    }
+
+    /**
+     * 由消费线程在所有队列为空时调用，已停止则解绑
+     */
+    void idleOrExit() {
+        try {
+            idle();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        if (!started()) {
+            exit();
+        }
+    }
+
+    /**
+     * @return 队列为空且仍在运行，消费线程可以等待
+     */
+    boolean isDrained() {
+        return queue.isEmpty() && started();
+    }
+
+    /**
+     * 已停止且队列已处理完时，从消费线程解绑
+     */
+    private synchronized void exit() {
+        AsyncDispatcher.Worker current = worker;
+        if (started() || current == null) {
+            // 已被重新启动
+            return;
+        }
+        current.remove(this);
+        worker = null;
+    }
+
+    private void wakeup(boolean force) {
+        AsyncDispatcher.Worker current = worker;
+        if (current != null) {
+            current.wakeup(force);
+        }
+    }
+
+    /**
+     * 消费线程自身(包括同一线程上的其他appender)在队列满时不能等待
+     */
+    private boolean isConsumerThread() {
+        AsyncDispatcher.Worker current = worker;
+        return current != null && current.isCurrentThread();
+    }
+
+    private void discard() {
+        discardedCount.incrementAndGet();
+    }
+
+    private void reportDiscarded() {
+        if (overflowPolicy != OverflowPolicy.COUNT_AND_DISCARD) {
+            return;
+        }
+        long discarded = discardedCount.get();
+        if (discarded != reportedDiscardedCount) {
+            System.err.printf("autotrace4j %s discarded %d log events since start, queue capacity %d%n",
+                    getClass().getSimpleName(), discarded, queue.capacity());
+            reportedDiscardedCount = discarded;
+        }
+    }
+
+    /**
+     * 队列为空时消费线程的等待策略
+     */
+    public enum WaitStrategy {
+        /** park直到生产者唤醒 */
+        PARK {
+            @Override
+            void await(AsyncDispatcher.Worker worker) {
+                worker.waiting = true;
+                if (worker.shouldWait()) {
+                    LockSupport.parkNanos(worker, MAX_WAIT_NANOS);
+                }
+                worker.waiting = false;
+            }
+        },
+        /** 让出CPU后立即重试，延迟最低但会占用CPU */
+        YIELD {
+            @Override
+            void await(AsyncDispatcher.Worker worker) {
+                Thread.yield();
+            }
+        },
+        /** 在锁的条件上等待直到生产者唤醒 */
+        BLOCK {
+            @Override
+            void await(AsyncDispatcher.Worker worker) {
+                worker.waitLock.lock();
                 try {
-                    if (started()) {
-                        E event = queue.take();
-                        doAppend(event);
+                    worker.waiting = true;
+                    if (worker.shouldWait()) {
+                        worker.notEmpty.awaitNanos(MAX_WAIT_NANOS);
                     }
                 } catch (InterruptedException e) {
-                    e.printStackTrace();
+                    // 仅用于唤醒，继续消费
+                } finally {
+                    worker.waiting = false;
+                    worker.waitLock.unlock();
                 }
             }
-        });
-
-        // Fix: 设置成守护线程以防止主线程退出时阻止JVM的停止
-        async.setDaemon(true);
-
-        async.start();
+        },
+        ;
 
-        return super.start();
+        abstract void await(AsyncDispatcher.Worker worker);
     }
 
-    @Override
-    public final void append(E event) {
-        queue.offer(event);
-    }
+    /**
+     * 队列满时的溢出策略
+     */
+    public enum OverflowPolicy {
+        /** 丢弃新事件 */
+        DROP_NEWEST {
+            @Override
+            <E> void overflow(AsyncAppender<E> appender, E event) {
+                appender.discard();
+            }
+        },
+        /** 丢弃最旧的事件，为新事件腾出位置 */
+        DROP_OLDEST {
+            @Override
+            <E> void overflow(AsyncAppender<E> appender, E event) {
+                while (!appender.queue.offer(event)) {
+                    if (appender.queue.poll() != null) {
+                        appender.discard();
+                    }
+                }
+                appender.wakeup(false);
+            }
+        },
+        /** 生产者等待直到队列有空位，消费线程自身或已停止时丢弃 */
+        BLOCK {
+            @Override
+            <E> void overflow(AsyncAppender<E> appender, E event) {
+                while (!appender.queue.offer(event)) {
+                    if (!appender.started() || appender.isConsumerThread()) {
+                        appender.discard();
+                        return;
+                    }
+                    appender.wakeup(true);
+                    LockSupport.parkNanos(OVERFLOW_WAIT_NANOS);
+                }
+                appender.wakeup(false);
+            }
+        },
+        /** 丢弃新事件，并由消费线程输出丢弃计数 */
+        COUNT_AND_DISCARD {
+            @Override
+            <E> void overflow(AsyncAppender<E> appender, E event) {
+                appender.discard();
+            }
+        },
+        ;
 
-    abstract void doAppend(E event);
+        abstract <E> void overflow(AsyncAppender<E> appender, E event);
+    }
 
 }
@@ -0,0 +1,204 @@
+package io.github.artlibs.autotrace4j.logger.appender;
+
+import io.github.artlibs.autotrace4j.logger.appender.AsyncAppender.WaitStrategy;
+import io.github.artlibs.autotrace4j.support.SystemUtils;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static io.github.artlibs.autotrace4j.support.Constants.*;
+
+/**
+ * 功能：所有AsyncAppender共享的异步分发线程
+ * <p>
+ * 每个AsyncAppender保留自己的队列，启动时绑定到固定数量的工作线程之一(按等待策略分组，
+ * 默认每组1个线程，可通过autotrace4j.log.async.threads配置)，同一个appender始终由同一个线程消费，
+ * 因此doAppend仍是串行的；工作线程轮流从各个队列取一个批次处理，没有appender时线程退出，
+ * 有新的appender绑定时再启动.
+ * <p>
+ * 另提供共享的定时线程，供文件清理等后台任务使用，空闲时线程退出.
+ *
+ * @author suopovate
+ * @since 2024/12/15
+ * <p>
+ * All rights Reserved.
+ */
+final class AsyncDispatcher {
+    private AsyncDispatcher() {}
+
+    private static final int BATCH_SIZE = 256;
+    private static final long SCHEDULER_KEEP_ALIVE_SECONDS = 60;
+    private static final int THREADS = Math.max(SystemUtils.getSysPropertyInteger(SYSTEM_PROPERTY_LOG_ASYNC_THREADS)
+            .orElse(DEFAULT_LOG_ASYNC_THREADS), 1);
+    private static final Map<WaitStrategy, Worker[]> WORKERS = new EnumMap<>(WaitStrategy.class);
+    private static final AtomicInteger THREAD_INDEX = new AtomicInteger();
+
+    static {
+        for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+            Worker[] workers = new Worker[THREADS];
+            for (int i = 0; i < THREADS; i++) {
+                workers[i] = new Worker(waitStrategy);
+            }
+            WORKERS.put(waitStrategy, workers);
+        }
+    }
+
+    /**
+     * 绑定到appender数最少的工作线程
+     *
+     * @param appender appender
+     * @param waitStrategy 等待策略
+     * @return 工作线程
+     */
+    static Worker register(AsyncAppender<?> appender, WaitStrategy waitStrategy) {
+        Worker target = null;
+        for (Worker worker : WORKERS.get(waitStrategy)) {
+            if (target == null || worker.appenders.length < target.appenders.length) {
+                target = worker;
+            }
+        }
+        target.add(appender);
+        return target;
+    }
+
+    /**
+     * @return 共享的定时线程
+     */
+    static ScheduledExecutorService scheduler() {
+        return SchedulerHolder.SCHEDULER;
+    }
+
+    private static Thread newThread(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, "autotrace4j-" + name + "-" + THREAD_INDEX.incrementAndGet());
+        // 设置成守护线程以防止主线程退出时阻止JVM的停止
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static final class SchedulerHolder {
+        private static final ScheduledThreadPoolExecutor SCHEDULER = new ScheduledThreadPoolExecutor(1,
+                runnable -> newThread(runnable, "scheduler"));
+
+        static {
+            SCHEDULER.setKeepAliveTime(SCHEDULER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+            SCHEDULER.allowCoreThreadTimeOut(true);
+            SCHEDULER.setRemoveOnCancelPolicy(true);
+        }
+    }
+
+    /**
+     * 工作线程，轮流消费绑定的appender的队列
+     */
+    static final class Worker implements Runnable {
+        private static final AsyncAppender<?>[] EMPTY = new AsyncAppender<?>[0];
+
+        private final WaitStrategy waitStrategy;
+        private volatile AsyncAppender<?>[] appenders = EMPTY;
+        private volatile Thread thread;
+        volatile boolean waiting;
+        final ReentrantLock waitLock = new ReentrantLock();
+        final Condition notEmpty = waitLock.newCondition();
+
+        private Worker(WaitStrategy waitStrategy) {
+            this.waitStrategy = waitStrategy;
+        }
+
+        private synchronized void add(AsyncAppender<?> appender) {
+            AsyncAppender<?>[] newAppenders = Arrays.copyOf(appenders, appenders.length + 1);
+            newAppenders[appenders.length] = appender;
+            appenders = newAppenders;
+            if (thread == null) {
+                thread = newThread(this, "async");
+                thread.start();
+            }
+        }
+
+        synchronized void remove(AsyncAppender<?> appender) {
+            AsyncAppender<?>[] newAppenders = new AsyncAppender<?>[appenders.length - 1];
+            int i = 0;
+            for (AsyncAppender<?> current : appenders) {
+                if (current != appender) {
+                    newAppenders[i++] = current;
+                }
+            }
+            appenders = newAppenders;
+        }
+
+        /**
+         * 没有appender时线程退出
+         */
+        private synchronized boolean exit() {
+            if (appenders.length > 0) {
+                return false;
+            }
+            thread = null;
+            return true;
+        }
+
+        @Override
+        public void run() {
+            Object[] batch = new Object[BATCH_SIZE];
+            while (true) {
+                AsyncAppender<?>[] current = appenders;
+                boolean busy = false;
+                for (AsyncAppender<?> appender : current) {
+                    busy |= appender.consume(batch);
+                }
+                if (busy) {
+                    continue;
+                }
+                for (AsyncAppender<?> appender : current) {
+                    appender.idleOrExit();
+                }
+                if (exit()) {
+                    return;
+                }
+                waitStrategy.await(this);
+            }
+        }
+
+        /**
+         * @return 所有队列都为空且没有待退出的appender时才等待
+         */
+        boolean shouldWait() {
+            for (AsyncAppender<?> appender : appenders) {
+                if (!appender.isDrained()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean isCurrentThread() {
+            return Thread.currentThread() == thread;
+        }
+
+        void wakeup(boolean force) {
+            if (!force && !waiting) {
+                return;
+            }
+            if (waitStrategy == WaitStrategy.BLOCK) {
+                waitLock.lock();
+                try {
+                    notEmpty.signalAll();
+                } finally {
+                    waitLock.unlock();
+                }
+            } else {
+                Thread current = thread;
+                if (current != null) {
+                    LockSupport.unpark(current);
+                }
+            }
+        }
+    }
+
+}
@@ -43,6 +43,11 @@ public final class ConsoleAppender extends AsyncAppender<LogEvent> {
         return event != null;
     }
 
+    @Override
+    public boolean supportAllEvents() {
+        return true;
+    }
+
     @Override
     void doAppend(LogEvent event) {
         if (started()) {
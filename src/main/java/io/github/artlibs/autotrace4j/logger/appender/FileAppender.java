@@ -3,14 +3,21 @@ package io.github.artlibs.autotrace4j.logger.appender;
 import io.github.artlibs.autotrace4j.exception.CreateAppenderException;
 import io.github.artlibs.autotrace4j.logger.Logger;
 import io.github.artlibs.autotrace4j.logger.LoggerFactory;
+import io.github.artlibs.autotrace4j.logger.event.Level;
 import io.github.artlibs.autotrace4j.logger.event.LogEvent;
+import io.github.artlibs.autotrace4j.logger.layout.BinaryLayout;
 import io.github.artlibs.autotrace4j.logger.layout.Layout;
+import io.github.artlibs.autotrace4j.support.SystemUtils;
 import io.github.artlibs.autotrace4j.support.Tuple2;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.spi.AbstractInterruptibleChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -18,18 +25,20 @@ import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
-import java.util.Comparator;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
 
 import static io.github.artlibs.autotrace4j.support.Constants.*;
 
@@ -37,6 +46,19 @@ import static io.github.artlibs.autotrace4j.support.Constants.*;
  * 功能：默认日志输出-文件
  * <p>
  * 支持自动清理/日志文件按天滚动记录.
+ * <p>
+ * 目录只在init时扫描一次，已有日志文件按日期建立内存索引，滚动与清理时更新索引；
+ * 过期文件的删除在清理线程中进行，不阻塞写入.
+ * <p>
+ * 写入: 消费线程把事件直接编码进一个复用的直接缓冲区，按策略整块写入文件：
+ * 缓冲区写满时、队列处理完时(或距上次刷盘超过autotrace4j.log.file.flush.interval毫秒时)、
+ * 以及ERROR级别事件写入后；文件大小与滚动时间在内存中维护，不再逐条查询文件.
+ * <p>
+ * mmap模式(autotrace4j.log.file.mmap=true): 按文件大小限制(不限制时按MIN_FILE_SIZE分段)预先映射文件，
+ * 直接编码进映射区并移动位置，映射区满时映射下一段；文件在滚动或停止时截断到实际写入的大小，
+ * 进程异常退出时文件末尾可能残留0字节，重新打开时会跳过.
+ * <p>
+ * 使用{@link BinaryLayout}时按二进制格式输出到.bin文件，可用BinaryLogDecoder还原为文本.
  *
  * @author suopovate
  * @since 2024/04/27
@@ -46,15 +68,21 @@ import static io.github.artlibs.autotrace4j.support.Constants.*;
 @SuppressWarnings({"resource", "UnusedReturnValue" })
 public final class FileAppender extends AsyncAppender<LogEvent> {
     public static final int MIN_FILE_SIZE = 10 * 1024 * 1024;
-    private static final int WRITE_BUFFER_SIZE = 1024;
+    private static final int MIN_WRITE_BUFFER_SIZE = 1024;
+    private static final int MAX_FORMAT_BUFFER_SIZE = 8 * 1024;
+    private static final long FILE_CHECK_INTERVAL_MILLIS = 1000;
     private static final String FILE_SUFFIX = ".log";
+    private static final String BINARY_FILE_SUFFIX = ".bin";
     private static final Logger logger = LoggerFactory.getLogger(FileAppender.class);
 
     private final Layout<LogEvent> layout;
+    /** 二进制格式，为null时按文本格式输出 */
+    private final BinaryLayout binaryLayout;
+    private final String logFileSuffix;
     private final Path directory;
     private final AtomicReference<Tuple2<Path, FileChannel>> logFile;
-    private final Lock fileOptionLock;
-    private final ScheduledExecutorService scheduledExecutorService;
+    /** 日志文件索引: 日期 -> 文件 */
+    private final ConcurrentSkipListMap<LocalDate, Set<Path>> logFileIndex;
     /**
      * 默认最长保留七天
      * 注意: 如果可配置,本值最少要保留一天(当天日志不删除).
@@ -65,9 +93,34 @@ public final class FileAppender extends AsyncAppender<LogEvent> {
      */
     @SuppressWarnings("FieldMayBeFinal")
     private int logFileSizeBytes;
-
-    private final ThreadLocal<ByteBuffer> logWriteBuffer = ThreadLocal.withInitial(
-            () -> ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE));
+    /**
+     * 0代表队列处理完即刷盘，否则最迟间隔该毫秒数刷盘
+     */
+    private final long flushIntervalMillis;
+
+    /* 以下状态只由消费线程访问 */
+    private final ByteBuffer writeBuffer;
+    /** 复用的格式化缓冲区 */
+    private final StringBuilder formatBuffer = new StringBuilder(256);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    /** 当前文件大小，包含缓冲区中未写入的部分 */
+    private long logFileSize;
+    /** 当前文件需要滚动的时间(次日零点) */
+    private long logFileRollTime;
+    private long lastFlushTime;
+    private long lastFileCheckTime;
+    private boolean logFileMissing;
+    /** 当前文件的日期与当天的分段序号 */
+    private LocalDate logFileDate;
+    private int logFileSegment;
+    /** 每打开一个文件加1 */
+    private int logFileGeneration;
+    /** mmap模式 */
+    private final boolean mmap;
+    private MappedByteBuffer mappedBuffer;
+    private long mappedBase;
 
     @SuppressWarnings("unused")
     public FileAppender(Layout<LogEvent> layout, Path directory) {
@@ -79,6 +132,14 @@ public final class FileAppender extends AsyncAppender<LogEvent> {
     }
 
     public FileAppender(Layout<LogEvent> layout, Path directory, int logFileRetentionDays, int logFileSizeBytes) {
+        this(layout, directory, logFileRetentionDays, logFileSizeBytes,
+                SystemUtils.getSysPropertyInteger(SYSTEM_PROPERTY_LOG_FILE_BUFFER_SIZE).orElse(DEFAULT_LOG_FILE_BUFFER_SIZE),
+                SystemUtils.getSysPropertyInteger(SYSTEM_PROPERTY_LOG_FILE_FLUSH_INTERVAL).orElse(0),
+                SystemUtils.getSysPropertyBool(SYSTEM_PROPERTY_LOG_FILE_MMAP).orElse(Boolean.FALSE));
+    }
+
+    public FileAppender(Layout<LogEvent> layout, Path directory, int logFileRetentionDays, int logFileSizeBytes,
+                        int writeBufferSize, long flushIntervalMillis, boolean mmap) {
         if (Objects.isNull(directory) || (Files.exists(directory) && !Files.isDirectory(directory))) {
             throw new CreateAppenderException("log directory missing, it will not record any log event");
         }
@@ -90,58 +151,66 @@ public final class FileAppender extends AsyncAppender<LogEvent> {
             }
         }
         this.layout = layout;
+        this.binaryLayout = layout instanceof BinaryLayout ? (BinaryLayout) layout : null;
+        this.logFileSuffix = binaryLayout != null ? BINARY_FILE_SUFFIX : FILE_SUFFIX;
         this.directory = directory;
         this.logFile = new AtomicReference<>();
-        this.fileOptionLock = new ReentrantLock();
-        this.scheduledExecutorService = Executors.newScheduledThreadPool(1);
+        this.logFileIndex = new ConcurrentSkipListMap<>();
         // <=0则不删除文件
         this.logFileRetentionDays = Math.max(logFileRetentionDays, 0);
         // 最小10m,<=0则不限制.
         this.logFileSizeBytes = logFileSizeBytes <= 0 ? 0 : Math.max(logFileSizeBytes, MIN_FILE_SIZE);
+        this.writeBuffer = ByteBuffer.allocateDirect(Math.max(writeBufferSize, MIN_WRITE_BUFFER_SIZE));
+        this.flushIntervalMillis = Math.max(flushIntervalMillis, 0);
+        this.mmap = mmap;
         init();
     }
 
     private void init() {
         try {
-            LocalDateTime now = LocalDateTime.now();
-            Tuple2<Path, FileChannel> initLogFile = openLogFile(dateToLogFileName(now), computeFileIndex(now, false));
+            LocalDate today = LocalDate.now();
+            int segment = buildLogFileIndex(today);
+            Tuple2<Path, FileChannel> initLogFile = openLogFile(today, segment);
             logFile.set(initLogFile);
+            lastFlushTime = System.currentTimeMillis();
         } catch (IOException e) {
             throw new CreateAppenderException(e);
         }
     }
 
-    private int computeFileIndex(LocalDateTime date, boolean increment) throws IOException {
-        String todayFileNamePrefix = dateToLogFileName(date);
-        return Files.list(directory).filter(p -> p.toString().endsWith(FILE_SUFFIX))
-            .map(path -> {
-                String fileName = path.getFileName().toString().replace(FILE_SUFFIX, EMPTY);
-                int prefixIndex = fileName.lastIndexOf(todayFileNamePrefix);
-                if (prefixIndex != -1) {
-                    if (fileName.length() == todayFileNamePrefix.length()) {
-                        // same file
-                        return 0;
-                    }
-                    // +1 for '-'
-                    String indexStr = fileName.substring(prefixIndex + todayFileNamePrefix.length() + 1);
+    /**
+     * 扫描一次目录，建立日志文件索引
+     *
+     * @param today 今天
+     * @return 今天最后一个分段的序号
+     */
+    private int buildLogFileIndex(LocalDate today) throws IOException {
+        String todayFileNamePrefix = dateToLogFileName(today.atStartOfDay());
+        int segment = 0;
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Path path : (Iterable<Path>) paths.filter(p -> p.toString().endsWith(logFileSuffix))::iterator) {
+                Optional<Tuple2<LocalDateTime, Path>> dateAndPath = mapPathToLogFile(path);
+                if (!dateAndPath.isPresent()) {
+                    continue;
+                }
+                indexLogFile(dateAndPath.get().getFirst().toLocalDate(), path);
+                String fileName = path.getFileName().toString().replace(logFileSuffix, EMPTY);
+                if (fileName.startsWith(todayFileNamePrefix) && fileName.length() > todayFileNamePrefix.length()) {
+                    // +1 for '_'
                     try {
-                        return Integer.parseInt(indexStr);
+                        segment = Math.max(segment, Integer.parseInt(
+                                fileName.substring(todayFileNamePrefix.length() + 1)));
                     } catch (NumberFormatException e) {
-                        return null;
+                        // not a segment
                     }
                 }
-                return null;
-            })
-            .filter(Objects::nonNull)
-            .max(Integer::compareTo)
-            .map(integer -> increment ? integer + 1 : integer)
-            .orElse(0);
+            }
+        }
+        return segment;
     }
 
-    @Override
-    public boolean stop() {
-        scheduledExecutorService.shutdown();
-        return super.stop();
+    private void indexLogFile(LocalDate date, Path path) {
+        logFileIndex.computeIfAbsent(date, d -> ConcurrentHashMap.newKeySet()).add(path);
     }
 
     @Override
@@ -149,57 +218,277 @@ public final class FileAppender extends AsyncAppender<LogEvent> {
         return event != null;
     }
 
+    @Override
+    public boolean supportAllEvents() {
+        return true;
+    }
+
     @Override
     void doAppend(LogEvent event) {
         try {
-            String message = layout.format(event);
-            byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
-            Tuple2<Path, FileChannel> logFileTuple = getLogFile(bytes.length);
-            if (Objects.nonNull(logFileTuple)) {
-                int len = bytes.length;
-                int rem = len;
-                while (rem > 0) {
-                    int n = Math.min(rem, WRITE_BUFFER_SIZE);
-                    logWriteBuffer.get().clear();
-                    logWriteBuffer.get().put(bytes, (len - rem), n);
-                    logWriteBuffer.get().flip();
-                    logFileTuple.getSecond().write(logWriteBuffer.get());
-                    rem -= n;
-                }
+            Tuple2<Path, FileChannel> logFileTuple = binaryLayout != null ? appendBinary(event) : appendText(event);
+            if (Objects.nonNull(logFileTuple) && Objects.equals(event.getLevel(), Level.ERROR)) {
+                flush(logFileTuple.getSecond());
             }
         } catch (Exception e) {
             logger.error(e.getMessage(), e);
+        } finally {
+            if (formatBuffer.capacity() > MAX_FORMAT_BUFFER_SIZE) {
+                // 超长的消息(如异常堆栈)之后释放多余的容量
+                formatBuffer.setLength(0);
+                formatBuffer.trimToSize();
+                formatBuffer.ensureCapacity(MAX_FORMAT_BUFFER_SIZE);
+            }
         }
     }
 
-    private Tuple2<Path, FileChannel> getLogFile(int messageLength) throws IOException {
-        String logFileNamePrefix = dateToLogFileName(LocalDateTime.now());
-        Tuple2<Path, FileChannel> fileAndChannel;
-        while (!isValidLogFile(fileAndChannel = logFile.get(), messageLength)) {
-            fileOptionLock.lock();
+    private Tuple2<Path, FileChannel> appendText(LogEvent event) throws IOException {
+        StringBuilder message = formatBuffer;
+        message.setLength(0);
+        layout.format(event, message);
+        int length = utf8Length(message);
+        Tuple2<Path, FileChannel> logFileTuple = getLogFile(length);
+        if (Objects.nonNull(logFileTuple)) {
+            encode(message, logFileTuple.getSecond());
+            logFileSize += length;
+        }
+        return logFileTuple;
+    }
+
+    private Tuple2<Path, FileChannel> appendBinary(LogEvent event) throws IOException {
+        int generation = logFileGeneration;
+        ByteBuffer record = binaryLayout.encode(event);
+        Tuple2<Path, FileChannel> logFileTuple = getLogFile(record.remaining());
+        if (Objects.isNull(logFileTuple)) {
+            return null;
+        }
+        if (generation != logFileGeneration) {
+            // 已滚动到新文件，字符串编号需要在新文件中重新定义
+            record = binaryLayout.encode(event);
+        }
+        int length = record.remaining();
+        try {
+            write(record, logFileTuple.getSecond());
+        } catch (IOException | RuntimeException e) {
+            // 本条记录中新编号的字符串未必写入了文件，之后的记录不能再引用
+            binaryLayout.reset();
+            throw e;
+        }
+        logFileSize += length;
+        return logFileTuple;
+    }
+
+    @Override
+    void endBatch() {
+        if (flushIntervalMillis > 0 && writeBuffer.position() > 0
+                && System.currentTimeMillis() - lastFlushTime >= flushIntervalMillis) {
+            flushQuietly();
+        }
+    }
+
+    @Override
+    void idle() {
+        if (mmap) {
+            if (!started()) {
+                trimMappedFile(logFile.get());
+            }
+            return;
+        }
+        if (writeBuffer.position() > 0 && (flushIntervalMillis <= 0 || !started()
+                || System.currentTimeMillis() - lastFlushTime >= flushIntervalMillis)) {
+            flushQuietly();
+        }
+    }
+
+    /**
+     * 编码进写缓冲区，缓冲区满时先写入文件
+     */
+    private void encode(CharSequence message, FileChannel channel) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(message);
+        encoder.reset();
+        while (encoder.encode(chars, target(channel), true).isOverflow()) {
+            drain(channel);
+        }
+        while (encoder.flush(target(channel)).isOverflow()) {
+            drain(channel);
+        }
+    }
+
+    /**
+     * 复制进写缓冲区，缓冲区满时先写入文件
+     */
+    private void write(ByteBuffer bytes, FileChannel channel) throws IOException {
+        while (bytes.hasRemaining()) {
+            ByteBuffer target = target(channel);
+            if (!target.hasRemaining()) {
+                drain(channel);
+                continue;
+            }
+            int limit = bytes.limit();
+            bytes.limit(bytes.position() + Math.min(bytes.remaining(), target.remaining()));
+            target.put(bytes);
+            bytes.limit(limit);
+        }
+    }
+
+    /**
+     * 编码目标: 写缓冲区或映射区
+     */
+    private ByteBuffer target(FileChannel channel) throws IOException {
+        if (!mmap) {
+            return writeBuffer;
+        }
+        if (Objects.isNull(mappedBuffer)) {
+            map(channel, logFileSize);
+        }
+        return mappedBuffer;
+    }
+
+    /**
+     * 目标已满: 写入文件或映射下一段
+     */
+    private void drain(FileChannel channel) throws IOException {
+        if (mmap) {
+            map(channel, mappedBase + mappedBuffer.position());
+        } else {
+            flush(channel);
+        }
+    }
+
+    private void map(FileChannel channel, long position) throws IOException {
+        long mapSize = logFileSizeBytes > 0 ? logFileSizeBytes : MIN_FILE_SIZE;
+        mappedBuffer = channel.map(FileChannel.MapMode.READ_WRITE, position, mapSize);
+        mappedBase = position;
+    }
+
+    /**
+     * 把映射模式下预分配的文件截断到实际写入的大小
+     */
+    private void trimMappedFile(Tuple2<Path, FileChannel> fileAndChannel) {
+        if (Objects.isNull(mappedBuffer)) {
+            return;
+        }
+        long end = mappedBase + mappedBuffer.position();
+        mappedBuffer = null;
+        if (Objects.nonNull(fileAndChannel) && fileAndChannel.getSecond().isOpen()) {
             try {
-                fileAndChannel = logFile.get();
-                if (isValidLogFile(fileAndChannel, messageLength)) {
-                    return fileAndChannel;
-                }
-                try {
-                    // clos the old channel
-                    closedFileChannel(logFile.get());
-                    LocalDateTime date = LocalDateTime.now();
-                    int fileIndex = computeFileIndex(date, true);
-                    fileAndChannel = openLogFile(logFileNamePrefix, fileIndex);
-                    logFile.set(fileAndChannel);
-                    // trigger expired clean task
-                    if (logFileRetentionDays > 0) {
-                        triggerCleanTask(date);
-                    }
-                } catch (IOException e) {
-                    logger.error("log file create error {}", e.getMessage(), e);
-                    return null;
+                fileAndChannel.getSecond().truncate(end);
+            } catch (IOException e) {
+                logger.error("log file truncate failed: %s", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 映射模式下文件末尾可能残留未截断的0字节(异常退出)，从末尾跳过
+     */
+    private static long mappedFileSize(FileChannel channel) throws IOException {
+        long size = channel.size();
+        ByteBuffer tail = ByteBuffer.allocate(8192);
+        while (size > 0) {
+            tail.clear();
+            long start = Math.max(size - tail.capacity(), 0);
+            tail.limit((int) (size - start));
+            while (tail.hasRemaining() && channel.read(tail, start + tail.position()) >= 0) {
+                // read fully
+            }
+            for (int i = tail.position() - 1; i >= 0; i--) {
+                if (tail.get(i) != 0) {
+                    return start + i + 1;
                 }
-            } finally {
-                fileOptionLock.unlock();
             }
+            size = start;
+        }
+        return 0;
+    }
+
+    private void flush(FileChannel channel) throws IOException {
+        if (mmap) {
+            // 映射区的内容对其他读者立即可见
+            return;
+        }
+        writeBuffer.flip();
+        try {
+            while (writeBuffer.hasRemaining()) {
+                channel.write(writeBuffer);
+            }
+        } catch (IOException | RuntimeException e) {
+            if (binaryLayout != null) {
+                // 缓冲区中的字符串定义随之丢弃，从新的文件头开始重新定义
+                binaryLayout.reset();
+            }
+            throw e;
+        } finally {
+            writeBuffer.clear();
+            lastFlushTime = System.currentTimeMillis();
+        }
+    }
+
+    private void flushQuietly() {
+        Tuple2<Path, FileChannel> logFileTuple = logFile.get();
+        try {
+            if (Objects.nonNull(logFileTuple)) {
+                flush(logFileTuple.getSecond());
+            } else {
+                writeBuffer.clear();
+            }
+        } catch (Exception e) {
+            logger.error("log file flush failed: %s", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * UTF-8编码后的长度，非法的代理字符按替换字符'?'计算，与编码器一致
+     */
+    private static int utf8Length(CharSequence message) {
+        int len = message.length();
+        int bytes = len;
+        for (int i = 0; i < len; i++) {
+            char c = message.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+            if (c < 0x800) {
+                bytes += 1;
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(message.charAt(i + 1))) {
+                // 4 bytes for 2 chars
+                bytes += 2;
+                i++;
+            } else if (!Character.isSurrogate(c)) {
+                bytes += 2;
+            }
+        }
+        return bytes;
+    }
+
+    private Tuple2<Path, FileChannel> getLogFile(int messageLength) throws IOException {
+        Tuple2<Path, FileChannel> fileAndChannel = logFile.get();
+        if (isValidLogFile(fileAndChannel, messageLength)) {
+            return fileAndChannel;
+        }
+        try {
+            // write the pending bytes and close the old channel
+            if (Objects.nonNull(fileAndChannel) && writeBuffer.position() > 0) {
+                flush(fileAndChannel.getSecond());
+            }
+        } finally {
+            writeBuffer.clear();
+            trimMappedFile(fileAndChannel);
+            closedFileChannel(fileAndChannel);
+        }
+        try {
+            LocalDate today = LocalDate.now();
+            int segment = today.equals(logFileDate) ? logFileSegment + 1 : 0;
+            fileAndChannel = openLogFile(today, segment);
+            logFile.set(fileAndChannel);
+            // trigger expired clean task
+            if (logFileRetentionDays > 0) {
+                triggerCleanTask(today.atStartOfDay());
+            }
+        } catch (IOException e) {
+            logFile.set(null);
+            logger.error("log file create error %s", e.getMessage(), e);
+            return null;
         }
         return fileAndChannel;
     }
@@ -213,65 +502,75 @@ public final class FileAppender extends AsyncAppender<LogEvent> {
      * @return -
      */
     private ScheduledFuture<?> triggerCleanTask(LocalDateTime date) {
-        return scheduledExecutorService.schedule(new CleanerTask(date, this), 0, TimeUnit.MILLISECONDS);
+        return AsyncDispatcher.scheduler().schedule(new CleanerTask(date, this), 0, TimeUnit.MILLISECONDS);
     }
 
-    private Tuple2<Path, FileChannel> openLogFile(String logFileNamePrefix, int fileIndex) throws IOException {
-        Path path = directory.resolve(logFileNamePrefix + (fileIndex == 0 ? EMPTY : "_" + fileIndex) + FILE_SUFFIX);
-        FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.APPEND, StandardOpenOption.CREATE);
+    private Tuple2<Path, FileChannel> openLogFile(LocalDate date, int segment) throws IOException {
+        String logFileNamePrefix = dateToLogFileName(date.atStartOfDay());
+        Path path = directory.resolve(logFileNamePrefix + (segment == 0 ? EMPTY : "_" + segment) + logFileSuffix);
+        FileChannel fileChannel;
+        if (mmap) {
+            fileChannel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+            logFileSize = mappedFileSize(fileChannel);
+        } else {
+            fileChannel = FileChannel.open(path, StandardOpenOption.APPEND, StandardOpenOption.CREATE);
+            logFileSize = fileChannel.size();
+        }
+        logFileRollTime = date.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        logFileDate = date;
+        logFileSegment = segment;
+        logFileGeneration++;
+        if (binaryLayout != null) {
+            binaryLayout.reset();
+        }
+        indexLogFile(date, path);
+        lastFileCheckTime = System.currentTimeMillis();
+        logFileMissing = false;
         return new Tuple2<>(path, fileChannel);
     }
 
-    private boolean isValidLogFile(Tuple2<Path, FileChannel> pathAndChannel, int messageLength) throws IOException {
+    private boolean isValidLogFile(Tuple2<Path, FileChannel> pathAndChannel, int messageLength) {
         if (Objects.isNull(pathAndChannel)) return false;
-        Path path = pathAndChannel.getFirst();
-        String logFileName = path.getFileName().toString();
-        boolean isTodayFile = logFileName.startsWith(dateToLogFileName(LocalDateTime.now()));
-        boolean exists = Files.exists(pathAndChannel.getFirst());
-        boolean sufficient = false;
-        if (exists && isTodayFile) {
-            // 针对消息体大于当前文件的情况,我们允许它本次将内容追加进去,作为兜底策略.
-            sufficient = capacitySufficient(pathAndChannel, messageLength) || isSuperMessage(messageLength);
+        long now = System.currentTimeMillis();
+        boolean isTodayFile = now < logFileRollTime;
+        if (now - lastFileCheckTime >= FILE_CHECK_INTERVAL_MILLIS) {
+            // 文件可能被外部删除，低频检查
+            lastFileCheckTime = now;
+            logFileMissing = !Files.exists(pathAndChannel.getFirst());
         }
-        return isTodayFile && exists && sufficient;
+        // 针对消息体大于当前文件的情况,我们允许它本次将内容追加进去,作为兜底策略.
+        boolean sufficient = capacitySufficient(messageLength) || isSuperMessage(messageLength);
+        return isTodayFile && !logFileMissing && sufficient;
     }
 
-    private boolean capacitySufficient(Tuple2<Path, FileChannel> pathAndChannel, int messageLength) throws IOException {
-        return logFileSizeBytes <= 0 || (pathAndChannel.getSecond().size() + messageLength <= logFileSizeBytes);
+    private boolean capacitySufficient(int messageLength) {
+        return logFileSizeBytes <= 0 || (logFileSize + messageLength <= logFileSizeBytes);
     }
 
     private boolean isSuperMessage(int messageLength) {
         return logFileSizeBytes > 0 && messageLength > logFileSizeBytes;
     }
 
-    private void cleanExpiredFiles(LocalDateTime triggerDate) throws IOException {
-        logger.info("Start clean expired log files,triggerDate: {}", triggerDate.format(DateTimeFormatter.ISO_LOCAL_DATE));
+    private void cleanExpiredFiles(LocalDateTime triggerDate) {
+        logger.info("Start clean expired log files,triggerDate: %s", triggerDate.format(DateTimeFormatter.ISO_LOCAL_DATE));
 
-        // 定时清理过期的日志文件
-        fileOptionLock.lock();
-        try {
-            LocalDateTime expiredTime = triggerDate
-                    .with(LocalTime.MIN)
-                    .minusDays(logFileRetentionDays);
-            Files.list(directory).filter(p -> p.toString().endsWith(FILE_SUFFIX))
-                    .map(FileAppender::mapPathToLogFile)
-                    .filter(Optional::isPresent)
-                    .map(Optional::get)
-                    .sorted(Comparator.comparing(Tuple2::getFirst))
-                    .forEach(dateAndPath -> {
-                        if (!dateAndPath.getFirst().isAfter(expiredTime)) {
-                            try {
-                                Files.deleteIfExists(dateAndPath.getSecond());
-                                logger.info("expired log file {} deleted.", dateAndPath.getSecond().toFile().getName());
-                            } catch (IOException e) {
-                                logger.error("delete expired log file failure: {}", e.getMessage(), e);
-                            }
-                        }
-                    });
-        } finally {
-            logger.info("clean expired log files finish.");
-            fileOptionLock.unlock();
+        // 从索引中摘除过期的日志文件后再删除，不阻塞写入
+        LocalDate expiredDate = triggerDate.toLocalDate().minusDays(logFileRetentionDays);
+        NavigableMap<LocalDate, Set<Path>> expired = logFileIndex.headMap(expiredDate, true);
+        for (Map.Entry<LocalDate, Set<Path>> dateAndPaths : expired.entrySet()) {
+            if (!logFileIndex.remove(dateAndPaths.getKey(), dateAndPaths.getValue())) {
+                continue;
+            }
+            for (Path path : dateAndPaths.getValue()) {
+                try {
+                    Files.deleteIfExists(path);
+                    logger.info("expired log file %s deleted.", path.getFileName());
+                } catch (IOException e) {
+                    logger.error("delete expired log file failure: %s", e.getMessage(), e);
+                }
+            }
         }
+        logger.info("clean expired log files finish.");
     }
 
     private static Optional<Tuple2<LocalDateTime, Path>> mapPathToLogFile(Path path) {
@@ -329,7 +628,7 @@ public final class FileAppender extends AsyncAppender<LogEvent> {
             try {
                 fileAppender.cleanExpiredFiles(triggerDate);
             } catch (Exception e) {
-                logger.error("clean expired log files failed: {}", e.getMessage(), e);
+                logger.error("clean expired log files failed: %s", e.getMessage(), e);
             }
         }
 
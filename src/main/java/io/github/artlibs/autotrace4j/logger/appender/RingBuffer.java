@@ -0,0 +1,133 @@
+package io.github.artlibs.autotrace4j.logger.appender;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 功能：有界无锁环形队列
+ * <p>
+ * 槽位在创建时一次性分配，入队/出队只做CAS与有序写，不会为每个元素分配节点；
+ * 每个槽位带一个序号，生产者与消费者通过序号判断槽位是否可写/可读(Vyukov MPMC)，
+ * 支持多生产者多消费者，以便溢出时生产者可以丢弃最旧的元素。
+ *
+ * @author suopovate
+ * @since 2024/12/15
+ * <p>
+ * All rights Reserved.
+ */
+public final class RingBuffer<E> {
+    /** 最大的2的幂，更大的容量向上取整时会溢出 */
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private final int mask;
+    private final Object[] buffer;
+    private final AtomicLongArray sequences;
+    /** 下一个写入位置 */
+    private final AtomicLong tail = new AtomicLong();
+    /** 下一个读取位置 */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * @param capacity 容量，向上取整为2的幂，最大2^30
+     */
+    public RingBuffer(int capacity) {
+        int size = sizeFor(capacity);
+        this.mask = size - 1;
+        this.buffer = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    private static int sizeFor(int capacity) {
+        return Integer.highestOneBit(Math.min(Math.max(capacity, 2), MAX_CAPACITY) - 1) << 1;
+    }
+
+    /**
+     * 入队
+     *
+     * @param element 元素
+     * @return 队列已满时返回false
+     */
+    public boolean offer(E element) {
+        long pos = tail.get();
+        int index;
+        while (true) {
+            index = (int) (pos & mask);
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                // full
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+        buffer[index] = element;
+        sequences.lazySet(index, pos + 1);
+        return true;
+    }
+
+    /**
+     * 出队
+     *
+     * @return 队列为空时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long pos = head.get();
+        int index;
+        while (true) {
+            index = (int) (pos & mask);
+            long diff = sequences.get(index) - (pos + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+                pos = head.get();
+            } else if (diff < 0) {
+                // empty
+                return null;
+            } else {
+                pos = head.get();
+            }
+        }
+        E element = (E) buffer[index];
+        buffer[index] = null;
+        sequences.lazySet(index, pos + mask + 1);
+        return element;
+    }
+
+    /**
+     * 批量出队
+     *
+     * @param batch 预分配的批次数组
+     * @return 出队的元素个数
+     */
+    public int drain(Object[] batch) {
+        int count = 0;
+        E element;
+        while (count < batch.length && (element = poll()) != null) {
+            batch[count++] = element;
+        }
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return head.get() >= tail.get();
+    }
+
+    public int size() {
+        return (int) Math.max(tail.get() - head.get(), 0);
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+
+}
@@ -0,0 +1,303 @@
+package io.github.artlibs.autotrace4j.logger.layout;
+
+import io.github.artlibs.autotrace4j.logger.Logger;
+import io.github.artlibs.autotrace4j.logger.event.Level;
+import io.github.artlibs.autotrace4j.logger.event.LogEvent;
+import io.github.artlibs.autotrace4j.support.ThrowableUtils;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 功能：二进制日志格式化器
+ * <p>
+ * 不渲染消息，只记录级别、时间增量、logger/线程/消息模板的字符串编号与原始参数，
+ * 由{@link BinaryLogDecoder}离线还原为与{@link DefaultLayout}一致的文本.
+ * <p>
+ * 文件格式: 文件头(AT4J+版本号)之后是一条条记录，记录以tag开始、以RECORD_END结束:
+ * 1. STRING: 编号(varint) + 字符串，定义一个字符串编号
+ * 2. EVENT: 级别 + 标志 + 时间增量(zigzag varint) + logger/线程/模板引用 + 参数个数 + 参数 + 异常文本
+ * 字符串编号只在当前文件内有效，新文件(以及重新打开的文件)从新的文件头开始.
+ * <p>
+ * 有状态，只能由一个FileAppender的消费线程使用.
+ *
+ * @author suopovate
+ * @since 2024/12/15
+ * <p>
+ * All rights Reserved.
+ */
+public final class BinaryLayout implements Layout<LogEvent> {
+    static final byte[] MAGIC = {'A', 'T', '4', 'J'};
+    static final byte VERSION = 1;
+    static final byte TAG_STRING = 1;
+    static final byte TAG_EVENT = 2;
+    static final byte RECORD_END = '\n';
+    static final int FLAG_TIME = 1;
+    static final int FLAG_THROWABLE = 2;
+    /** 字符串引用: 0为null, 1为内联字符串, 其他为编号 */
+    static final int REF_NULL = 0;
+    static final int REF_INLINE = 1;
+    static final int REF_FIRST_ID = 2;
+    static final byte ARG_NULL = 0;
+    static final byte ARG_LONG = 1;
+    static final byte ARG_DOUBLE = 2;
+    static final byte ARG_TRUE = 3;
+    static final byte ARG_FALSE = 4;
+    static final byte ARG_STRING = 5;
+    static final byte ARG_FLOAT = 6;
+    static final byte ARG_CHAR = 7;
+    static final byte ARG_INT = 8;
+    static final byte ARG_SHORT = 9;
+    static final byte ARG_BYTE = 10;
+    /** 字符串编号上限，超出后内联 */
+    private static final int MAX_STRING_IDS = 4096;
+    /** 超长的字符串不编号 */
+    private static final int MAX_INTERN_LENGTH = 512;
+    private static final int INITIAL_BUFFER_SIZE = 256;
+    /** 超长的事件(如异常堆栈)之后释放多余的容量 */
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+    private final DefaultLayout textLayout = new DefaultLayout();
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    private byte[] bytes = new byte[INITIAL_BUFFER_SIZE];
+    private int position;
+    private boolean headerPending = true;
+    private long lastEventTime;
+
+    @Override
+    public String format(LogEvent event) {
+        return textLayout.format(event);
+    }
+
+    /**
+     * 新文件或写入失败: 清空字符串编号，下一条记录前写文件头
+     */
+    public void reset() {
+        stringIds.clear();
+        headerPending = true;
+        lastEventTime = 0;
+    }
+
+    /**
+     * 编码一条事件，包括其引用的新字符串的定义
+     *
+     * @param event 事件
+     * @return 编码结果，在下一次调用前有效
+     */
+    public ByteBuffer encode(LogEvent event) {
+        position = 0;
+        if (bytes.length > MAX_RETAINED_BUFFER_SIZE) {
+            bytes = new byte[INITIAL_BUFFER_SIZE];
+        }
+        if (event == null || event.getMessage() == null) {
+            return ByteBuffer.wrap(bytes, 0, 0);
+        }
+        if (headerPending) {
+            writeBytes(MAGIC);
+            writeByte(VERSION);
+            headerPending = false;
+        }
+        Logger logger = event.getLogger();
+        Object[] args = event.getArguments();
+        Throwable throwable = event.getThrowable();
+        // 先定义新的字符串，事件中只写引用
+        int loggerRef = define(logger == null ? null : logger.getName());
+        int threadRef = define(event.getThreadName());
+        int messageRef = define(event.getMessage());
+        int argCount = args == null ? 0 : args.length;
+        String[] argStrings = null;
+        int[] argRefs = null;
+        for (int i = 0; i < argCount; i++) {
+            if (args[i] != null && isStringArg(args[i])) {
+                if (argRefs == null) {
+                    argStrings = new String[argCount];
+                    argRefs = new int[argCount];
+                }
+                argStrings[i] = String.valueOf(args[i]);
+                argRefs[i] = define(argStrings[i]);
+            }
+        }
+
+        Level level = event.getLevel();
+        Long eventTime = event.getEventTime();
+        writeByte(TAG_EVENT);
+        writeByte(level == null ? 0 : level.ordinal() + 1);
+        writeByte((eventTime == null ? 0 : FLAG_TIME) | (throwable == null ? 0 : FLAG_THROWABLE));
+        if (eventTime != null) {
+            writeVarLong(zigzag(eventTime - lastEventTime));
+            lastEventTime = eventTime;
+        }
+        writeRef(loggerRef, logger == null ? null : logger.getName());
+        writeRef(threadRef, event.getThreadName());
+        writeRef(messageRef, event.getMessage());
+        writeVarLong(argCount);
+        for (int i = 0; i < argCount; i++) {
+            if (argRefs != null && argStrings[i] != null) {
+                writeByte(ARG_STRING);
+                writeRef(argRefs[i], argStrings[i]);
+            } else {
+                writeArg(args[i]);
+            }
+        }
+        if (throwable != null) {
+            writeString(ThrowableUtils.throwableToStr(throwable));
+        }
+        writeByte(RECORD_END);
+        return ByteBuffer.wrap(bytes, 0, position);
+    }
+
+    private static boolean isStringArg(Object arg) {
+        return !(arg instanceof Boolean || arg instanceof Double || arg instanceof Float || arg instanceof Character
+                || isIntegral(arg));
+    }
+
+    private static boolean isIntegral(Object arg) {
+        return arg instanceof Long || arg instanceof Integer || arg instanceof Short || arg instanceof Byte
+                || (arg instanceof BigInteger && ((BigInteger) arg).bitLength() < Long.SIZE);
+    }
+
+    private void writeArg(Object arg) {
+        if (arg == null) {
+            writeByte(ARG_NULL);
+        } else if (arg instanceof Boolean) {
+            writeByte((Boolean) arg ? ARG_TRUE : ARG_FALSE);
+        } else if (arg instanceof Integer || arg instanceof Short || arg instanceof Byte) {
+            // 保留宽度，%x、%c等按宽度输出
+            writeByte(arg instanceof Integer ? ARG_INT : arg instanceof Short ? ARG_SHORT : ARG_BYTE);
+            writeVarLong(zigzag(((Number) arg).longValue()));
+        } else if (isIntegral(arg)) {
+            writeByte(ARG_LONG);
+            writeVarLong(zigzag(((Number) arg).longValue()));
+        } else if (arg instanceof Character) {
+            // %c不接受字符串
+            writeByte(ARG_CHAR);
+            writeVarLong((Character) arg);
+        } else if (arg instanceof Float) {
+            // 单独保存，按double还原时%s的输出与写入时不一致(1.1f -> 1.100000023841858)
+            writeByte(ARG_FLOAT);
+            int bits = Float.floatToRawIntBits((Float) arg);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                writeByte(bits >>> shift);
+            }
+        } else if (arg instanceof Double) {
+            writeByte(ARG_DOUBLE);
+            long bits = Double.doubleToRawLongBits((Double) arg);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                writeByte((int) (bits >>> shift));
+            }
+        } else {
+            writeByte(ARG_STRING);
+            writeRef(REF_INLINE, String.valueOf(arg));
+        }
+    }
+
+    /**
+     * 为新字符串分配编号并写定义记录
+     *
+     * @return 字符串引用
+     */
+    private int define(String value) {
+        if (value == null) {
+            return REF_NULL;
+        }
+        Integer id = stringIds.get(value);
+        if (id != null) {
+            return id;
+        }
+        if (stringIds.size() >= MAX_STRING_IDS || value.length() > MAX_INTERN_LENGTH) {
+            return REF_INLINE;
+        }
+        id = REF_FIRST_ID + stringIds.size();
+        stringIds.put(value, id);
+        writeByte(TAG_STRING);
+        writeVarLong(id);
+        writeString(value);
+        writeByte(RECORD_END);
+        return id;
+    }
+
+    private void writeRef(int ref, String value) {
+        writeVarLong(ref);
+        if (ref == REF_INLINE) {
+            writeString(value);
+        }
+    }
+
+    private void writeString(String value) {
+        int len = value.length();
+        int utf8Length = len;
+        for (int i = 0; i < len; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+            if (c < 0x800) {
+                utf8Length += 1;
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(value.charAt(i + 1))) {
+                // 4 bytes for 2 chars
+                utf8Length += 2;
+                i++;
+            } else if (!Character.isSurrogate(c)) {
+                utf8Length += 2;
+            }
+        }
+        writeVarLong(utf8Length);
+        ensureCapacity(utf8Length);
+        for (int i = 0; i < len; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes[position++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[position++] = (byte) (0xC0 | (c >> 6));
+                bytes[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                bytes[position++] = (byte) (0xF0 | (cp >> 18));
+                bytes[position++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                bytes[position++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                bytes[position++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // 非法的代理字符，与UTF-8编码器一样替换为'?'
+                bytes[position++] = '?';
+            } else {
+                bytes[position++] = (byte) (0xE0 | (c >> 12));
+                bytes[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+    }
+
+    private void writeByte(int value) {
+        ensureCapacity(1);
+        bytes[position++] = (byte) value;
+    }
+
+    private void writeBytes(byte[] value) {
+        ensureCapacity(value.length);
+        System.arraycopy(value, 0, bytes, position, value.length);
+        position += value.length;
+    }
+
+    private void ensureCapacity(int length) {
+        if (position + length > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length << 1, position + length));
+        }
+    }
+
+}
@@ -0,0 +1,256 @@
+package io.github.artlibs.autotrace4j.logger.layout;
+
+import io.github.artlibs.autotrace4j.logger.event.Level;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IllegalFormatException;
+import java.util.Map;
+
+import static io.github.artlibs.autotrace4j.logger.layout.BinaryLayout.*;
+
+/**
+ * 功能：二进制日志解码器
+ * <p>
+ * 把{@link BinaryLayout}写出的日志文件还原为与{@link DefaultLayout}一致的文本:
+ * <pre>
+ * java -cp autotrace4j.jar io.github.artlibs.autotrace4j.logger.layout.BinaryLogDecoder 2024-12-15.bin
+ * </pre>
+ *
+ * @author suopovate
+ * @since 2024/12/15
+ * <p>
+ * All rights Reserved.
+ */
+public final class BinaryLogDecoder {
+    private static final Level[] LEVELS = Level.values();
+
+    private final InputStream in;
+    private final DefaultLayout layout = new DefaultLayout();
+    private final Map<Integer, String> strings = new HashMap<>();
+    private final StringBuilder line = new StringBuilder(256);
+    private long offset;
+    private long lastEventTime;
+
+    private BinaryLogDecoder(InputStream in) {
+        this.in = in;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: java -cp autotrace4j.jar " + BinaryLogDecoder.class.getName() + " <log file>...");
+            return;
+        }
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        try {
+            for (String file : args) {
+                try (InputStream in = new BufferedInputStream(Files.newInputStream(Paths.get(file)))) {
+                    decode(in, out);
+                }
+            }
+        } finally {
+            out.flush();
+        }
+    }
+
+    /**
+     * 解码二进制日志
+     *
+     * @param in 二进制日志
+     * @param out 文本输出
+     * @throws IOException 读取失败或格式错误
+     */
+    public static void decode(InputStream in, Appendable out) throws IOException {
+        new BinaryLogDecoder(in).decode(out);
+    }
+
+    private void decode(Appendable out) throws IOException {
+        int tag;
+        while ((tag = in.read()) >= 0) {
+            long recordOffset = offset++;
+            try {
+                if (tag == 0) {
+                    // mmap模式下预分配、尚未截断的0字节
+                    continue;
+                }
+                if (tag == MAGIC[0]) {
+                    readHeader();
+                } else if (tag == TAG_STRING) {
+                    strings.put(readVarInt(), readString());
+                    readEnd(recordOffset);
+                } else if (tag == TAG_EVENT) {
+                    readEvent(recordOffset);
+                    out.append(line);
+                } else {
+                    throw new IOException("unknown record " + tag + " at offset " + recordOffset);
+                }
+            } catch (EOFException e) {
+                // 进程异常退出时最后一条记录可能不完整
+                System.err.println("truncated record at offset " + recordOffset);
+                return;
+            }
+        }
+    }
+
+    private void readHeader() throws IOException {
+        for (int i = 1; i < MAGIC.length; i++) {
+            if (readByte() != MAGIC[i]) {
+                throw new IOException("not an autotrace4j binary log, offset " + (offset - 1));
+            }
+        }
+        int version = readByte();
+        if (version != VERSION) {
+            throw new IOException("unsupported binary log version " + version);
+        }
+        // 新文件或重新打开的文件，字符串编号重新开始
+        strings.clear();
+        lastEventTime = 0;
+    }
+
+    private void readEvent(long recordOffset) throws IOException {
+        int levelOrdinal = readByte();
+        int flags = readByte();
+        Long eventTime = null;
+        if ((flags & FLAG_TIME) != 0) {
+            lastEventTime += unzigzag(readVarLong());
+            eventTime = lastEventTime;
+        }
+        String loggerName = readRef();
+        String threadName = readRef();
+        String message = readRef();
+        Object[] args = new Object[readVarInt()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = readArg();
+        }
+        String throwable = (flags & FLAG_THROWABLE) != 0 ? readString() : null;
+        readEnd(recordOffset);
+
+        String level = levelOrdinal > 0 && levelOrdinal <= LEVELS.length ? LEVELS[levelOrdinal - 1].name() : null;
+        line.setLength(0);
+        try {
+            layout.format(eventTime, threadName, level, loggerName, message, args, throwable, line);
+        } catch (IllegalFormatException e) {
+            // 与写入时的参数类型不完全一致(如%t的日期参数按字符串保存)，原样输出模板与参数
+            line.setLength(0);
+            String raw = message + " " + Arrays.toString(args);
+            layout.format(eventTime, threadName, level, loggerName, raw.replace("%", "%%"), null, throwable, line);
+        }
+    }
+
+    private Object readArg() throws IOException {
+        int type = readByte();
+        switch (type) {
+            case ARG_NULL:
+                return null;
+            case ARG_LONG:
+                return unzigzag(readVarLong());
+            case ARG_INT:
+                return (int) unzigzag(readVarLong());
+            case ARG_SHORT:
+                return (short) unzigzag(readVarLong());
+            case ARG_BYTE:
+                return (byte) unzigzag(readVarLong());
+            case ARG_DOUBLE:
+                long bits = 0;
+                for (int i = 0; i < Long.BYTES; i++) {
+                    bits = (bits << 8) | readByte();
+                }
+                return Double.longBitsToDouble(bits);
+            case ARG_FLOAT:
+                int floatBits = 0;
+                for (int i = 0; i < Integer.BYTES; i++) {
+                    floatBits = (floatBits << 8) | readByte();
+                }
+                return Float.intBitsToFloat(floatBits);
+            case ARG_CHAR:
+                return (char) readVarInt();
+            case ARG_TRUE:
+                return Boolean.TRUE;
+            case ARG_FALSE:
+                return Boolean.FALSE;
+            case ARG_STRING:
+                return readRef();
+            default:
+                throw new IOException("unknown argument type " + type + " at offset " + (offset - 1));
+        }
+    }
+
+    private String readRef() throws IOException {
+        int ref = readVarInt();
+        if (ref == REF_NULL) {
+            return null;
+        }
+        if (ref == REF_INLINE) {
+            return readString();
+        }
+        String value = strings.get(ref);
+        if (value == null) {
+            throw new IOException("undefined string " + ref + " at offset " + offset);
+        }
+        return value;
+    }
+
+    private String readString() throws IOException {
+        byte[] bytes = new byte[readVarInt()];
+        int read = 0;
+        while (read < bytes.length) {
+            int n = in.read(bytes, read, bytes.length - read);
+            if (n < 0) {
+                throw new EOFException();
+            }
+            read += n;
+        }
+        offset += bytes.length;
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void readEnd(long recordOffset) throws IOException {
+        if (readByte() != RECORD_END) {
+            throw new IOException("corrupted record at offset " + recordOffset);
+        }
+    }
+
+    private int readVarInt() throws IOException {
+        long value = readVarLong();
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IOException("invalid length " + value + " at offset " + offset);
+        }
+        return (int) value;
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("invalid varint at offset " + offset);
+    }
+
+    private int readByte() throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException();
+        }
+        offset++;
+        return b;
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+}
@@ -1,18 +1,29 @@
 package io.github.artlibs.autotrace4j.logger.layout;
 
 import io.github.artlibs.autotrace4j.logger.Logger;
+import io.github.artlibs.autotrace4j.logger.event.Level;
 import io.github.artlibs.autotrace4j.logger.event.LogEvent;
 import io.github.artlibs.autotrace4j.support.ThrowableUtils;
 
+import java.math.BigInteger;
+import java.text.DecimalFormatSymbols;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.Formattable;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static io.github.artlibs.autotrace4j.support.Constants.*;
 
 /**
  * 功能：默认日志格式化器
+ * <p>
+ * 直接写入调用方提供的StringBuilder：时间前缀按秒缓存，与LocalDateTime.toString()的输出一致；
+ * 消息模板预编译为文本段与占位符，按模板缓存，只支持%s、%d、%%与%n，其他情况仍交给String.format.
  *
  * @author suopovate
  * @since 2024/04/27
@@ -21,41 +32,216 @@ import static io.github.artlibs.autotrace4j.support.Constants.*;
  */
 public final class DefaultLayout implements Layout<LogEvent> {
     public static final String UNDEFINE = "undefine";
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+    private static final int MAX_CACHED_PATTERNS = 1024;
+    /** 默认Locale的数字不是ASCII时，%d交给String.format */
+    private static final boolean ASCII_DIGITS = DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT))
+            .getZeroDigit() == '0';
+
+    private final Map<String, MessagePattern> patternCache = new ConcurrentHashMap<>();
+    private volatile SecondCache secondCache;
 
     @Override
     public String format(LogEvent event) {
+        StringBuilder sb = new StringBuilder(128);
+        format(event, sb);
+        return sb.toString();
+    }
+
+    @Override
+    public void format(LogEvent event, StringBuilder sb) {
         if (event != null && event.getMessage() != null) {
             Logger logger = event.getLogger();
-            StringBuilder sb = new StringBuilder();
-            appendItem(
-                Optional
-                    .ofNullable(event.getEventTime())
-                    .map(eventTime -> LocalDateTime.ofInstant(Instant.ofEpochMilli(event.getEventTime()), ZoneId.systemDefault()))
-                    .map(LocalDateTime::toString)
-                    .orElse(UNDEFINE),
-                sb
-            );
-            appendItem(Optional.ofNullable(event.getThreadName()).orElse(UNDEFINE), sb);
-            appendItem(Optional.ofNullable(event.getLevel()).map(Enum::name).orElse(UNDEFINE), sb);
-            appendItem(Optional.ofNullable(logger).map(Logger::getName).orElse(UNDEFINE), sb);
-            sb.append("-");
-            sb.append(SPACE);
-            sb.append(String.format(event.getMessage(), event.getArguments()));
-            if (event.getThrowable() != null) {
-                sb.append(System.lineSeparator());
-                sb.append(ThrowableUtils.throwableToStr(event.getThrowable()));
-            }
-            sb.append(System.lineSeparator());
-            return sb.toString();
+            Level level = event.getLevel();
+            Throwable throwable = event.getThrowable();
+            format(event.getEventTime(), event.getThreadName(), level == null ? null : level.name(),
+                    logger == null ? null : logger.getName(), event.getMessage(), event.getArguments(),
+                    throwable == null ? null : ThrowableUtils.throwableToStr(throwable), sb);
         }
-        return "";
+    }
+
+    /**
+     * 按事件的各个字段格式化，二进制日志解码时复用
+     */
+    void format(Long eventTime, String threadName, String level, String loggerName,
+                String message, Object[] args, String throwable, StringBuilder sb) {
+        sb.append(LEFT_MIDDLE_BRACKET);
+        appendTime(eventTime, sb);
+        sb.append(RIGHT_MIDDLE_BRACKET).append(SPACE);
+        appendItem(threadName, sb);
+        appendItem(level, sb);
+        appendItem(loggerName, sb);
+        sb.append("-");
+        sb.append(SPACE);
+        appendMessage(message, args, sb);
+        if (throwable != null) {
+            sb.append(LINE_SEPARATOR);
+            sb.append(throwable);
+        }
+        sb.append(LINE_SEPARATOR);
     }
 
     private static void appendItem(String item, StringBuilder sb) {
         sb.append(LEFT_MIDDLE_BRACKET);
-        sb.append(item);
+        sb.append(item == null ? UNDEFINE : item);
         sb.append(RIGHT_MIDDLE_BRACKET);
         sb.append(SPACE);
     }
 
+    /**
+     * 与LocalDateTime.toString()一致: yyyy-MM-ddTHH:mm[:ss[.SSS]]
+     */
+    private void appendTime(Long eventTime, StringBuilder sb) {
+        if (eventTime == null) {
+            sb.append(UNDEFINE);
+            return;
+        }
+        long millis = eventTime;
+        long epochSecond = Math.floorDiv(millis, 1000L);
+        int milli = (int) Math.floorMod(millis, 1000L);
+        SecondCache cache = secondCache;
+        if (cache == null || cache.epochSecond != epochSecond) {
+            cache = new SecondCache(epochSecond);
+            secondCache = cache;
+        }
+        if (cache.fallback) {
+            sb.append(LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault()));
+            return;
+        }
+        sb.append(cache.minutePrefix);
+        if (cache.second > 0 || milli > 0) {
+            sb.append(':');
+            appendPadded(cache.second, 2, sb);
+        }
+        if (milli > 0) {
+            sb.append('.');
+            appendPadded(milli, 3, sb);
+        }
+    }
+
+    private static void appendPadded(int value, int width, StringBuilder sb) {
+        if (width == 3 && value < 100) {
+            sb.append('0');
+        }
+        if (value < 10) {
+            sb.append('0');
+        }
+        sb.append(value);
+    }
+
+    private void appendMessage(String message, Object[] args, StringBuilder sb) {
+        if (message.indexOf('%') < 0) {
+            // String.format on a plain message returns it as is
+            sb.append(message);
+            return;
+        }
+        MessagePattern pattern = patternCache.get(message);
+        if (pattern == null) {
+            pattern = MessagePattern.compile(message);
+            if (patternCache.size() < MAX_CACHED_PATTERNS) {
+                patternCache.put(message, pattern);
+            }
+        }
+        if (!pattern.appendTo(args, sb)) {
+            sb.append(String.format(message, args));
+        }
+    }
+
+    /**
+     * 按秒缓存的时间前缀: yyyy-MM-ddTHH:mm与秒
+     */
+    private static final class SecondCache {
+        private final long epochSecond;
+        private final String minutePrefix;
+        private final int second;
+        /** 年份超出4位时使用LocalDateTime.toString() */
+        private final boolean fallback;
+
+        private SecondCache(long epochSecond) {
+            LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochSecond(epochSecond), ZoneId.systemDefault());
+            this.epochSecond = epochSecond;
+            this.second = time.getSecond();
+            this.fallback = time.getYear() < 1000 || time.getYear() > 9999;
+            // yyyy-MM-ddTHH:mm
+            this.minutePrefix = time.withSecond(0).toString().substring(0, 16);
+        }
+    }
+
+    /**
+     * 预编译的消息模板: literals[i]在conversions[i]之前，最后一段文本在literals[n]
+     */
+    private static final class MessagePattern {
+        /** 含有不支持的格式，交给String.format */
+        private static final MessagePattern UNSUPPORTED = new MessagePattern(null, null);
+
+        private final String[] literals;
+        private final char[] conversions;
+
+        private MessagePattern(String[] literals, char[] conversions) {
+            this.literals = literals;
+            this.conversions = conversions;
+        }
+
+        private static MessagePattern compile(String message) {
+            List<String> literals = new ArrayList<>();
+            StringBuilder conversions = new StringBuilder();
+            StringBuilder literal = new StringBuilder();
+            int len = message.length();
+            for (int i = 0; i < len; i++) {
+                char c = message.charAt(i);
+                if (c != '%') {
+                    literal.append(c);
+                    continue;
+                }
+                if (i + 1 >= len) {
+                    return UNSUPPORTED;
+                }
+                char conversion = message.charAt(++i);
+                if (conversion == '%') {
+                    literal.append('%');
+                } else if (conversion == 'n') {
+                    literal.append(LINE_SEPARATOR);
+                } else if (conversion == 's' || conversion == 'd') {
+                    literals.add(literal.toString());
+                    literal.setLength(0);
+                    conversions.append(conversion);
+                } else {
+                    return UNSUPPORTED;
+                }
+            }
+            literals.add(literal.toString());
+            return new MessagePattern(literals.toArray(new String[0]), conversions.toString().toCharArray());
+        }
+
+        /**
+         * @return false if String.format is needed(e.g. to report a format error)
+         */
+        private boolean appendTo(Object[] args, StringBuilder sb) {
+            if (this == UNSUPPORTED) {
+                return false;
+            }
+            int count = conversions.length;
+            if (count > 0 && (args == null || args.length < count)) {
+                return false;
+            }
+            for (int i = 0; i < count; i++) {
+                Object arg = args[i];
+                if (arg instanceof Formattable) {
+                    return false;
+                }
+                if (conversions[i] == 'd' && arg != null && !(ASCII_DIGITS && (arg instanceof Integer
+                        || arg instanceof Long || arg instanceof Short || arg instanceof Byte
+                        || arg instanceof BigInteger))) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                sb.append(literals[i]);
+                sb.append(args[i]);
+            }
+            sb.append(literals[count]);
+            return true;
+        }
+    }
+
 }
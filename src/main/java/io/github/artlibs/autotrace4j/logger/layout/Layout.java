@@ -10,4 +10,14 @@ package io.github.artlibs.autotrace4j.logger.layout;
  */
 public interface Layout<E> {
     String format(E event);
+
+    /**
+     * 格式化并写入调用方提供(可复用)的StringBuilder
+     *
+     * @param event 事件
+     * @param sb 输出
+     */
+    default void format(E event, StringBuilder sb) {
+        sb.append(format(event));
+    }
 }
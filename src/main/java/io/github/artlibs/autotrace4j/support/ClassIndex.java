@@ -0,0 +1,127 @@
+package io.github.artlibs.autotrace4j.support;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static io.github.artlibs.autotrace4j.support.Constants.*;
+
+/**
+ * 功能：构建时生成的类索引
+ * <p>
+ * 启动时按索引加载转换器、注入bootstrap的类，不再扫描agent jar(打开zip文件系统、遍历目录、
+ * 加载包下的每一个类来判断类型)；索引由构建在process-classes阶段执行{@link #main(String[])}生成，
+ * 每行一个类名，缺失时(如IDE中直接运行未经Maven构建的类)回退到扫描.
+ *
+ * @author suopovate
+ * @since 2024-12-15
+ * <p>
+ * All rights Reserved.
+ */
+public final class ClassIndex {
+    private ClassIndex() {}
+
+    private static final String INDEX_DIR = "META-INF/autotrace4j/";
+
+    /**
+     * 读取索引
+     *
+     * @param indexName 索引名
+     * @return 类名列表，索引不存在时返回null
+     * @throws IOException 读取失败
+     */
+    public static List<String> read(String indexName) throws IOException {
+        ClassLoader classLoader = ClassIndex.class.getClassLoader();
+        InputStream in = Objects.isNull(classLoader)
+                ? ClassLoader.getSystemResourceAsStream(INDEX_DIR + indexName)
+                : classLoader.getResourceAsStream(INDEX_DIR + indexName);
+        if (Objects.isNull(in)) {
+            return null;
+        }
+        List<String> classNames = new ArrayList<>(64);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    classNames.add(line);
+                }
+            }
+        }
+        return classNames;
+    }
+
+    /**
+     * 构建时生成索引
+     * <p>
+     * 参数: 编译输出目录 索引名 包名 [父类型]，指定父类型时只收录其非抽象的实现类
+     *
+     * @param args 参数
+     * @throws Exception 生成失败，构建随之失败
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            throw new IllegalArgumentException("Usage: " + ClassIndex.class.getName()
+                    + " <classes dir> <index name> <package> [super type]");
+        }
+        Path classesDir = Paths.get(args[0]);
+        String indexName = args[1];
+        String packagePrefix = args[2];
+        Class<?> superType = args.length > 3 ? Class.forName(args[3], false, ClassIndex.class.getClassLoader()) : null;
+
+        List<String> classNames = scan(classesDir, packagePrefix);
+        if (Objects.nonNull(superType)) {
+            List<String> implementations = new ArrayList<>();
+            for (String className : classNames) {
+                // 不初始化，避免执行转换器的静态代码
+                Class<?> clazz = Class.forName(className, false, ClassIndex.class.getClassLoader());
+                if (superType.isAssignableFrom(clazz) && !clazz.isInterface()
+                        && !Modifier.isAbstract(clazz.getModifiers())) {
+                    implementations.add(className);
+                }
+            }
+            classNames = implementations;
+        }
+
+        Path indexFile = classesDir.resolve(INDEX_DIR + indexName);
+        Files.createDirectories(indexFile.getParent());
+        try (Writer writer = Files.newBufferedWriter(indexFile, StandardCharsets.UTF_8)) {
+            writer.write("# generated by " + ClassIndex.class.getName() + ", do not edit\n");
+            for (String className : classNames) {
+                writer.write(className);
+                writer.write('\n');
+            }
+        }
+    }
+
+    private static List<String> scan(Path classesDir, String packagePrefix) throws IOException {
+        Path packageDir = classesDir.resolve(packagePrefix.replace(DOT, classesDir.getFileSystem().getSeparator()));
+        if (!Files.isDirectory(packageDir)) {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> files = Files.walk(packageDir)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(DOT_CLASS))
+                    .map(file -> {
+                        String relative = classesDir.relativize(file).toString();
+                        return relative.substring(0, relative.length() - DOT_CLASS.length())
+                                .replace(classesDir.getFileSystem().getSeparator(), DOT);
+                    })
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+}
@@ -14,6 +14,7 @@ import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.function.BiConsumer;
@@ -32,7 +33,7 @@ public final class ClassUtils {
     private ClassUtils() {}
 
     /**
-     * 注入指定包名下的class到bootstrap
+     * 注入指定包名下的class到bootstrap，优先使用构建时生成的索引
      *
      * @param instrumentation     instrumentation对象
      * @param packagePrefix       包前缀
@@ -45,13 +46,22 @@ public final class ClassUtils {
         Map<String, byte[]> classes = new HashMap<>();
         try(ClassFileLocator classFileLocator = ClassFileLocator
                 .ForClassLoader.of(ClassUtils.class.getClassLoader())) {
-            walkClassFiles((path, classCanonicalName) -> {
-                try {
-                    classes.put(classCanonicalName, classFileLocator.locate(classCanonicalName).resolve());
-                } catch (IOException e) {
-                    throw new WalkClassFileException(e);
+            List<String> indexed = ClassIndex.read(BOOTSTRAP_CLASS_INDEX);
+            if (Objects.nonNull(indexed)) {
+                for (String classCanonicalName : indexed) {
+                    if (classCanonicalName.startsWith(packagePrefix)) {
+                        classes.put(classCanonicalName, classFileLocator.locate(classCanonicalName).resolve());
+                    }
                 }
-            }, packagePrefix, true);
+            } else {
+                walkClassFiles((path, classCanonicalName) -> {
+                    try {
+                        classes.put(classCanonicalName, classFileLocator.locate(classCanonicalName).resolve());
+                    } catch (IOException e) {
+                        throw new WalkClassFileException(e);
+                    }
+                }, packagePrefix, true);
+            }
         }
         File classInjectTempDir = SystemUtils.getClassInjectTempDir(Constants.INJECT_DIR_BOOTSTRAP);
         ClassInjector
@@ -94,7 +104,8 @@ public final class ClassUtils {
                         if (file.getFileName().toString().endsWith(DOT_CLASS)){
                             String separator = file.getFileSystem().getSeparator();
                             String replaced = file.toString().replace(separator, DOT);
-                            String classCanonicalName = replaced.substring(replaced.indexOf(packagePrefix)).replaceAll(".class", "");
+                            String classCanonicalName = replaced.substring(replaced.indexOf(packagePrefix),
+                                    replaced.length() - DOT_CLASS.length());
                             walker.accept(file, classCanonicalName);
                         }
                         return FileVisitResult.CONTINUE;
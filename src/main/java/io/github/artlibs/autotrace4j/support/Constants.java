@@ -23,7 +23,22 @@ public final class Constants {
     public static final String SET_ATTRIBUTE = "setAttribute";
     public static final String INJECT_DIR_ROOT = "autotrace4j/inject";
     public static final String INJECT_DIR_BOOTSTRAP = "bootstrap";
+    public static final String BOOTSTRAP_CLASS_INDEX = "bootstrap.idx";
+    public static final String TRANSFORMER_CLASS_INDEX = "transformers.idx";
     public static final String INTERCEPT_METHOD_NAME = "intercept";
+    public static final String SYSTEM_PROPERTY_ID_GENERATOR = "autotrace4j.id.generator";
+    public static final String SYSTEM_PROPERTY_ADVICE_DISABLE = "autotrace4j.advice.disable";
+    public static final String SYSTEM_PROPERTY_PROFILE_ENABLE = "autotrace4j.profile.enable";
+    public static final String SYSTEM_PROPERTY_PROFILE_DUMP_DELAY = "autotrace4j.profile.dump.delay";
+    public static final int DEFAULT_PROFILE_DUMP_DELAY = 60;
+    public static final String SYSTEM_PROPERTY_CACHE_ENABLE = "autotrace4j.cache.enable";
+    public static final String SYSTEM_PROPERTY_CACHE_DIR = "autotrace4j.cache.dir";
+    public static final String SYSTEM_PROPERTY_STARTUP_PARALLELISM = "autotrace4j.startup.parallelism";
+    public static final String SYSTEM_PROPERTY_TYPE_POOL_CACHE_SIZE = "autotrace4j.typepool.cache.size";
+    public static final int DEFAULT_TYPE_POOL_CACHE_SIZE = 4096;
+    public static final String SYSTEM_PROPERTY_PREFILTER_DISABLE = "autotrace4j.prefilter.disable";
+    public static final String SYSTEM_PROPERTY_PREFILTER_DENY = "autotrace4j.prefilter.deny";
+    public static final String SYSTEM_PROPERTY_PREFILTER_ALLOW = "autotrace4j.prefilter.allow";
 
     /* --------------- logging support --------------- */
     public static final String SPACE = " ";
@@ -36,5 +51,16 @@ public final class Constants {
     public static final String SYSTEM_PROPERTY_LOG_FILE_RETENTION = "autotrace4j.log.file.retention";
     public static final String SYSTEM_PROPERTY_LOG_FILE_SIZE = "autotrace4j.log.file.size";
     public static final int DEFAULT_LOG_FILE_RETENTION = 7;
+    public static final String SYSTEM_PROPERTY_LOG_FILE_BUFFER_SIZE = "autotrace4j.log.file.buffer.size";
+    public static final String SYSTEM_PROPERTY_LOG_FILE_FLUSH_INTERVAL = "autotrace4j.log.file.flush.interval";
+    public static final String SYSTEM_PROPERTY_LOG_FILE_MMAP = "autotrace4j.log.file.mmap";
+    public static final String SYSTEM_PROPERTY_LOG_FILE_FORMAT = "autotrace4j.log.file.format";
+    public static final String SYSTEM_PROPERTY_LOG_QUEUE_SIZE = "autotrace4j.log.queue.size";
+    public static final String SYSTEM_PROPERTY_LOG_QUEUE_WAIT = "autotrace4j.log.queue.wait";
+    public static final String SYSTEM_PROPERTY_LOG_QUEUE_OVERFLOW = "autotrace4j.log.queue.overflow";
+    public static final String SYSTEM_PROPERTY_LOG_ASYNC_THREADS = "autotrace4j.log.async.threads";
     public static final int DEFAULT_LOG_FILE_SIZE = 0;
+    public static final int DEFAULT_LOG_QUEUE_SIZE = 8192;
+    public static final int DEFAULT_LOG_ASYNC_THREADS = 1;
+    public static final int DEFAULT_LOG_FILE_BUFFER_SIZE = 64 * 1024;
 }
@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Locale;
 import java.util.Optional;
 
 /**
@@ -35,6 +36,22 @@ public final class SystemUtils {
         return Optional.ofNullable(System.getProperty(name)).map(Integer::parseInt);
     }
 
+    /**
+     * 按名称(不区分大小写，'-'等同于'_')取枚举值，无法识别时输出警告并返回empty，由调用方使用默认值
+     */
+    public static <T extends Enum<T>> Optional<T> getSysPropertyEnum(String name, Class<T> type) {
+        String value = System.getProperty(name);
+        if (value == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(Enum.valueOf(type, value.trim().replace('-', '_').toUpperCase(Locale.ROOT)));
+        } catch (IllegalArgumentException e) {
+            System.err.printf("autotrace4j unknown value of %s: %s, use the default%n", name, value);
+            return Optional.empty();
+        }
+    }
+
     public static Path getSysTempDir() {
         return Paths.get(System.getProperty("java.io.tmpdir"));
     }
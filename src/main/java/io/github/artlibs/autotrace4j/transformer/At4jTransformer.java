@@ -1,6 +1,7 @@
 package io.github.artlibs.autotrace4j.transformer;
 
 import io.github.artlibs.autotrace4j.context.TraceContext;
+import io.github.artlibs.autotrace4j.context.TraceSnapshot;
 import io.github.artlibs.autotrace4j.transformer.abs.AbsVisitorTransformer;
 import net.bytebuddy.agent.builder.AgentBuilder;
 import net.bytebuddy.asm.Advice;
@@ -12,6 +13,9 @@ import net.bytebuddy.matcher.ElementMatcher;
 import net.bytebuddy.matcher.ElementMatchers;
 import net.bytebuddy.utility.JavaModule;
 
+import java.util.Collection;
+import java.util.Collections;
+
 
 /**
  * AutoTrace Transformer
@@ -29,6 +33,30 @@ public interface At4jTransformer extends AgentBuilder.Transformer {
      */
     ElementMatcher<? super TypeDescription> typeMatcher();
 
+    /**
+     * 类型全限定名索引：typeMatcher只可能匹配这些名称的类型，合并匹配时按名称直接查找，
+     * 命中后仍由typeMatcher确认
+     * <p>
+     * 与{@link #superTypeNames()}都为空时，每个类型都要经过typeMatcher
+     * <p>
+     * @return 类型全限定名
+     */
+    default Collection<String> typeNames() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * 父类型索引：typeMatcher只可能匹配以这些类型为父类型(含自身)的类型，合并匹配时
+     * 只解析一次类型的继承结构，命中后仍由typeMatcher确认
+     * <p>
+     * 与{@link #typeNames()}同时声明时，满足其一即为候选
+     * <p>
+     * @return 父类或接口的全限定名
+     */
+    default Collection<String> superTypeNames() {
+        return Collections.emptyList();
+    }
+
     /**
      * 类型转换，可在此处为需要转换增强的类增加属性字段
      * <p>
@@ -61,27 +89,15 @@ public interface At4jTransformer extends AgentBuilder.Transformer {
             @SuppressWarnings("unused") JavaModule javaModule,
             @SuppressWarnings("unused") ClassLoader classLoader) {
         return builder
-                // add field
-                .defineField(TraceContext.TRACE_KEY, String.class, Visibility.PRIVATE)
-                .defineField(TraceContext.SPAN_KEY, String.class, Visibility.PRIVATE)
-                .defineField(TraceContext.PARENT_SPAN_KEY, String.class, Visibility.PRIVATE)
+                // add field, the whole context in one slot
+                .defineField(TraceContext.TRACE_SNAPSHOT_KEY, TraceSnapshot.class, Visibility.PRIVATE)
                 // add getter
-                .defineMethod(TraceContext.TRACE_KEY_GETTER, String.class, Visibility.PUBLIC)
-                .intercept(FieldAccessor.ofField(TraceContext.TRACE_KEY))
-                .defineMethod(TraceContext.SPAN_KEY_GETTER, String.class, Visibility.PUBLIC)
-                .intercept(FieldAccessor.ofField(TraceContext.SPAN_KEY))
-                .defineMethod(TraceContext.PARENT_SPAN_KEY_GETTER, String.class, Visibility.PUBLIC)
-                .intercept(FieldAccessor.ofField(TraceContext.PARENT_SPAN_KEY))
+                .defineMethod(TraceContext.TRACE_SNAPSHOT_KEY_GETTER, TraceSnapshot.class, Visibility.PUBLIC)
+                .intercept(FieldAccessor.ofField(TraceContext.TRACE_SNAPSHOT_KEY))
                 // add setter
-                .defineMethod(TraceContext.TRACE_KEY_SETTER, void.class, Visibility.PUBLIC)
-                .withParameters(String.class)
-                .intercept(FieldAccessor.ofField(TraceContext.TRACE_KEY))
-                .defineMethod(TraceContext.SPAN_KEY_SETTER, void.class, Visibility.PUBLIC)
-                .withParameters(String.class)
-                .intercept(FieldAccessor.ofField(TraceContext.SPAN_KEY))
-                .defineMethod(TraceContext.PARENT_SPAN_KEY_SETTER, void.class, Visibility.PUBLIC)
-                .withParameters(String.class)
-                .intercept(FieldAccessor.ofField(TraceContext.PARENT_SPAN_KEY))
+                .defineMethod(TraceContext.TRACE_SNAPSHOT_KEY_SETTER, void.class, Visibility.PUBLIC)
+                .withParameters(TraceSnapshot.class)
+                .intercept(FieldAccessor.ofField(TraceContext.TRACE_SNAPSHOT_KEY))
                 // intercept constructor, any constructor
                 .constructor(ElementMatchers.any())
                 .intercept(Advice.to(AbsConstructorAdvice.class));
@@ -93,14 +109,10 @@ public interface At4jTransformer extends AgentBuilder.Transformer {
         @Advice.OnMethodExit
         @SuppressWarnings("unused")
         public static void adviceOnMethodExit(
-                @Advice.FieldValue(value = TraceContext.TRACE_KEY, readOnly = false) String traceId,
-                @Advice.FieldValue(value = TraceContext.SPAN_KEY, readOnly = false) String spanId,
-                @Advice.FieldValue(value = TraceContext.PARENT_SPAN_KEY, readOnly = false) String parentSpanId) {
+                @Advice.FieldValue(value = TraceContext.TRACE_SNAPSHOT_KEY, readOnly = false) TraceSnapshot snapshot) {
             try {
-                // setup defined field on method exit
-                traceId = TraceContext.getTraceId();
-                spanId = TraceContext.getSpanId();
-                parentSpanId = TraceContext.getParentSpanId();
+                // setup defined field on method exit, the snapshot is immutable so just copy the reference
+                snapshot = TraceContext.capture();
             } catch (Exception e) {
                 e.printStackTrace();
             }
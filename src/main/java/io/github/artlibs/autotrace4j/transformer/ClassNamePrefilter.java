@@ -0,0 +1,229 @@
+package io.github.artlibs.autotrace4j.transformer;
+
+import io.github.artlibs.autotrace4j.logger.Logger;
+import io.github.artlibs.autotrace4j.logger.LoggerFactory;
+import io.github.artlibs.autotrace4j.support.SystemUtils;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.matcher.ElementMatcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.github.artlibs.autotrace4j.support.Constants.*;
+
+/**
+ * 按类名前缀提前排除类型
+ * <p>
+ * 作为AgentBuilder的ignore，在合并的类型匹配之前按类名排除不可能被增强的类(JDK、Kotlin、Netty、Jackson等)，
+ * 只按类名逐字符查找一棵前缀树，不解析类型描述.
+ * <p>
+ * 默认排除的前缀只包括JDK自身以及不会实现、继承转换器所声明父类型的库，javax、com.sun只排除JDK自带的子包，
+ * 因此其他包中的子类(如实现javax.servlet.Filter的com.sun.jersey.spi.container.servlet.ServletContainer)不受影响.
+ * 排除的前缀中包含转换器声明的类型时不会误排除：
+ * 1. {@link At4jTransformer#typeNames()}中的类名本身保留
+ * 2. {@link At4jTransformer#superTypeNames()}所在的包(含子包)保留，其中可能有需要增强的子类
+ * 最长的前缀决定是否排除；可通过autotrace4j.prefilter.deny/allow追加前缀(逗号分隔)，
+ * autotrace4j.prefilter.disable=true时只排除agent自身等必须排除的前缀.
+ * <p>
+ * @author Fury
+ * @since 2024-12-15
+ * <p>
+ * All rights Reserved.
+ */
+public final class ClassNamePrefilter implements ElementMatcher<TypeDescription> {
+    private static final Logger logger = LoggerFactory.getLogger(ClassNamePrefilter.class);
+    private static final List<String> DEFAULT_DENY_PREFIXES = Arrays.asList(
+            // 只有JDK能定义的包
+            "java.", "jdk.", "sun.",
+            // JDK自带的javax、com.sun包；javax.servlet、com.sun.jersey等第三方包不在其中
+            "javax.accessibility.", "javax.annotation.processing.", "javax.crypto.", "javax.imageio.",
+            "javax.lang.model.", "javax.management.", "javax.naming.", "javax.net.", "javax.print.",
+            "javax.script.", "javax.security.", "javax.sound.", "javax.sql.", "javax.swing.", "javax.tools.",
+            "javax.xml.", "com.sun.beans.", "com.sun.crypto.", "com.sun.imageio.", "com.sun.java.",
+            "com.sun.jmx.", "com.sun.jndi.", "com.sun.management.", "com.sun.media.", "com.sun.naming.",
+            "com.sun.org.apache.", "com.sun.proxy.", "com.sun.security.", "com.sun.tools.",
+            "com.sun.xml.internal.",
+            // 语言运行时与常用的基础库
+            "kotlin.", "kotlinx.", "scala.", "groovy.", "org.codehaus.groovy.",
+            "io.netty.", "com.fasterxml.jackson.", "com.google.common.", "com.google.protobuf.", "com.google.gson.",
+            "net.bytebuddy.", "org.objectweb.asm.", "org.jetbrains.", "org.intellij.", "org.yaml.snakeyaml."
+    );
+    /** 排除的前缀中已知的父类型子类(java.util.logging.Formatter的子类HttpLogFormatter) */
+    private static final List<String> DEFAULT_ALLOW_PREFIXES = Collections.singletonList(
+            "sun.net.www.protocol.http.logging."
+    );
+
+    private static final byte NONE = 0;
+    private static final byte DENY = 1;
+    private static final byte ALLOW = 2;
+
+    private final Node root = new Node();
+    private final LongAdder evaluated = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private ClassNamePrefilter() {}
+
+    /**
+     * @param transformers 转换器，其声明的类型不会被排除
+     * @param mandatoryDenyPrefixes 任何情况下都排除的前缀
+     * @return 前缀过滤
+     */
+    public static ClassNamePrefilter create(List<At4jTransformer> transformers, String... mandatoryDenyPrefixes) {
+        ClassNamePrefilter prefilter = new ClassNamePrefilter();
+        // 依次写入，相同的前缀以后写入的为准：保留优先于排除，必须排除的优先于保留
+        if (!Boolean.TRUE.equals(SystemUtils.getSysPropertyBool(SYSTEM_PROPERTY_PREFILTER_DISABLE)
+                .orElse(Boolean.FALSE))) {
+            List<String> denyPrefixes = new ArrayList<>(DEFAULT_DENY_PREFIXES);
+            denyPrefixes.addAll(splitProperty(SYSTEM_PROPERTY_PREFILTER_DENY));
+            denyPrefixes.forEach(prefix -> prefilter.root.path(prefix).prefix = DENY);
+            for (At4jTransformer transformer : transformers) {
+                transformer.typeNames().forEach(typeName -> prefilter.root.path(typeName).exact = true);
+                for (String superTypeName : transformer.superTypeNames()) {
+                    int lastDot = superTypeName.lastIndexOf(DOT);
+                    if (lastDot > 0) {
+                        prefilter.root.path(superTypeName.substring(0, lastDot + 1)).prefix = ALLOW;
+                    }
+                }
+            }
+            List<String> allowPrefixes = new ArrayList<>(DEFAULT_ALLOW_PREFIXES);
+            allowPrefixes.addAll(splitProperty(SYSTEM_PROPERTY_PREFILTER_ALLOW));
+            for (String prefix : allowPrefixes) {
+                prefilter.root.path(prefix).prefix = ALLOW;
+            }
+        }
+        for (String prefix : mandatoryDenyPrefixes) {
+            prefilter.root.path(prefix).prefix = DENY;
+        }
+        return prefilter;
+    }
+
+    private static List<String> splitProperty(String key) {
+        String value = System.getProperty(key);
+        if (Objects.isNull(value) || value.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> prefixes = new ArrayList<>();
+        for (String prefix : value.split(",")) {
+            // 空前缀会匹配所有类型
+            if (!prefix.trim().isEmpty()) {
+                prefixes.add(prefix.trim());
+            }
+        }
+        return prefixes;
+    }
+
+    @Override
+    public boolean matches(TypeDescription target) {
+        return rejects(target.getName());
+    }
+
+    /**
+     * 是否排除该类型
+     *
+     * @param typeName 类名
+     * @return 排除时返回true
+     */
+    public boolean rejects(String typeName) {
+        evaluated.increment();
+        byte decision = NONE;
+        Node node = root;
+        for (int i = 0; i < typeName.length() && Objects.nonNull(node); i++) {
+            node = node.child(typeName.charAt(i));
+            if (Objects.nonNull(node) && node.prefix != NONE) {
+                decision = node.prefix;
+            }
+        }
+        if (decision != DENY || (Objects.nonNull(node) && node.exact)) {
+            return false;
+        }
+        rejected.increment();
+        return true;
+    }
+
+    /**
+     * 安装完成: 输出排除率
+     */
+    public void installed() {
+        logger.debug("class name prefilter installed, %s", stats());
+    }
+
+    /**
+     * @return 经过过滤的类型数
+     */
+    public long getEvaluated() {
+        return evaluated.sum();
+    }
+
+    /**
+     * @return 被排除的类型数
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return 统计文本
+     */
+    public String stats() {
+        long total = getEvaluated();
+        long reject = getRejected();
+        return String.format("evaluated: %d, rejected: %d, reject rate: %.1f%%",
+                total, reject, total == 0 ? 0 : reject * 100.0 / total);
+    }
+
+    /**
+     * 前缀树的节点，子节点按字符排序保存在数组中
+     */
+    private static final class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        /** 以此结尾的前缀：排除、保留或无 */
+        private byte prefix = NONE;
+        /** 以此结尾的类名完整匹配时保留 */
+        private boolean exact;
+
+        private Node child(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            return index < 0 ? null : children[index];
+        }
+
+        /**
+         * @return 该名称对应的节点，不存在时创建
+         */
+        private Node path(String name) {
+            Node node = this;
+            for (int i = 0; i < name.length(); i++) {
+                char key = name.charAt(i);
+                int index = Arrays.binarySearch(node.keys, key);
+                if (index < 0) {
+                    index = -index - 1;
+                    node.keys = insert(node.keys, index, key);
+                    node.children = insert(node.children, index, new Node());
+                }
+                node = node.children[index];
+            }
+            return node;
+        }
+
+        private static char[] insert(char[] array, int index, char value) {
+            char[] copy = new char[array.length + 1];
+            System.arraycopy(array, 0, copy, 0, index);
+            copy[index] = value;
+            System.arraycopy(array, index, copy, index + 1, array.length - index);
+            return copy;
+        }
+
+        private static Node[] insert(Node[] array, int index, Node value) {
+            Node[] copy = new Node[array.length + 1];
+            System.arraycopy(array, 0, copy, 0, index);
+            copy[index] = value;
+            System.arraycopy(array, index, copy, index + 1, array.length - index);
+            return copy;
+        }
+    }
+
+}
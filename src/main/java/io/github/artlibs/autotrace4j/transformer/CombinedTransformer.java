@@ -0,0 +1,231 @@
+package io.github.artlibs.autotrace4j.transformer;
+
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.description.type.TypeDefinition;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.DynamicType;
+import net.bytebuddy.matcher.ElementMatcher;
+import net.bytebuddy.utility.JavaModule;
+
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 合并所有转换器的类型匹配
+ * <p>
+ * 逐个注册时ByteBuddy对每个加载的类依次执行所有转换器的typeMatcher，hasSuperType类的匹配器
+ * 各自遍历一遍继承结构；合并后只注册一次：
+ * 1. 按{@link At4jTransformer#typeNames()}建立名称索引，直接按类名查找
+ * 2. 按{@link At4jTransformer#superTypeNames()}建立父类型索引，只遍历一次继承结构
+ * 3. 候选的转换器(以及没有声明索引的转换器)再由其typeMatcher确认
+ * 命中的转换器按注册顺序依次执行transform，与逐个注册时一致.
+ * <p>
+ * 匹配结果通过线程变量交给随后的transform，ByteBuddy在同一线程中对同一个TypeDescription
+ * 先匹配再转换；不一致时重新匹配.
+ * <p>
+ * @author Fury
+ * @since 2024-12-15
+ * <p>
+ * All rights Reserved.
+ */
+public final class CombinedTransformer implements ElementMatcher<TypeDescription>, AgentBuilder.Transformer {
+    private final Entry[] entries;
+    private final Map<String, int[]> typeNameIndex = new HashMap<>();
+    private final Map<String, int[]> superTypeIndex = new HashMap<>();
+    /** 没有声明索引、每个类型都要确认的转换器 */
+    private final int[] unindexed;
+    private final ThreadLocal<Match> lastMatch = ThreadLocal.withInitial(Match::new);
+
+    /**
+     * @param transformers 转换器，按此顺序执行
+     * @param profiler 转换耗时统计，未开启时为null
+     */
+    public CombinedTransformer(List<At4jTransformer> transformers, TransformProfiler profiler) {
+        this.entries = new Entry[transformers.size()];
+        List<Integer> unindexedList = new ArrayList<>();
+        for (int i = 0; i < entries.length; i++) {
+            At4jTransformer transformer = transformers.get(i);
+            entries[i] = Objects.isNull(profiler)
+                    ? new Entry(transformer, transformer.typeMatcher(), transformer)
+                    : new Entry(transformer, profiler.matcher(transformer), profiler.transformer(transformer));
+            boolean indexed = index(typeNameIndex, transformer.typeNames(), i);
+            indexed |= index(superTypeIndex, transformer.superTypeNames(), i);
+            if (!indexed) {
+                unindexedList.add(i);
+            }
+        }
+        this.unindexed = unindexedList.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static boolean index(Map<String, int[]> index, Iterable<String> names, int position) {
+        boolean indexed = false;
+        for (String name : names) {
+            int[] positions = index.get(name);
+            if (Objects.isNull(positions)) {
+                positions = new int[]{position};
+            } else if (positions[positions.length - 1] != position) {
+                positions = Arrays.copyOf(positions, positions.length + 1);
+                positions[positions.length - 1] = position;
+            }
+            index.put(name, positions);
+            indexed = true;
+        }
+        return indexed;
+    }
+
+    /**
+     * 找出适用于该类型的转换器
+     *
+     * @param typeDescription 类型
+     * @return 命中的转换器，按注册顺序
+     */
+    public List<At4jTransformer> match(TypeDescription typeDescription) {
+        List<Entry> matched = doMatch(typeDescription);
+        List<At4jTransformer> transformers = new ArrayList<>(matched.size());
+        for (Entry entry : matched) {
+            transformers.add(entry.transformer);
+        }
+        return transformers;
+    }
+
+    @Override
+    public boolean matches(TypeDescription target) {
+        List<Entry> matched = doMatch(target);
+        Match match = lastMatch.get();
+        if (matched.isEmpty()) {
+            match.clear();
+            return false;
+        }
+        match.type = target;
+        match.entries = matched;
+        return true;
+    }
+
+    @Override
+    public DynamicType.Builder<?> transform(DynamicType.Builder<?> builder, TypeDescription typeDescription,
+                                            ClassLoader classLoader, JavaModule module,
+                                            ProtectionDomain protectionDomain) {
+        Match match = lastMatch.get();
+        List<Entry> matched = match.type == typeDescription ? match.entries : doMatch(typeDescription);
+        match.clear();
+        for (Entry entry : matched) {
+            builder = entry.applier.transform(builder, typeDescription, classLoader, module, protectionDomain);
+        }
+        return builder;
+    }
+
+    private List<Entry> doMatch(TypeDescription typeDescription) {
+        boolean[] candidates = null;
+        int[] positions = typeNameIndex.get(typeDescription.getName());
+        if (Objects.nonNull(positions)) {
+            candidates = mark(null, positions);
+        }
+        if (!superTypeIndex.isEmpty()) {
+            candidates = markSuperTypes(typeDescription, candidates);
+        }
+        if (unindexed.length > 0) {
+            candidates = mark(candidates, unindexed);
+        }
+        if (Objects.isNull(candidates)) {
+            return Collections.emptyList();
+        }
+
+        List<Entry> matched = null;
+        for (int i = 0; i < candidates.length; i++) {
+            if (candidates[i] && entries[i].matcher.matches(typeDescription)) {
+                if (Objects.isNull(matched)) {
+                    matched = new ArrayList<>(2);
+                }
+                matched.add(entries[i]);
+            }
+        }
+        return Objects.isNull(matched) ? Collections.emptyList() : matched;
+    }
+
+    /**
+     * 遍历一次继承结构(自身、父类链与所有接口)，按父类型索引标记候选
+     */
+    private boolean[] markSuperTypes(TypeDescription typeDescription, boolean[] candidates) {
+        Set<String> visitedInterfaces = null;
+        List<TypeDefinition> pending = new ArrayList<>();
+        TypeDescription current = typeDescription;
+        while (Objects.nonNull(current)) {
+            int[] positions = superTypeIndex.get(current.getName());
+            if (Objects.nonNull(positions)) {
+                candidates = mark(candidates, positions);
+            }
+            for (TypeDescription.Generic anInterface : current.getInterfaces()) {
+                pending.add(anInterface);
+            }
+            // 接口可能被多条路径继承，只处理一次
+            while (!pending.isEmpty()) {
+                TypeDefinition type = pending.remove(pending.size() - 1);
+                if (Objects.isNull(visitedInterfaces)) {
+                    visitedInterfaces = new HashSet<>();
+                }
+                TypeDescription erasure = type.asErasure();
+                if (!visitedInterfaces.add(erasure.getName())) {
+                    continue;
+                }
+                positions = superTypeIndex.get(erasure.getName());
+                if (Objects.nonNull(positions)) {
+                    candidates = mark(candidates, positions);
+                }
+                for (TypeDescription.Generic superInterface : erasure.getInterfaces()) {
+                    pending.add(superInterface);
+                }
+            }
+            TypeDescription.Generic superClass = current.getSuperClass();
+            current = Objects.isNull(superClass) ? null : superClass.asErasure();
+        }
+        return candidates;
+    }
+
+    private boolean[] mark(boolean[] candidates, int[] positions) {
+        if (Objects.isNull(candidates)) {
+            candidates = new boolean[entries.length];
+        }
+        for (int position : positions) {
+            candidates[position] = true;
+        }
+        return candidates;
+    }
+
+    /**
+     * 单个转换器的匹配器与转换器，开启耗时统计时为包装后的
+     */
+    private static final class Entry {
+        private final At4jTransformer transformer;
+        private final ElementMatcher<? super TypeDescription> matcher;
+        private final AgentBuilder.Transformer applier;
+
+        private Entry(At4jTransformer transformer, ElementMatcher<? super TypeDescription> matcher,
+                      AgentBuilder.Transformer applier) {
+            this.transformer = transformer;
+            this.matcher = matcher;
+            this.applier = applier;
+        }
+    }
+
+    /**
+     * 当前线程最近一次命中的类型
+     */
+    private static final class Match {
+        private TypeDescription type;
+        private List<Entry> entries;
+
+        private void clear() {
+            type = null;
+            entries = null;
+        }
+    }
+
+}
@@ -0,0 +1,153 @@
+package io.github.artlibs.autotrace4j.transformer;
+
+import io.github.artlibs.autotrace4j.logger.Logger;
+import io.github.artlibs.autotrace4j.logger.LoggerFactory;
+import io.github.artlibs.autotrace4j.support.SystemUtils;
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.matcher.ElementMatcher;
+
+import java.lang.instrument.Instrumentation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.github.artlibs.autotrace4j.support.Constants.*;
+
+/**
+ * 并行筛选需要重转换的已加载类
+ * <p>
+ * 安装时ByteBuddy在premain线程中对每一个已加载的类(通常数千个)执行忽略与类型匹配，只有少数几个需要重转换；
+ * 这里用几个临时线程并行执行同样的匹配，只把命中的类交给ByteBuddy，由其再次确认并
+ * 一次性调用retransformClasses(BatchAllocator.ForTotal).
+ * <p>
+ * 安装期间premain线程持有ByteBuddy的CircularityLock，其中首次加载的类不会被转换；筛选线程同样持有该锁，
+ * 与单线程时一致，也避免其中加载的类递归进入转换(ClassCircularityError).
+ * 不使用ForkJoinPool：ForkJoinTask本身是需要增强的类，不能在安装期间被提前加载.
+ * <p>
+ * 匹配出错的类同样交给ByteBuddy，由其按原有的方式处理与报告；
+ * 并行度为autotrace4j.startup.parallelism(默认为CPU数-1，最多4)，小于2时保持单线程的SinglePass.
+ * <p>
+ * @author Fury
+ * @since 2024-12-15
+ * <p>
+ * All rights Reserved.
+ */
+public final class ParallelDiscovery implements AgentBuilder.RedefinitionStrategy.DiscoveryStrategy {
+    private static final Logger logger = LoggerFactory.getLogger(ParallelDiscovery.class);
+    private static final int MAX_DEFAULT_PARALLELISM = 4;
+
+    private final int parallelism;
+    private final AgentBuilder.CircularityLock circularityLock;
+    private final ClassNamePrefilter prefilter;
+    private final ElementMatcher<? super TypeDescription> typeMatcher;
+
+    private ParallelDiscovery(int parallelism, AgentBuilder.CircularityLock circularityLock,
+                              ClassNamePrefilter prefilter,
+                              ElementMatcher<? super TypeDescription> typeMatcher) {
+        this.parallelism = parallelism;
+        this.circularityLock = circularityLock;
+        this.prefilter = prefilter;
+        this.typeMatcher = typeMatcher;
+    }
+
+    /**
+     * @param circularityLock 与AgentBuilder一致的CircularityLock
+     * @param prefilter 与AgentBuilder一致的忽略规则
+     * @param typeMatcher 所有转换器的类型匹配
+     * @return 并行度小于2时返回SinglePass
+     */
+    public static AgentBuilder.RedefinitionStrategy.DiscoveryStrategy of(AgentBuilder.CircularityLock circularityLock,
+            ClassNamePrefilter prefilter, ElementMatcher<? super TypeDescription> typeMatcher) {
+        int parallelism = SystemUtils.getSysPropertyInteger(SYSTEM_PROPERTY_STARTUP_PARALLELISM)
+                .orElse(Math.min(Runtime.getRuntime().availableProcessors() - 1, MAX_DEFAULT_PARALLELISM));
+        if (parallelism < 2) {
+            return AgentBuilder.RedefinitionStrategy.DiscoveryStrategy.SinglePass.INSTANCE;
+        }
+        return new ParallelDiscovery(parallelism, circularityLock, prefilter, typeMatcher);
+    }
+
+    @Override
+    public Iterable<Iterable<Class<?>>> resolve(Instrumentation instrumentation) {
+        long start = System.nanoTime();
+        Class<?>[] loaded = instrumentation.getAllLoadedClasses();
+        LongAdder busyNanos = new LongAdder();
+        List<List<Class<?>>> slices = new ArrayList<>(parallelism);
+        Thread[] workers = new Thread[parallelism - 1];
+        for (int i = 0; i < parallelism; i++) {
+            List<Class<?>> slice = new ArrayList<>();
+            slices.add(slice);
+            int offset = i;
+            Runnable task = () -> {
+                // 交错分片，相近的类(如同一个包)分散到不同的线程
+                for (int j = offset; j < loaded.length; j += parallelism) {
+                    if (isCandidate(instrumentation, loaded[j], busyNanos)) {
+                        slice.add(loaded[j]);
+                    }
+                }
+            };
+            if (i < workers.length) {
+                workers[i] = new Thread(() -> {
+                    boolean acquired = circularityLock.acquire();
+                    try {
+                        task.run();
+                    } finally {
+                        if (acquired) {
+                            circularityLock.release();
+                        }
+                    }
+                }, "autotrace4j-discovery-" + i);
+                workers[i].setDaemon(true);
+                workers[i].start();
+            } else {
+                task.run();
+            }
+        }
+
+        List<Class<?>> candidates = new ArrayList<>();
+        try {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            for (List<Class<?>> slice : slices) {
+                candidates.addAll(slice);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // 未完成筛选，交给ByteBuddy逐个匹配
+            candidates = Arrays.asList(loaded);
+        }
+
+        if (logger.isDebugEnabled()) {
+            long wallNanos = System.nanoTime() - start;
+            long busy = busyNanos.sum();
+            logger.debug("parallel discovery: %d of %d loaded classes matched, parallelism %d, wall %.1f ms, "
+                            + "matching %.1f ms (sum of all threads), saved %.1f ms", candidates.size(),
+                    loaded.length, parallelism, millis(wallNanos), millis(busy), millis(busy - wallNanos));
+        }
+        return Collections.singletonList(candidates);
+    }
+
+    private boolean isCandidate(Instrumentation instrumentation, Class<?> type, LongAdder busyNanos) {
+        if (type.isArray() || type.isPrimitive() || !instrumentation.isModifiableClass(type)) {
+            return false;
+        }
+        long start = System.nanoTime();
+        try {
+            // 按类名排除，不创建类型描述
+            return !prefilter.rejects(type.getName()) && typeMatcher.matches(TypeDescription.ForLoadedType.of(type));
+        } catch (Throwable e) {
+            // 交给ByteBuddy处理，保持原有的错误报告
+            return true;
+        } finally {
+            busyNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+}
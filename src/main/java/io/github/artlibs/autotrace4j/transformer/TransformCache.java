@@ -0,0 +1,519 @@
+package io.github.artlibs.autotrace4j.transformer;
+
+import io.github.artlibs.autotrace4j.logger.Logger;
+import io.github.artlibs.autotrace4j.logger.LoggerFactory;
+import io.github.artlibs.autotrace4j.support.SystemUtils;
+import io.github.artlibs.autotrace4j.transformer.abs.AbsDelegateTransformer;
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.agent.builder.ResettableClassFileTransformer;
+import net.bytebuddy.dynamic.DynamicType;
+import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
+import net.bytebuddy.dynamic.scaffold.TypeValidation;
+import net.bytebuddy.implementation.MethodCall;
+import net.bytebuddy.utility.JavaType;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.IllegalClassFormatException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.CodeSource;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.ProtectionDomain;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static io.github.artlibs.autotrace4j.support.Constants.*;
+import static net.bytebuddy.matcher.ElementMatchers.named;
+import static net.bytebuddy.matcher.ElementMatchers.takesArgument;
+
+/**
+ * 转换结果的磁盘缓存
+ * <p>
+ * 开启后(autotrace4j.cache.enable=true)，转换后的字节码按(类名, 原始字节码的摘要, 是否重转换)保存在
+ * autotrace4j.cache.dir(默认为用户目录下的.autotrace4j/cache)中以agent指纹命名的子目录，
+ * 之后的启动在ClassFileTransformer中直接返回缓存，不再解析类型、匹配与生成字节码.
+ * <p>
+ * agent指纹包括agent jar的大小与修改时间、转换器列表、JVM版本与影响转换的系统属性，任一变化即使用新的子目录
+ * (autotrace4j-cache-指纹)，其他指纹的子目录在启动时删除. 缓存假设相同字节码的类在各次启动中的继承结构一致(相同的镜像与classpath).
+ * <p>
+ * 缓存的字节码会被直接加载(包括java.lang.Thread等bootstrap类)，因此：缓存目录必须属于当前用户且其他用户不可写，
+ * 否则不启用缓存；每个缓存文件带有以缓存目录中的私有密钥计算的HMAC(绑定agent指纹与类名)，校验失败的文件不使用.
+ * <p>
+ * 只缓存可以重放的转换：依赖加载后初始化(如MethodDelegation委托的拦截器实例)或辅助类型的转换
+ * 需要ByteBuddy在加载时注册，不缓存，每次正常转换.
+ * <p>
+ * @author Fury
+ * @since 2024-12-15
+ * <p>
+ * All rights Reserved.
+ */
+public final class TransformCache implements AgentBuilder.TransformerDecorator {
+    private static final Logger logger = LoggerFactory.getLogger(TransformCache.class);
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final String CACHE_FILE_SUFFIX = ".class";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final char HASH_SEPARATOR = '@';
+    /** 以agent指纹命名的子目录的前缀，清理旧指纹时只删除这样的目录 */
+    private static final String FINGERPRINT_DIR_PREFIX = "autotrace4j-cache-";
+    private static final Pattern FINGERPRINT_DIR_PATTERN = Pattern.compile(
+            Pattern.quote(FINGERPRINT_DIR_PREFIX) + "[0-9a-f]{16}");
+    private static final String MAC_KEY_FILE = "autotrace4j-cache.key";
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int MAC_KEY_LENGTH = 32;
+    private static final int MAC_LENGTH = 32;
+    private static final Set<PosixFilePermission> OWNER_ONLY_DIR = PosixFilePermissions.fromString("rwx------");
+    private static final Set<PosixFilePermission> OWNER_ONLY_FILE = PosixFilePermissions.fromString("rw-------");
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Path directory;
+    private final String fingerprint;
+    private final SecretKeySpec macKey;
+    /** 已缓存的类名，未命中的类只需一次查找 */
+    private final Set<String> cachedTypes = ConcurrentHashMap.newKeySet();
+    /** 当前线程的转换是否可以缓存，由监听器在onTransformation中设置 */
+    private final ThreadLocal<Boolean> replayable = new ThreadLocal<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+
+    private TransformCache(Path directory, String fingerprint, SecretKeySpec macKey) throws IOException {
+        this.directory = directory;
+        this.fingerprint = fingerprint;
+        this.macKey = macKey;
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                String fileName = file.getFileName().toString();
+                int separator = fileName.lastIndexOf(HASH_SEPARATOR);
+                if (separator > 0 && fileName.endsWith(CACHE_FILE_SUFFIX)) {
+                    cachedTypes.add(fileName.substring(0, separator));
+                }
+            });
+        }
+    }
+
+    /**
+     * @param transformers 转换器，参与计算agent指纹
+     * @return 未开启或初始化失败时返回null
+     */
+    public static TransformCache create(List<At4jTransformer> transformers) {
+        if (!Boolean.TRUE.equals(SystemUtils.getSysPropertyBool(SYSTEM_PROPERTY_CACHE_ENABLE).orElse(Boolean.FALSE))) {
+            return null;
+        }
+        try {
+            String dir = System.getProperty(SYSTEM_PROPERTY_CACHE_DIR);
+            Path root = Objects.isNull(dir) || dir.trim().isEmpty()
+                    ? Paths.get(System.getProperty("user.home"), ".autotrace4j", "cache") : Paths.get(dir.trim());
+            createPrivateDirectories(root);
+            checkPrivate(root, false);
+            String fingerprint = fingerprint(transformers);
+            String fingerprintDir = FINGERPRINT_DIR_PREFIX + fingerprint;
+            Path directory = root.resolve(fingerprintDir);
+            createPrivateDirectories(directory);
+            checkPrivate(directory, false);
+            removeStale(root, fingerprintDir);
+            TransformCache cache = new TransformCache(directory, fingerprint, macKey(root));
+            logger.debug("transform cache: %s, %d cached types", directory, cache.cachedTypes.size());
+            return cache;
+        } catch (Exception e) {
+            logger.error("init transform cache failed: %s", e.getMessage(), e);
+            return null;
+        }
+    }
+
+    private static String fingerprint(List<At4jTransformer> transformers) throws NoSuchAlgorithmException {
+        StringBuilder sb = new StringBuilder(2048);
+        CodeSource codeSource = TransformCache.class.getProtectionDomain().getCodeSource();
+        if (Objects.nonNull(codeSource) && Objects.nonNull(codeSource.getLocation())) {
+            try {
+                File agentJar = Paths.get(codeSource.getLocation().toURI()).toFile();
+                sb.append(agentJar.getName()).append(':').append(agentJar.length())
+                        .append(':').append(agentJar.lastModified());
+            } catch (Exception e) {
+                sb.append(codeSource.getLocation());
+            }
+        }
+        sb.append('|').append(System.getProperty("java.vm.vendor"))
+                .append(':').append(System.getProperty("java.vm.version"))
+                .append('|').append(System.getProperty(SYSTEM_PROPERTY_ADVICE_DISABLE))
+                .append('|').append(System.getProperty(SYSTEM_PROPERTY_PREFILTER_DISABLE))
+                .append('|').append(System.getProperty(SYSTEM_PROPERTY_PREFILTER_DENY))
+                .append('|').append(System.getProperty(SYSTEM_PROPERTY_PREFILTER_ALLOW));
+        for (At4jTransformer transformer : transformers) {
+            sb.append('|').append(transformer.getClass().getName());
+            // Advice模式的字节码内联了转换器的下标
+            if (transformer instanceof AbsDelegateTransformer) {
+                sb.append('#').append(((AbsDelegateTransformer<?>) transformer).getAdviceIndex());
+            }
+        }
+        byte[] digest = MessageDigest.getInstance(DIGEST_ALGORITHM).digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+        return hex(digest, 8);
+    }
+
+    private static void createPrivateDirectories(Path dir) throws IOException {
+        if (Files.exists(dir, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        if (dir.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            Files.createDirectories(dir, PosixFilePermissions.asFileAttribute(OWNER_ONLY_DIR));
+        } else {
+            Files.createDirectories(dir);
+        }
+    }
+
+    /**
+     * 检查缓存目录或密钥文件：不能是符号链接，属于当前用户，其他用户不可写(密钥文件还要求不可读)
+     *
+     * @throws IOException 检查不通过
+     */
+    private static void checkPrivate(Path path, boolean secret) throws IOException {
+        if (Files.isSymbolicLink(path)) {
+            throw new IOException(path + " is a symbolic link");
+        }
+        UserPrincipal owner = Files.getOwner(path, LinkOption.NOFOLLOW_LINKS);
+        UserPrincipal user = path.getFileSystem().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+        if (!owner.equals(user)) {
+            throw new IOException(path + " is owned by " + owner.getName() + ", not " + user.getName());
+        }
+        PosixFileAttributeView view = Files.getFileAttributeView(path, PosixFileAttributeView.class,
+                LinkOption.NOFOLLOW_LINKS);
+        if (Objects.isNull(view)) {
+            return;
+        }
+        Set<PosixFilePermission> permissions = view.readAttributes().permissions();
+        boolean writable = permissions.contains(PosixFilePermission.GROUP_WRITE)
+                || permissions.contains(PosixFilePermission.OTHERS_WRITE);
+        boolean readable = permissions.contains(PosixFilePermission.GROUP_READ)
+                || permissions.contains(PosixFilePermission.OTHERS_READ);
+        if (writable || (secret && readable)) {
+            throw new IOException(path + " is accessible by other users: "
+                    + PosixFilePermissions.toString(permissions));
+        }
+    }
+
+    /**
+     * 读取缓存目录中的HMAC密钥，不存在时生成
+     */
+    private static SecretKeySpec macKey(Path root) throws IOException, GeneralSecurityException {
+        Path file = root.resolve(MAC_KEY_FILE);
+        if (!Files.exists(file, LinkOption.NOFOLLOW_LINKS)) {
+            byte[] key = new byte[MAC_KEY_LENGTH];
+            new SecureRandom().nextBytes(key);
+            Path temp = root.resolve(MAC_KEY_FILE + System.nanoTime() + TEMP_FILE_SUFFIX);
+            if (root.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+                Files.createFile(temp, PosixFilePermissions.asFileAttribute(OWNER_ONLY_FILE));
+            }
+            try {
+                Files.write(temp, key);
+                // 多个进程同时生成时以最后一个为准，其他进程写入的缓存校验失败后重新转换
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                temp.toFile().delete();
+            }
+        }
+        checkPrivate(file, true);
+        byte[] key = Files.readAllBytes(file);
+        if (key.length != MAC_KEY_LENGTH) {
+            throw new IOException("invalid key file: " + file);
+        }
+        SecretKeySpec macKey = new SecretKeySpec(key, MAC_ALGORITHM);
+        // 提前加载与校验算法，转换中不再失败
+        Mac.getInstance(MAC_ALGORITHM).init(macKey);
+        return macKey;
+    }
+
+    /**
+     * 删除其他指纹(旧版本agent)的缓存
+     * <p>
+     * 缓存目录可能由用户指定为已有的目录，只删除以指纹命名的子目录中的缓存文件，
+     * 不跟随符号链接，目录中还有其他文件时保留目录
+     */
+    private static void removeStale(Path root, String fingerprintDir) {
+        try (Stream<Path> dirs = Files.list(root)) {
+            dirs.filter(dir -> {
+                String name = dir.getFileName().toString();
+                return !name.equals(fingerprintDir) && FINGERPRINT_DIR_PATTERN.matcher(name).matches()
+                        && Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS);
+            }).forEach(dir -> {
+                try (Stream<Path> files = Files.list(dir)) {
+                    files.filter(file -> {
+                        String name = file.getFileName().toString();
+                        return (name.endsWith(CACHE_FILE_SUFFIX) || name.endsWith(TEMP_FILE_SUFFIX))
+                                && Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS);
+                    }).forEach(file -> file.toFile().delete());
+                } catch (IOException ignored) {
+                    // 其他进程可能正在删除
+                }
+                dir.toFile().delete();
+            });
+        } catch (IOException e) {
+            logger.warn("remove stale transform cache failed: %s", e.getMessage());
+        }
+    }
+
+    /**
+     * 标记当前线程的转换是否可以缓存
+     *
+     * @param dynamicType 转换结果
+     */
+    void onTransformation(DynamicType dynamicType) {
+        replayable.set(!dynamicType.hasAliveLoadedTypeInitializers() && dynamicType.getAuxiliaryTypes().isEmpty());
+    }
+
+    /**
+     * 安装完成，输出命中统计
+     */
+    public void installed() {
+        logger.debug("transform cache installed, hits: %d, stores: %d", hits.sum(), stores.sum());
+    }
+
+    @Override
+    public ResettableClassFileTransformer decorate(ResettableClassFileTransformer classFileTransformer) {
+        return CachingTransformer.Factory.INSTANCE.make(this, classFileTransformer);
+    }
+
+    private byte[] load(String typeName, byte[] key) {
+        Path file = directory.resolve(typeName + HASH_SEPARATOR + hex(key, key.length) + CACHE_FILE_SUFFIX);
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (IOException e) {
+            // 同名类的其他版本，或被其他进程删除
+            return null;
+        }
+        if (bytes.length <= MAC_LENGTH || !MessageDigest.isEqual(
+                mac(typeName, key, bytes, MAC_LENGTH), Arrays.copyOf(bytes, MAC_LENGTH))) {
+            logger.warn("transform cache entry failed verification, ignored: %s", file);
+            return null;
+        }
+        hits.increment();
+        return Arrays.copyOfRange(bytes, MAC_LENGTH, bytes.length);
+    }
+
+    private void store(String typeName, byte[] key, byte[] transformed) {
+        String fileName = typeName + HASH_SEPARATOR + hex(key, key.length) + CACHE_FILE_SUFFIX;
+        Path file = directory.resolve(fileName);
+        Path temp = directory.resolve(fileName + Thread.currentThread().getId() + TEMP_FILE_SUFFIX);
+        try {
+            byte[] mac = mac(typeName, key, transformed, 0);
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                out.write(mac);
+                out.write(transformed);
+            }
+            // 多个进程可能同时写入同一个类，原子替换保证读到完整的文件
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            cachedTypes.add(typeName);
+            stores.increment();
+        } catch (IOException e) {
+            temp.toFile().delete();
+            logger.warn("store transform cache failed: %s, %s", typeName, e.getMessage());
+        }
+    }
+
+    /**
+     * 缓存内容的HMAC，绑定agent指纹、类名与原始字节码的摘要
+     */
+    private byte[] mac(String typeName, byte[] key, byte[] bytes, int offset) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(macKey);
+            mac.update(fingerprint.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            mac.update(typeName.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            mac.update(key);
+            mac.update(bytes, offset, bytes.length - offset);
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] key(byte[] binaryRepresentation, boolean retransform) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+            digest.update(binaryRepresentation);
+            digest.update((byte) (retransform ? 1 : 0));
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes, int length) {
+        char[] chars = new char[length << 1];
+        for (int i = 0; i < length; i++) {
+            chars[i << 1] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[(i << 1) + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * 包装ByteBuddy的ClassFileTransformer：命中时直接返回缓存，否则转换后保存可以重放的结果
+     * <p>
+     * Java 9+调用带Module参数的transform，由{@link Factory}生成的子类转到{@link #transform(Object, ClassLoader,
+     * String, Class, ProtectionDomain, byte[])}，再调用被包装者的同一个方法，保证转换时能拿到模块信息.
+     */
+    public static class CachingTransformer extends ResettableClassFileTransformer.WithDelegation {
+        private final TransformCache cache;
+        /** 缓存读写中加载的类不再进入缓存，避免重入 */
+        private final ThreadLocal<Boolean> active = new ThreadLocal<>();
+
+        public CachingTransformer(TransformCache cache, ResettableClassFileTransformer classFileTransformer) {
+            super(classFileTransformer);
+            this.cache = cache;
+        }
+
+        @Override
+        public byte[] transform(ClassLoader classLoader, String internalName, Class<?> classBeingRedefined,
+                                ProtectionDomain protectionDomain, byte[] binaryRepresentation)
+                throws IllegalClassFormatException {
+            return transform(null, classLoader, internalName, classBeingRedefined, protectionDomain, binaryRepresentation);
+        }
+
+        /**
+         * @param module Java 9+的java.lang.Module，之前的版本为null
+         */
+        protected byte[] transform(Object module, ClassLoader classLoader, String internalName,
+                                   Class<?> classBeingRedefined, ProtectionDomain protectionDomain,
+                                   byte[] binaryRepresentation) throws IllegalClassFormatException {
+            if (Objects.isNull(internalName) || Objects.nonNull(active.get())) {
+                return delegate(module, classLoader, internalName, classBeingRedefined, protectionDomain,
+                        binaryRepresentation);
+            }
+            active.set(Boolean.TRUE);
+            try {
+                String typeName = internalName.replace('/', '.');
+                byte[] key = null;
+                if (cache.cachedTypes.contains(typeName)) {
+                    key = key(binaryRepresentation, Objects.nonNull(classBeingRedefined));
+                    byte[] cached = cache.load(typeName, key);
+                    if (Objects.nonNull(cached)) {
+                        return cached;
+                    }
+                }
+
+                cache.replayable.remove();
+                byte[] transformed = delegate(module, classLoader, internalName, classBeingRedefined,
+                        protectionDomain, binaryRepresentation);
+                if (Objects.nonNull(transformed) && Boolean.TRUE.equals(cache.replayable.get())) {
+                    if (Objects.isNull(key)) {
+                        key = key(binaryRepresentation, Objects.nonNull(classBeingRedefined));
+                    }
+                    cache.store(typeName, key, transformed);
+                }
+                return transformed;
+            } finally {
+                cache.replayable.remove();
+                active.remove();
+            }
+        }
+
+        private byte[] delegate(Object module, ClassLoader classLoader, String internalName,
+                                Class<?> classBeingRedefined, ProtectionDomain protectionDomain,
+                                byte[] binaryRepresentation) throws IllegalClassFormatException {
+            if (Objects.isNull(module)) {
+                return classFileTransformer.transform(classLoader, internalName, classBeingRedefined,
+                        protectionDomain, binaryRepresentation);
+            }
+            try {
+                return (byte[]) Factory.MODULE_TRANSFORM.invoke(classFileTransformer, module, classLoader,
+                        internalName, classBeingRedefined, protectionDomain, binaryRepresentation);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getTargetException();
+                if (cause instanceof IllegalClassFormatException) {
+                    throw (IllegalClassFormatException) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+
+        /**
+         * 创建包装者，支持模块时生成覆盖带Module参数的transform的子类
+         */
+        private static final class Factory {
+            private static final Factory INSTANCE = new Factory();
+            /** ClassFileTransformer#transform(Module, ...)，不支持模块时为null */
+            private static final Method MODULE_TRANSFORM = moduleTransform();
+
+            private final Constructor<? extends CachingTransformer> constructor;
+
+            private Factory() {
+                this.constructor = Objects.isNull(MODULE_TRANSFORM) ? null : moduleSupport();
+            }
+
+            private static Method moduleTransform() {
+                if (!JavaType.MODULE.isAvailable()) {
+                    return null;
+                }
+                try {
+                    return ClassFileTransformer.class.getMethod("transform", JavaType.MODULE.load(), ClassLoader.class,
+                            String.class, Class.class, ProtectionDomain.class, byte[].class);
+                } catch (NoSuchMethodException | ClassNotFoundException e) {
+                    return null;
+                }
+            }
+
+            private static Constructor<? extends CachingTransformer> moduleSupport() {
+                try {
+                    return new ByteBuddy()
+                            .with(TypeValidation.DISABLED)
+                            .subclass(CachingTransformer.class)
+                            .name(CachingTransformer.class.getName() + "$ModuleSupport")
+                            .method(named("transform").and(takesArgument(0, JavaType.MODULE.load())))
+                            .intercept(MethodCall.invoke(CachingTransformer.class.getDeclaredMethod("transform",
+                                    Object.class, ClassLoader.class, String.class, Class.class,
+                                    ProtectionDomain.class, byte[].class)).withAllArguments())
+                            .make()
+                            .load(CachingTransformer.class.getClassLoader(), ClassLoadingStrategy.Default
+                                    .WRAPPER_PERSISTENT.with(CachingTransformer.class.getProtectionDomain()))
+                            .getLoaded()
+                            .getDeclaredConstructor(TransformCache.class, ResettableClassFileTransformer.class);
+                } catch (Exception e) {
+                    logger.warn("transform cache without module support: %s", e.getMessage());
+                    return null;
+                }
+            }
+
+            private CachingTransformer make(TransformCache cache, ResettableClassFileTransformer classFileTransformer) {
+                if (Objects.isNull(constructor)) {
+                    return new CachingTransformer(cache, classFileTransformer);
+                }
+                try {
+                    return constructor.newInstance(cache, classFileTransformer);
+                } catch (Exception e) {
+                    throw new IllegalStateException("cannot create " + constructor.getDeclaringClass(), e);
+                }
+            }
+        }
+    }
+
+}
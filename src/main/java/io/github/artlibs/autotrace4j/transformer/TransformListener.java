@@ -22,6 +22,25 @@ public final class TransformListener implements AgentBuilder.Listener {
     private static final Logger logger = LoggerFactory.getLogger(TransformListener.class);
     private static final String FORMAT_V1 = "\n>>> [%s]\n>>> Type: %s\n>>> ClassLoader: %s\n>>> Module: %s. Loaded: %s";
     private static final String FORMAT_V2 = FORMAT_V1 + "\n";
+    private static final String FORMAT_V3 = FORMAT_V1 + "\n>>> DynamicType: %s\n";
+
+    /** 未开启转换耗时统计时为null */
+    private final TransformProfiler profiler;
+    /** 未开启转换缓存时为null */
+    private final TransformCache cache;
+
+    public TransformListener() {
+        this(null, null);
+    }
+
+    public TransformListener(TransformProfiler profiler) {
+        this(profiler, null);
+    }
+
+    public TransformListener(TransformProfiler profiler, TransformCache cache) {
+        this.profiler = profiler;
+        this.cache = cache;
+    }
 
     /**
      * {@inheritDoc}
@@ -29,7 +48,12 @@ public final class TransformListener implements AgentBuilder.Listener {
     @Override
     public void onDiscovery(@NeverNull String type, @MaybeNull ClassLoader classLoader
             , @MaybeNull JavaModule module, boolean loaded) {
-        logger.trace(FORMAT_V2, "onDiscovery", type, classLoader, module, loaded);
+        if (profiler != null) {
+            profiler.onDiscovery();
+        }
+        if (logger.isTraceEnabled()) {
+            logger.trace(FORMAT_V2, "onDiscovery", type, classLoader, module, loaded);
+        }
     }
 
     /**
@@ -38,8 +62,15 @@ public final class TransformListener implements AgentBuilder.Listener {
     @Override
     public void onTransformation(@NeverNull TypeDescription type, @MaybeNull ClassLoader classLoader
             , @MaybeNull JavaModule module, boolean loaded, @NeverNull DynamicType dynamicType) {
-        logger.debug(FORMAT_V1 + "\n>>> DynamicType: %s\n", "onTransformation"
-                , type, classLoader, module, loaded, dynamicType);
+        if (profiler != null) {
+            profiler.onTransformation();
+        }
+        if (cache != null) {
+            cache.onTransformation(dynamicType);
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug(FORMAT_V3, "onTransformation", type, classLoader, module, loaded, dynamicType);
+        }
     }
 
     /**
@@ -48,7 +79,9 @@ public final class TransformListener implements AgentBuilder.Listener {
     @Override
     public void onIgnored(@NeverNull TypeDescription type, @MaybeNull ClassLoader classLoader
             , @MaybeNull JavaModule module, boolean loaded) {
-        logger.trace(FORMAT_V2, "onIgnored", type, classLoader, module, loaded);
+        if (logger.isTraceEnabled()) {
+            logger.trace(FORMAT_V2, "onIgnored", type, classLoader, module, loaded);
+        }
     }
 
     /**
@@ -57,6 +90,9 @@ public final class TransformListener implements AgentBuilder.Listener {
     @Override
     public void onError(@NeverNull String type, @MaybeNull ClassLoader classLoader
             , @MaybeNull JavaModule module, boolean loaded, @NeverNull Throwable throwable) {
+        if (profiler != null) {
+            profiler.onError();
+        }
         logger.error(FORMAT_V2, "onError", type, classLoader, module, loaded, throwable);
     }
 
@@ -66,6 +102,11 @@ public final class TransformListener implements AgentBuilder.Listener {
     @Override
     public void onComplete(@NeverNull String type, @MaybeNull ClassLoader classLoader
             , @MaybeNull JavaModule module, boolean loaded) {
-        logger.trace(FORMAT_V2, "onComplete", type, classLoader, module, loaded);
+        if (profiler != null) {
+            profiler.onComplete();
+        }
+        if (logger.isTraceEnabled()) {
+            logger.trace(FORMAT_V2, "onComplete", type, classLoader, module, loaded);
+        }
     }
 }
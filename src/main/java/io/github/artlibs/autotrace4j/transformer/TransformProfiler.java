@@ -0,0 +1,382 @@
+package io.github.artlibs.autotrace4j.transformer;
+
+import io.github.artlibs.autotrace4j.logger.Logger;
+import io.github.artlibs.autotrace4j.logger.LoggerFactory;
+import io.github.artlibs.autotrace4j.support.SystemUtils;
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.matcher.ElementMatcher;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.github.artlibs.autotrace4j.logger.LoggerFactory.loggerEnabled;
+import static io.github.artlibs.autotrace4j.support.Constants.*;
+
+/**
+ * 转换耗时统计
+ * <p>
+ * 开启后(autotrace4j.profile.enable=true)，包装每个转换器的typeMatcher与transform，统计其匹配的类型数、
+ * 命中数与累计耗时；生成字节码的耗时(最后一次transform到onTransformation)平均计入命中的转换器.
+ * 安装完成后输出一次，并在autotrace4j.profile.dump.delay秒(默认60)后再输出一次、注册MBean；
+ * 延迟注册是为了不在premain中初始化JMX(可能早于应用设置java.util.logging.manager)，{@code <=0}则立即注册.
+ * <p>
+ * @author Fury
+ * @since 2024-12-15
+ * <p>
+ * All rights Reserved.
+ */
+public final class TransformProfiler implements TransformProfilerMXBean {
+    private static final Logger logger = LoggerFactory.getLogger(TransformProfiler.class);
+    private static final String OBJECT_NAME = "io.github.artlibs.autotrace4j:type=TransformProfiler";
+
+    private final List<TransformerStats> transformerStats = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<TypeProfile> currentType = ThreadLocal.withInitial(TypeProfile::new);
+    private final LongAdder discoveredTypes = new LongAdder();
+    private final LongAdder transformedTypes = new LongAdder();
+    private final LongAdder errorTypes = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private volatile TypePoolCache typePoolCache;
+    private volatile ClassNamePrefilter prefilter;
+
+    private TransformProfiler() {}
+
+    /**
+     * @return 未开启时返回null
+     */
+    public static TransformProfiler create() {
+        if (!Boolean.TRUE.equals(SystemUtils.getSysPropertyBool(SYSTEM_PROPERTY_PROFILE_ENABLE).orElse(Boolean.FALSE))) {
+            return null;
+        }
+        return new TransformProfiler();
+    }
+
+    /**
+     * 包装转换器的typeMatcher
+     *
+     * @param transformer 转换器
+     * @return 统计匹配次数与耗时的matcher
+     */
+    public ElementMatcher<TypeDescription> matcher(At4jTransformer transformer) {
+        TransformerStats stats = stats(transformer);
+        ElementMatcher<? super TypeDescription> delegate = transformer.typeMatcher();
+        return target -> {
+            long start = System.nanoTime();
+            boolean matched = false;
+            try {
+                matched = delegate.matches(target);
+                return matched;
+            } finally {
+                stats.matchNanos.add(System.nanoTime() - start);
+                stats.evaluated.increment();
+                if (matched) {
+                    stats.matched.increment();
+                }
+            }
+        };
+    }
+
+    /**
+     * 包装转换器的transform
+     *
+     * @param transformer 转换器
+     * @return 统计转换耗时的transformer
+     */
+    public AgentBuilder.Transformer transformer(At4jTransformer transformer) {
+        TransformerStats stats = stats(transformer);
+        return (builder, typeDescription, classLoader, module, protectionDomain) -> {
+            long start = System.nanoTime();
+            try {
+                return transformer.transform(builder, typeDescription, classLoader, module, protectionDomain);
+            } finally {
+                long now = System.nanoTime();
+                stats.transformNanos.add(now - start);
+                stats.transformed.increment();
+                currentType.get().apply(stats, now);
+            }
+        };
+    }
+
+    /**
+     * 统计中一并输出类型描述缓存的命中率
+     *
+     * @param typePoolCache 类型描述缓存
+     */
+    public void typePoolCache(TypePoolCache typePoolCache) {
+        this.typePoolCache = typePoolCache;
+    }
+
+    /**
+     * 统计中一并输出类名前缀过滤的排除率
+     *
+     * @param prefilter 类名前缀过滤
+     */
+    public void prefilter(ClassNamePrefilter prefilter) {
+        this.prefilter = prefilter;
+    }
+
+    void onDiscovery() {
+        discoveredTypes.increment();
+        currentType.get().start(System.nanoTime());
+    }
+
+    void onTransformation() {
+        transformedTypes.increment();
+        TypeProfile type = currentType.get();
+        if (type.appliedCount > 0) {
+            long share = (System.nanoTime() - type.mark) / type.appliedCount;
+            for (int i = 0; i < type.appliedCount; i++) {
+                type.applied[i].transformNanos.add(share);
+            }
+        }
+    }
+
+    void onError() {
+        errorTypes.increment();
+        TypeProfile type = currentType.get();
+        for (int i = 0; i < type.appliedCount; i++) {
+            type.applied[i].errors.increment();
+        }
+    }
+
+    void onComplete() {
+        TypeProfile type = currentType.get();
+        if (type.start != 0) {
+            totalNanos.add(System.nanoTime() - type.start);
+        }
+        type.start(0);
+    }
+
+    /**
+     * 安装完成: 输出一次统计，并在延迟后再输出一次、注册MBean
+     */
+    public void installed() {
+        print("installed");
+        long delay = SystemUtils.getSysPropertyInteger(SYSTEM_PROPERTY_PROFILE_DUMP_DELAY)
+                .orElse(DEFAULT_PROFILE_DUMP_DELAY);
+        if (delay <= 0) {
+            register();
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                TimeUnit.SECONDS.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            register();
+            print(delay + "s after install");
+        }, "autotrace4j-profiler");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (Exception e) {
+            logger.error("register %s failed: %s", OBJECT_NAME, e.getMessage(), e);
+        }
+    }
+
+    private void print(String when) {
+        String text = dump();
+        if (loggerEnabled()) {
+            logger.info("transform profile (%s):%n%s", when, text);
+        } else {
+            System.out.printf("autotrace4j transform profile (%s):%n%s", when, text);
+        }
+    }
+
+    private TransformerStats stats(At4jTransformer transformer) {
+        Class<?> type = transformer.getClass();
+        for (TransformerStats stats : transformerStats) {
+            if (stats.type == type) {
+                return stats;
+            }
+        }
+        TransformerStats stats = new TransformerStats(type);
+        transformerStats.add(stats);
+        return stats;
+    }
+
+    @Override
+    public List<TransformerStats> getTransformerStats() {
+        return new ArrayList<>(transformerStats);
+    }
+
+    @Override
+    public long getDiscoveredTypes() {
+        return discoveredTypes.sum();
+    }
+
+    @Override
+    public long getTransformedTypes() {
+        return transformedTypes.sum();
+    }
+
+    @Override
+    public long getErrorTypes() {
+        return errorTypes.sum();
+    }
+
+    @Override
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    @Override
+    public long getTypePoolHits() {
+        TypePoolCache cache = typePoolCache;
+        return Objects.isNull(cache) ? 0 : cache.getHits();
+    }
+
+    @Override
+    public long getTypePoolMisses() {
+        TypePoolCache cache = typePoolCache;
+        return Objects.isNull(cache) ? 0 : cache.getMisses();
+    }
+
+    @Override
+    public long getPrefilterEvaluated() {
+        ClassNamePrefilter filter = prefilter;
+        return Objects.isNull(filter) ? 0 : filter.getEvaluated();
+    }
+
+    @Override
+    public long getPrefilterRejected() {
+        ClassNamePrefilter filter = prefilter;
+        return Objects.isNull(filter) ? 0 : filter.getRejected();
+    }
+
+    @Override
+    public String dump() {
+        List<TransformerStats> sorted = getTransformerStats();
+        sorted.sort(Comparator.comparingLong(TransformerStats::getMatchNanos).reversed());
+        StringBuilder sb = new StringBuilder(128 * (sorted.size() + 2));
+        sb.append(String.format("discovered: %d, transformed: %d, errors: %d, total: %.1f ms%n",
+                getDiscoveredTypes(), getTransformedTypes(), getErrorTypes(), millis(getTotalNanos())));
+        ClassNamePrefilter filter = prefilter;
+        if (Objects.nonNull(filter)) {
+            sb.append("class name prefilter: ").append(filter.stats()).append(String.format("%n"));
+        }
+        TypePoolCache cache = typePoolCache;
+        if (Objects.nonNull(cache)) {
+            sb.append("type pool cache: ").append(cache.stats()).append(String.format("%n"));
+        }
+        sb.append(String.format("%-40s %10s %8s %10s %11s %14s %6s%n",
+                "transformer", "evaluated", "matched", "match(ms)", "transformed", "transform(ms)", "errors"));
+        for (TransformerStats stats : sorted) {
+            sb.append(String.format("%-40s %10d %8d %10.1f %11d %14.1f %6d%n", stats.name,
+                    stats.getEvaluated(), stats.getMatched(), millis(stats.getMatchNanos()),
+                    stats.getTransformed(), millis(stats.getTransformNanos()), stats.getErrors()));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void reset() {
+        for (TransformerStats stats : transformerStats) {
+            stats.reset();
+        }
+        discoveredTypes.reset();
+        transformedTypes.reset();
+        errorTypes.reset();
+        totalNanos.reset();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    /**
+     * 单个转换器的统计
+     */
+    public static final class TransformerStats {
+        private final Class<?> type;
+        private final String name;
+        private final LongAdder evaluated = new LongAdder();
+        private final LongAdder matched = new LongAdder();
+        private final LongAdder matchNanos = new LongAdder();
+        private final LongAdder transformed = new LongAdder();
+        private final LongAdder transformNanos = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+
+        private TransformerStats(Class<?> type) {
+            this.type = type;
+            this.name = type.getSimpleName();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getEvaluated() {
+            return evaluated.sum();
+        }
+
+        public long getMatched() {
+            return matched.sum();
+        }
+
+        public long getMatchNanos() {
+            return matchNanos.sum();
+        }
+
+        public long getTransformed() {
+            return transformed.sum();
+        }
+
+        public long getTransformNanos() {
+            return transformNanos.sum();
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        private void reset() {
+            evaluated.reset();
+            matched.reset();
+            matchNanos.reset();
+            transformed.reset();
+            transformNanos.reset();
+            errors.reset();
+        }
+    }
+
+    /**
+     * 当前线程正在处理的类型
+     */
+    private static final class TypeProfile {
+        private long start;
+        /** 最后一次transform结束的时间 */
+        private long mark;
+        private TransformerStats[] applied = new TransformerStats[4];
+        private int appliedCount;
+
+        private void start(long now) {
+            start = now;
+            Arrays.fill(applied, 0, appliedCount, null);
+            appliedCount = 0;
+        }
+
+        private void apply(TransformerStats stats, long now) {
+            if (appliedCount == applied.length) {
+                applied = Arrays.copyOf(applied, appliedCount << 1);
+            }
+            applied[appliedCount++] = stats;
+            mark = now;
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+package io.github.artlibs.autotrace4j.transformer;
+
+import java.util.List;
+
+/**
+ * 转换耗时统计的JMX接口
+ * <p>
+ * ObjectName: io.github.artlibs.autotrace4j:type=TransformProfiler
+ * <p>
+ * @author Fury
+ * @since 2024-12-15
+ * <p>
+ * All rights Reserved.
+ */
+public interface TransformProfilerMXBean {
+    /**
+     * @return 每个转换器的匹配与转换统计
+     */
+    List<TransformProfiler.TransformerStats> getTransformerStats();
+
+    /**
+     * @return 经过匹配的类型数
+     */
+    long getDiscoveredTypes();
+
+    /**
+     * @return 被转换的类型数
+     */
+    long getTransformedTypes();
+
+    /**
+     * @return 转换失败的类型数
+     */
+    long getErrorTypes();
+
+    /**
+     * @return 从发现到完成的累计耗时(纳秒)，包括匹配、转换与生成字节码
+     */
+    long getTotalNanos();
+
+    /**
+     * @return 类型描述缓存的命中次数，未开启缓存时为0
+     */
+    long getTypePoolHits();
+
+    /**
+     * @return 类型描述缓存的未命中次数，未开启缓存时为0
+     */
+    long getTypePoolMisses();
+
+    /**
+     * @return 经过类名前缀过滤的类型数
+     */
+    long getPrefilterEvaluated();
+
+    /**
+     * @return 被类名前缀过滤排除的类型数
+     */
+    long getPrefilterRejected();
+
+    /**
+     * @return 按匹配耗时排序的统计文本
+     */
+    String dump();
+
+    /**
+     * 清空统计
+     */
+    void reset();
+}
@@ -0,0 +1,176 @@
+package io.github.artlibs.autotrace4j.transformer;
+
+import io.github.artlibs.autotrace4j.logger.Logger;
+import io.github.artlibs.autotrace4j.logger.LoggerFactory;
+import io.github.artlibs.autotrace4j.support.SystemUtils;
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.pool.TypePool;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.github.artlibs.autotrace4j.support.Constants.*;
+
+/**
+ * 按类加载器缓存TypePool的解析结果
+ * <p>
+ * ByteBuddy默认的PoolStrategy每次转换都新建TypePool，hasSuperType类的匹配对同一个父类、接口
+ * (如Spring中层层继承的基类)在每个子类加载时都重新读取并解析一遍字节码；这里为每个类加载器保留一个
+ * 有界的LRU缓存，在转换之间复用已解析的类型描述.
+ * <p>
+ * 类加载器为弱引用的key，卸载后其缓存随之回收；缓存的类型描述引用了ClassFileLocator，
+ * 因此需要同时使用弱引用类加载器的LocationStrategy(ForClassLoader.WEAK)，否则key永远不会被回收.
+ * 每个类加载器最多缓存autotrace4j.typepool.cache.size(默认4096)个类型，{@code <=0}时不启用.
+ * <p>
+ * @author Fury
+ * @since 2024-12-15
+ * <p>
+ * All rights Reserved.
+ */
+public final class TypePoolCache extends AgentBuilder.PoolStrategy.WithTypePoolCache {
+    private static final Logger logger = LoggerFactory.getLogger(TypePoolCache.class);
+    private static final String OBJECT_TYPE_NAME = Object.class.getName();
+    private static final TypePool.Resolution OBJECT_TYPE =
+            new TypePool.Resolution.Simple(TypeDescription.ForLoadedType.of(Object.class));
+
+    private final int maxSize;
+    private final Map<ClassLoader, LruCacheProvider> cacheProviders = new WeakHashMap<>();
+    private final LruCacheProvider bootstrapCacheProvider;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private TypePoolCache(int maxSize) {
+        super(TypePool.Default.ReaderMode.FAST);
+        this.maxSize = maxSize;
+        this.bootstrapCacheProvider = new LruCacheProvider();
+    }
+
+    /**
+     * @return 未启用时返回null
+     */
+    public static TypePoolCache create() {
+        int maxSize = SystemUtils.getSysPropertyInteger(SYSTEM_PROPERTY_TYPE_POOL_CACHE_SIZE)
+                .orElse(DEFAULT_TYPE_POOL_CACHE_SIZE);
+        return maxSize > 0 ? new TypePoolCache(maxSize) : null;
+    }
+
+    @Override
+    protected TypePool.CacheProvider locate(ClassLoader classLoader) {
+        if (Objects.isNull(classLoader)) {
+            return bootstrapCacheProvider;
+        }
+        synchronized (cacheProviders) {
+            return cacheProviders.computeIfAbsent(classLoader, key -> new LruCacheProvider());
+        }
+    }
+
+    /**
+     * 安装完成: 输出命中率
+     */
+    public void installed() {
+        logger.debug("type pool cache installed, %s", stats());
+    }
+
+    /**
+     * @return 命中次数
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return 未命中次数
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return 命中率，未发生查找时为0
+     */
+    public double getHitRate() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    /**
+     * @return 统计文本
+     */
+    public String stats() {
+        List<LruCacheProvider> providers;
+        synchronized (cacheProviders) {
+            providers = new ArrayList<>(cacheProviders.values());
+        }
+        providers.add(bootstrapCacheProvider);
+        int size = 0;
+        for (LruCacheProvider provider : providers) {
+            size += provider.size();
+        }
+        return String.format("hits: %d, misses: %d, hit rate: %.1f%%, evictions: %d, class loaders: %d, types: %d",
+                getHits(), getMisses(), getHitRate() * 100, evictions.sum(), providers.size(), size);
+    }
+
+    /**
+     * 单个类加载器的LRU缓存
+     */
+    private final class LruCacheProvider implements TypePool.CacheProvider {
+        private final Map<String, TypePool.Resolution> cache = new LinkedHashMap<String, TypePool.Resolution>(
+                64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TypePool.Resolution> eldest) {
+                if (size() > maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        @Override
+        public TypePool.Resolution find(String name) {
+            if (OBJECT_TYPE_NAME.equals(name)) {
+                return OBJECT_TYPE;
+            }
+            TypePool.Resolution resolution;
+            synchronized (this) {
+                resolution = cache.get(name);
+            }
+            if (Objects.isNull(resolution)) {
+                misses.increment();
+            } else {
+                hits.increment();
+            }
+            return resolution;
+        }
+
+        @Override
+        public TypePool.Resolution register(String name, TypePool.Resolution resolution) {
+            synchronized (this) {
+                TypePool.Resolution previous = cache.get(name);
+                if (Objects.nonNull(previous)) {
+                    return previous;
+                }
+                cache.put(name, resolution);
+            }
+            return resolution;
+        }
+
+        @Override
+        public synchronized void clear() {
+            cache.clear();
+        }
+
+        private synchronized int size() {
+            return cache.size();
+        }
+    }
+
+}
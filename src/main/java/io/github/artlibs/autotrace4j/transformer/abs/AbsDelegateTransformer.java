@@ -1,24 +1,35 @@
 package io.github.artlibs.autotrace4j.transformer.abs;
 
+import io.github.artlibs.autotrace4j.context.Accessors;
 import io.github.artlibs.autotrace4j.context.ReflectUtils;
 import io.github.artlibs.autotrace4j.context.TraceContext;
+import io.github.artlibs.autotrace4j.context.TraceSnapshot;
 import io.github.artlibs.autotrace4j.logger.Logger;
 import io.github.artlibs.autotrace4j.logger.LoggerFactory;
 import io.github.artlibs.autotrace4j.support.Constants;
+import io.github.artlibs.autotrace4j.support.SystemUtils;
 import io.github.artlibs.autotrace4j.transformer.At4jTransformer;
 import io.github.artlibs.autotrace4j.transformer.MorphCallable;
+import net.bytebuddy.asm.Advice;
 import net.bytebuddy.description.method.MethodDescription;
 import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.dynamic.DynamicType;
 import net.bytebuddy.implementation.MethodDelegation;
 import net.bytebuddy.implementation.bind.annotation.*;
+import net.bytebuddy.implementation.bytecode.assign.Assigner;
 import net.bytebuddy.matcher.ElementMatcher;
 import net.bytebuddy.utility.JavaModule;
 import net.bytebuddy.utility.nullability.MaybeNull;
 import net.bytebuddy.utility.nullability.NeverNull;
 
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
 import java.lang.reflect.Method;
 import java.security.ProtectionDomain;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 
 import static io.github.artlibs.autotrace4j.support.Constants.INTERCEPT_METHOD_NAME;
@@ -35,7 +46,14 @@ import static net.bytebuddy.matcher.ElementMatchers.isMethod;
  * All rights Reserved.
  */
 public abstract class AbsDelegateTransformer<T> implements At4jTransformer {
+    /** 关闭Advice模式，全部使用方法代理模式 */
+    private static final boolean ADVICE_DISABLED = SystemUtils
+            .getSysPropertyBool(Constants.SYSTEM_PROPERTY_ADVICE_DISABLE).orElse(Boolean.FALSE);
+    /** Advice模式下通过下标找到对应的转换器 */
+    private static volatile AbsDelegateTransformer<?>[] adviceTransformers = new AbsDelegateTransformer<?>[0];
+
     private final Logger logger = LoggerFactory.getLogger(AbsDelegateTransformer.class);
+    private int adviceIndex = -1;
 
     /**
      * {@inheritDoc}
@@ -50,7 +68,16 @@ public abstract class AbsDelegateTransformer<T> implements At4jTransformer {
             @MaybeNull ProtectionDomain protectionDomain
     ) {
         // 使用方法代理方式进行增强时支持为目标类增加成员属性
-        return transformType(builder, typeDescription, javaModule, classLoader)
+        DynamicType.Builder<?> newBuilder = transformType(builder, typeDescription, javaModule, classLoader);
+        if (this.isAdviceMode()) {
+            // Advice模式：增强逻辑内联到目标方法中，不需要MorphCallable与方法代理的中间调用
+            return newBuilder.visit(Advice.withCustomMapping()
+                    .bind(AdviceIndex.class, this.adviceIndex())
+                    .bind(AdviceType.class, this.getClass())
+                    .to(DelegateAdvice.class)
+                    .on(isMethod().and(this.methodMatcher())));
+        }
+        return newBuilder
                 .method(isMethod().and(this.methodMatcher()))
                 .intercept(MethodDelegation
                         .withDefaultConfiguration()
@@ -70,6 +97,19 @@ public abstract class AbsDelegateTransformer<T> implements At4jTransformer {
      */
     protected abstract ElementMatcher<? super MethodDescription> methodMatcher();
 
+    /**
+     * 是否使用Advice模式进行增强，Advice模式下增强逻辑被内联到目标方法，
+     * 每次调用不再创建MorphCallable代理，此时回调中的originMethod参数为null
+     * <p>
+     * 注意：Advice只能增强目标类中声明的方法，如果匹配的方法可能只是从父类继承而来，
+     * 则需要保持方法代理模式
+     * <p>
+     * @return true 使用Advice模式
+     */
+    protected boolean adviceMode() {
+        return false;
+    }
+
     /**
      * 当进入目标方法时需要执行的动作
      * <p>
@@ -96,6 +136,49 @@ public abstract class AbsDelegateTransformer<T> implements At4jTransformer {
         return result;
     }
 
+    /**
+     * Advice模式的进入方法处理，由内联到目标方法中的Advice调用
+     * <p>
+     * @param type 转换器类型，内联后为常量，JIT可据此确定回调的具体实现
+     * @param index 转换器注册下标
+     * @param obj 被增强目标的实例或者类
+     * @param args 被增强方法的参数列表
+     */
+    public static void adviceOnMethodEnter(Class<?> type, int index, Object obj, Object[] args) {
+        AbsDelegateTransformer<Object> transformer = adviceTransformer(type, index);
+        if (Objects.isNull(transformer)) {
+            return;
+        }
+        try {
+            transformer.onMethodEnter(obj, args, null);
+        } catch (Exception e) {
+            transformer.logger.error("Exception occur on onMethodEnter:\n%s", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Advice模式的退出方法处理，由内联到目标方法中的Advice调用
+     * <p>
+     * @param type 转换器类型，内联后为常量，JIT可据此确定回调的具体实现
+     * @param index 转换器注册下标
+     * @param obj 被增强目标的实例或者类
+     * @param args 被增强方法的参数列表
+     * @param result 被增强方法的执行结果
+     * @return Object 动态方法返回值
+     */
+    public static Object adviceOnMethodExit(Class<?> type, int index, Object obj, Object[] args, Object result) {
+        AbsDelegateTransformer<Object> transformer = adviceTransformer(type, index);
+        if (Objects.isNull(transformer)) {
+            return result;
+        }
+        try {
+            return transformer.onMethodExit(obj, args, result, null);
+        } catch (Exception e) {
+            transformer.logger.error("Exception occur on onMethodExit:\n%s", e.getMessage(), e);
+        }
+        return result;
+    }
+
     /**
      * 方法的增强处理
      * <p>
@@ -126,6 +209,60 @@ public abstract class AbsDelegateTransformer<T> implements At4jTransformer {
         return result;
     }
 
+    private boolean isAdviceMode() {
+        return !ADVICE_DISABLED && this.adviceMode();
+    }
+
+    /**
+     * 按下标取Advice模式的转换器，下标与类型不一致时(如字节码来自其他进程的转换缓存)返回null，
+     * 不在目标方法中抛出异常
+     */
+    @SuppressWarnings("unchecked")
+    private static AbsDelegateTransformer<Object> adviceTransformer(Class<?> type, int index) {
+        AbsDelegateTransformer<?>[] transformers = adviceTransformers;
+        if (index < 0 || index >= transformers.length || !type.isInstance(transformers[index])) {
+            return null;
+        }
+        return (AbsDelegateTransformer<Object>) transformers[index];
+    }
+
+    /**
+     * 按转换器的加载顺序分配Advice下标
+     * <p>
+     * 下标被内联到增强后的字节码中，在任何转换之前按确定的顺序分配，
+     * 转换缓存重放的字节码在下次启动时才能找到同一个转换器
+     * <p>
+     * @param transformers 按加载顺序排列的转换器
+     */
+    public static void assignAdviceIndexes(List<? extends At4jTransformer> transformers) {
+        for (At4jTransformer transformer : transformers) {
+            if (transformer instanceof AbsDelegateTransformer) {
+                ((AbsDelegateTransformer<?>) transformer).adviceIndex();
+            }
+        }
+    }
+
+    /**
+     * @return Advice模式下内联到字节码中的下标，未分配时为-1
+     */
+    public final synchronized int getAdviceIndex() {
+        return this.adviceIndex;
+    }
+
+    private synchronized int adviceIndex() {
+        if (this.adviceIndex < 0) {
+            this.adviceIndex = registerAdviceTransformer(this);
+        }
+        return this.adviceIndex;
+    }
+
+    private static synchronized int registerAdviceTransformer(AbsDelegateTransformer<?> transformer) {
+        AbsDelegateTransformer<?>[] transformers = Arrays.copyOf(adviceTransformers, adviceTransformers.length + 1);
+        transformers[transformers.length - 1] = transformer;
+        adviceTransformers = transformers;
+        return transformers.length - 1;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -142,6 +279,50 @@ public abstract class AbsDelegateTransformer<T> implements At4jTransformer {
         return super.equals(obj);
     }
 
+    /**
+     * Advice模式下绑定转换器注册下标
+     */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.PARAMETER)
+    public @interface AdviceIndex {}
+
+    /**
+     * Advice模式下绑定转换器类型
+     */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.PARAMETER)
+    public @interface AdviceType {}
+
+    /**
+     * Advice模式的增强逻辑，会被内联到目标方法中，参数数组在进入时创建一次并传递给退出逻辑
+     */
+    public static class DelegateAdvice {
+        private DelegateAdvice() {}
+
+        @Advice.OnMethodEnter
+        public static Object[] adviceOnMethodEnter(
+                @AdviceType Class<?> type,
+                @AdviceIndex int index,
+                @Advice.This(optional = true) Object thiz,
+                @Advice.Origin Class<?> clazz,
+                @Advice.AllArguments Object[] args) {
+            AbsDelegateTransformer.adviceOnMethodEnter(type, index, Objects.isNull(thiz) ? clazz : thiz, args);
+            return args;
+        }
+
+        @Advice.OnMethodExit(onThrowable = Throwable.class)
+        @SuppressWarnings("unused")
+        public static void adviceOnMethodExit(
+                @AdviceType Class<?> type,
+                @AdviceIndex int index,
+                @Advice.This(optional = true) Object thiz,
+                @Advice.Origin Class<?> clazz,
+                @Advice.Enter Object[] args,
+                @Advice.Return(readOnly = false, typing = Assigner.Typing.DYNAMIC) Object result) {
+            result = AbsDelegateTransformer.adviceOnMethodExit(type, index, Objects.isNull(thiz) ? clazz : thiz, args, result);
+        }
+    }
+
     /**
      * 实例方法增强代理
      */
@@ -190,14 +371,9 @@ public abstract class AbsDelegateTransformer<T> implements At4jTransformer {
          */
         @Override
         protected void onMethodEnter(Object thiz, Object[] allArgs, Method originMethod) throws Exception {
-            String traceId = ReflectUtils.getDeclaredFieldValue(thiz, TraceContext.TRACE_KEY);
-            if (Objects.nonNull(traceId)) {
-                TraceContext.setTraceId(traceId);
-                TraceContext.setSpanId(TraceContext.generate());
-            }
-            String spanId = ReflectUtils.getDeclaredFieldValue(thiz, TraceContext.SPAN_KEY);
-            if (Objects.nonNull(spanId)) {
-                TraceContext.setParentSpanId(spanId);
+            TraceSnapshot snapshot = ReflectUtils.getDeclaredFieldValue(thiz, TraceContext.TRACE_SNAPSHOT_KEY);
+            if (Objects.nonNull(snapshot) && snapshot.hasTraceId()) {
+                TraceContext.restore(snapshot.newChildSpan());
             }
         }
     }
@@ -251,55 +427,31 @@ public abstract class AbsDelegateTransformer<T> implements At4jTransformer {
             // just intercept http request
             if (isHttp) {
                 // first we take it from the req attributes
-                String traceId = ReflectUtils
-                        .getMethod(allArgs[0], Constants.GET_ATTRIBUTE, String.class)
-                        .invoke(TraceContext.ATO_TRACE_ID);
-                String parentSpanId = ReflectUtils
-                        .getMethod(allArgs[0], Constants.GET_ATTRIBUTE, String.class)
-                        .invoke(TraceContext.ATO_PARENT_SPAN_ID);
-                String spanId = ReflectUtils
-                        .getMethod(allArgs[0], Constants.GET_ATTRIBUTE, String.class)
-                        .invoke(TraceContext.ATO_SPAN_ID);
+                Object req = allArgs[0];
+                Object resp = allArgs[1];
+                String traceId = Accessors.GET_ATTRIBUTE.invoke(req, TraceContext.ATO_TRACE_ID);
+                String parentSpanId = Accessors.GET_ATTRIBUTE.invoke(req, TraceContext.ATO_PARENT_SPAN_ID);
+                String spanId = Accessors.GET_ATTRIBUTE.invoke(req, TraceContext.ATO_SPAN_ID);
 
                 if (Objects.nonNull(traceId)) {
-                    TraceContext.setTraceId(traceId);
-                    TraceContext.setParentSpanId(parentSpanId);
-                    TraceContext.setSpanId(spanId);
+                    TraceContext.restore(TraceSnapshot.of(traceId, spanId, parentSpanId));
                 } else {
-                    traceId = ReflectUtils
-                            .getMethod(allArgs[0], Constants.GET_HEADER, String.class)
-                            .invoke(TraceContext.ATO_TRACE_ID);
-                    parentSpanId = ReflectUtils
-                            .getMethod(allArgs[0], Constants.GET_HEADER, String.class)
-                            .invoke(TraceContext.ATO_SPAN_ID);
+                    traceId = Accessors.GET_HEADER.invoke(req, TraceContext.ATO_TRACE_ID);
+                    parentSpanId = Accessors.GET_HEADER.invoke(req, TraceContext.ATO_SPAN_ID);
 
                     if (Objects.isNull(traceId)) {
-                        traceId = TraceContext.generate();
+                        traceId = TraceContext.generateTraceId();
                     }
-                    spanId = TraceContext.generate();
-
-                    TraceContext.setSpanId(spanId);
-                    TraceContext.setTraceId(traceId);
-                    TraceContext.setParentSpanId(parentSpanId);
-
-                    ReflectUtils
-                            .getMethod(allArgs[0], Constants.SET_ATTRIBUTE, String.class, Object.class)
-                            .invoke(TraceContext.ATO_TRACE_ID, traceId);
-                    ReflectUtils
-                            .getMethod(allArgs[0], Constants.SET_ATTRIBUTE, String.class, Object.class)
-                            .invoke(TraceContext.ATO_PARENT_SPAN_ID, parentSpanId);
-                    ReflectUtils
-                            .getMethod(allArgs[0], Constants.SET_ATTRIBUTE, String.class, Object.class)
-                            .invoke(TraceContext.ATO_SPAN_ID, spanId);
-                    ReflectUtils
-                            .getMethod(allArgs[1], Constants.SET_HEADER, String.class, String.class)
-                            .invoke(TraceContext.ATO_TRACE_ID, traceId);
-                    ReflectUtils
-                            .getMethod(allArgs[1], Constants.SET_HEADER, String.class, String.class)
-                            .invoke(TraceContext.ATO_PARENT_SPAN_ID, parentSpanId);
-                    ReflectUtils
-                            .getMethod(allArgs[1], Constants.SET_HEADER, String.class, String.class)
-                            .invoke(TraceContext.ATO_SPAN_ID, spanId);
+                    spanId = TraceContext.generateSpanId();
+
+                    TraceContext.restore(TraceSnapshot.of(traceId, spanId, parentSpanId));
+
+                    Accessors.SET_ATTRIBUTE.invoke(req, TraceContext.ATO_TRACE_ID, traceId);
+                    Accessors.SET_ATTRIBUTE.invoke(req, TraceContext.ATO_PARENT_SPAN_ID, parentSpanId);
+                    Accessors.SET_ATTRIBUTE.invoke(req, TraceContext.ATO_SPAN_ID, spanId);
+                    Accessors.SET_HEADER.invoke(resp, TraceContext.ATO_TRACE_ID, traceId);
+                    Accessors.SET_HEADER.invoke(resp, TraceContext.ATO_PARENT_SPAN_ID, parentSpanId);
+                    Accessors.SET_HEADER.invoke(resp, TraceContext.ATO_SPAN_ID, spanId);
                 }
             }
         }
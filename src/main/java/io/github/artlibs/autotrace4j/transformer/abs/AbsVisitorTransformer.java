@@ -1,6 +1,7 @@
 package io.github.artlibs.autotrace4j.transformer.abs;
 
 import io.github.artlibs.autotrace4j.context.TraceContext;
+import io.github.artlibs.autotrace4j.context.TraceSnapshot;
 import io.github.artlibs.autotrace4j.transformer.At4jTransformer;
 import net.bytebuddy.asm.Advice;
 import net.bytebuddy.description.method.MethodDescription;
@@ -157,12 +158,9 @@ public abstract class AbsVisitorTransformer implements At4jTransformer {
 
         @Advice.OnMethodEnter
         public static void adviceOnMethodEnter(
-                @Advice.FieldValue(value = TraceContext.TRACE_KEY, readOnly = false) String traceId,
-                @Advice.FieldValue(value = TraceContext.SPAN_KEY, readOnly = false) String spanId) {
-            if (Objects.nonNull(traceId)) {
-                TraceContext.setTraceId(traceId);
-                TraceContext.setParentSpanId(spanId);
-                TraceContext.setSpanId(TraceContext.generate());
+                @Advice.FieldValue(value = TraceContext.TRACE_SNAPSHOT_KEY) TraceSnapshot snapshot) {
+            if (Objects.nonNull(snapshot) && snapshot.hasTraceId()) {
+                TraceContext.restore(snapshot.newChildSpan());
             }
         }
 
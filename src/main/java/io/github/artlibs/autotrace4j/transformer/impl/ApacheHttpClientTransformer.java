@@ -1,15 +1,15 @@
 package io.github.artlibs.autotrace4j.transformer.impl;
 
-import io.github.artlibs.autotrace4j.context.MethodWrapper;
-import io.github.artlibs.autotrace4j.context.ReflectUtils;
+import io.github.artlibs.autotrace4j.context.Accessors;
 import io.github.artlibs.autotrace4j.context.TraceContext;
-import io.github.artlibs.autotrace4j.support.Constants;
 import io.github.artlibs.autotrace4j.transformer.abs.AbsDelegateTransformer;
 import net.bytebuddy.description.method.MethodDescription;
 import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.matcher.ElementMatcher;
 
 import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Objects;
 
 import static net.bytebuddy.matcher.ElementMatchers.named;
@@ -25,15 +25,26 @@ import static net.bytebuddy.matcher.ElementMatchers.named;
  */
 @SuppressWarnings("unused")
 public class ApacheHttpClientTransformer extends AbsDelegateTransformer.AbsInstance {
+    private static final String ABSTRACT_CLIENT_CLS = "org.apache.http.impl.client.AbstractHttpClient";
+    private static final String MINIMAL_CLIENT_CLS = "org.apache.http.impl.client.MinimalHttpClient";
+    private static final String INTERNAL_CLIENT_CLS = "org.apache.http.impl.client.InternalHttpClient";
 
     /**
      * {@inheritDoc}
      */
     @Override
     public ElementMatcher<? super TypeDescription> typeMatcher() {
-        return named("org.apache.http.impl.client.AbstractHttpClient")
-                .or(named("org.apache.http.impl.client.MinimalHttpClient"))
-                .or(named("org.apache.http.impl.client.InternalHttpClient"));
+        return named(ABSTRACT_CLIENT_CLS)
+                .or(named(MINIMAL_CLIENT_CLS))
+                .or(named(INTERNAL_CLIENT_CLS));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> typeNames() {
+        return Arrays.asList(ABSTRACT_CLIENT_CLS, MINIMAL_CLIENT_CLS, INTERNAL_CLIENT_CLS);
     }
 
     /**
@@ -44,6 +55,14 @@ public class ApacheHttpClientTransformer extends AbsDelegateTransformer.AbsInsta
         return named("doExecute");
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean adviceMode() {
+        return true;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -51,12 +70,10 @@ public class ApacheHttpClientTransformer extends AbsDelegateTransformer.AbsInsta
     protected void onMethodEnter(Object thiz, Object[] allArgs, Method originMethod) throws Exception {
         final String traceId = TraceContext.getTraceId();
         if (Objects.nonNull(traceId)) {
-            MethodWrapper setHeaderMethod = ReflectUtils.getMethod(allArgs[1]
-                    , Constants.SET_HEADER, String.class, String.class);
-            setHeaderMethod.invoke(TraceContext.ATO_TRACE_ID, traceId);
+            Accessors.SET_HEADER.invoke(allArgs[1], TraceContext.ATO_TRACE_ID, traceId);
             final String spanId = TraceContext.getSpanId();
             if (Objects.nonNull(spanId)) {
-                setHeaderMethod.invoke(TraceContext.ATO_SPAN_ID, spanId);
+                Accessors.SET_HEADER.invoke(allArgs[1], TraceContext.ATO_SPAN_ID, spanId);
             }
         }
     }
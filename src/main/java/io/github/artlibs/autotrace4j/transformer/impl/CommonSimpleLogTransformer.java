@@ -4,9 +4,11 @@ import io.github.artlibs.autotrace4j.context.TraceInjector;
 import io.github.artlibs.autotrace4j.transformer.abs.AbsVisitorTransformer;
 import net.bytebuddy.asm.Advice;
 import net.bytebuddy.description.type.TypeDescription;
-import net.bytebuddy.implementation.bytecode.assign.Assigner;
 import net.bytebuddy.matcher.ElementMatcher;
 
+import java.util.Collection;
+import java.util.Collections;
+
 import static net.bytebuddy.matcher.ElementMatchers.*;
 
 /**
@@ -19,13 +21,22 @@ import static net.bytebuddy.matcher.ElementMatchers.*;
  */
 @SuppressWarnings("unused")
 public class CommonSimpleLogTransformer extends AbsVisitorTransformer {
+    private static final String SIMPLE_LOG_CLS = "org.apache.commons.logging.impl.SimpleLog";
 
     /**
      * {@inheritDoc}
      */
     @Override
     public ElementMatcher<? super TypeDescription> typeMatcher() {
-        return hasSuperType(named("org.apache.commons.logging.impl.SimpleLog"));
+        return hasSuperType(named(SIMPLE_LOG_CLS));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> superTypeNames() {
+        return Collections.singletonList(SIMPLE_LOG_CLS);
     }
 
     /**
@@ -45,9 +56,8 @@ public class CommonSimpleLogTransformer extends AbsVisitorTransformer {
      */
     @Advice.OnMethodEnter
     public static void adviceOnMethodEnter(
-            @Advice.Argument(value = 0, typing = Assigner.Typing.DYNAMIC
-                    , readOnly = false) StringBuffer buffer) {
-        buffer = new StringBuffer(TraceInjector.DF.injectTrace(buffer.toString()));
+            @Advice.Argument(value = 0) StringBuffer buffer) {
+        TraceInjector.DF.injectTrace(buffer);
     }
 
 }
@@ -1,7 +1,6 @@
 package io.github.artlibs.autotrace4j.transformer.impl;
 
-import io.github.artlibs.autotrace4j.context.MethodWrapper;
-import io.github.artlibs.autotrace4j.context.ReflectUtils;
+import io.github.artlibs.autotrace4j.context.Accessors;
 import io.github.artlibs.autotrace4j.context.TraceContext;
 import io.github.artlibs.autotrace4j.transformer.abs.AbsDelegateTransformer;
 import net.bytebuddy.description.method.MethodDescription;
@@ -10,6 +9,8 @@ import net.bytebuddy.matcher.ElementMatcher;
 import net.bytebuddy.matcher.ElementMatchers;
 
 import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Objects;
 
 import static net.bytebuddy.matcher.ElementMatchers.named;
@@ -23,13 +24,22 @@ import static net.bytebuddy.matcher.ElementMatchers.takesArgument;
  */
 @SuppressWarnings("unused")
 public class DubboConsumerTransformer extends AbsDelegateTransformer.AbsInstance {
+    private static final String FUTURE_FILTER_CLS = "org.apache.dubbo.rpc.protocol.dubbo.filter.FutureFilter";
 
     /**
      * {@inheritDoc}
      */
     @Override
     public ElementMatcher<? super TypeDescription> typeMatcher() {
-        return named("org.apache.dubbo.rpc.protocol.dubbo.filter.FutureFilter");
+        return named(FUTURE_FILTER_CLS);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> typeNames() {
+        return Collections.singletonList(FUTURE_FILTER_CLS);
     }
 
     /**
@@ -44,6 +54,14 @@ public class DubboConsumerTransformer extends AbsDelegateTransformer.AbsInstance
                 );
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean adviceMode() {
+        return true;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -51,12 +69,10 @@ public class DubboConsumerTransformer extends AbsDelegateTransformer.AbsInstance
     protected void onMethodEnter(Object thiz, Object[] allArgs, Method originMethod) throws Exception {
         String traceId = TraceContext.getTraceId();
         if (Objects.nonNull(traceId)) {
-            MethodWrapper methodWrapper = ReflectUtils.getMethod(allArgs[1]
-                    , "setAttachment", String.class, String.class);
-            methodWrapper.invoke(TraceContext.ATO_TRACE_ID, traceId);
+            Accessors.SET_ATTACHMENT.invoke(allArgs[1], TraceContext.ATO_TRACE_ID, traceId);
             final String spanId = TraceContext.getSpanId();
             if (Objects.nonNull(spanId)) {
-                methodWrapper.invoke(TraceContext.ATO_SPAN_ID, spanId);
+                Accessors.SET_ATTACHMENT.invoke(allArgs[1], TraceContext.ATO_SPAN_ID, spanId);
             }
         }
     }
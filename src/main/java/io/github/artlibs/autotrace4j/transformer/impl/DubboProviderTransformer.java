@@ -1,8 +1,8 @@
 package io.github.artlibs.autotrace4j.transformer.impl;
 
-import io.github.artlibs.autotrace4j.context.MethodWrapper;
-import io.github.artlibs.autotrace4j.context.ReflectUtils;
+import io.github.artlibs.autotrace4j.context.Accessors;
 import io.github.artlibs.autotrace4j.context.TraceContext;
+import io.github.artlibs.autotrace4j.context.TraceSnapshot;
 import io.github.artlibs.autotrace4j.transformer.abs.AbsDelegateTransformer;
 import net.bytebuddy.description.method.MethodDescription;
 import net.bytebuddy.description.type.TypeDescription;
@@ -10,6 +10,8 @@ import net.bytebuddy.matcher.ElementMatcher;
 import net.bytebuddy.matcher.ElementMatchers;
 
 import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Objects;
 
 import static net.bytebuddy.matcher.ElementMatchers.named;
@@ -23,13 +25,22 @@ import static net.bytebuddy.matcher.ElementMatchers.takesArgument;
  */
 @SuppressWarnings("unused")
 public class DubboProviderTransformer extends AbsDelegateTransformer.AbsInstance {
+    private static final String TRACE_FILTER_CLS = "org.apache.dubbo.rpc.protocol.dubbo.filter.TraceFilter";
 
     /**
      * {@inheritDoc}
      */
     @Override
     public ElementMatcher<? super TypeDescription> typeMatcher() {
-        return named("org.apache.dubbo.rpc.protocol.dubbo.filter.TraceFilter");
+        return named(TRACE_FILTER_CLS);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> typeNames() {
+        return Collections.singletonList(TRACE_FILTER_CLS);
     }
 
     /**
@@ -44,18 +55,23 @@ public class DubboProviderTransformer extends AbsDelegateTransformer.AbsInstance
                 );
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean adviceMode() {
+        return true;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     protected void onMethodEnter(Object thiz, Object[] allArgs, Method originMethod) throws Exception {
-        MethodWrapper methodWrapper = ReflectUtils.getMethod(allArgs[1]
-                , "getAttachment", String.class);
-        final String traceId = methodWrapper.invoke(TraceContext.ATO_TRACE_ID);
+        final String traceId = Accessors.GET_ATTACHMENT.invoke(allArgs[1], TraceContext.ATO_TRACE_ID);
         if (Objects.nonNull(traceId)) {
-            TraceContext.setTraceId(traceId);
-            TraceContext.setParentSpanId(methodWrapper.invoke(TraceContext.ATO_SPAN_ID));
-            TraceContext.setSpanId(TraceContext.generate());
+            TraceContext.restore(TraceSnapshot.newSpan(traceId
+                    , Accessors.GET_ATTACHMENT.invoke(allArgs[1], TraceContext.ATO_SPAN_ID)));
         }
     }
 
@@ -5,6 +5,9 @@ import net.bytebuddy.description.method.MethodDescription;
 import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.matcher.ElementMatcher;
 
+import java.util.Collection;
+import java.util.Collections;
+
 import static net.bytebuddy.matcher.ElementMatchers.*;
 
 /**
@@ -17,16 +20,25 @@ import static net.bytebuddy.matcher.ElementMatchers.*;
  */
 @SuppressWarnings("unused")
 public class HttpFilterTransformer extends AbsDelegateTransformer.AbsServlet {
+    private static final String FILTER_CLS = "javax.servlet.Filter";
 
     /**
      * {@inheritDoc}
      */
     @Override
     public ElementMatcher<? super TypeDescription> typeMatcher() {
-        return hasSuperType(named("javax.servlet.Filter"))
+        return hasSuperType(named(FILTER_CLS))
                 .and(not(isInterface())).and(not(isAbstract()));
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> superTypeNames() {
+        return Collections.singletonList(FILTER_CLS);
+    }
+
     /**
      * {@inheritDoc}
      */
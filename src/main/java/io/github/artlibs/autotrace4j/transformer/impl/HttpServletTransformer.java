@@ -5,6 +5,9 @@ import net.bytebuddy.description.method.MethodDescription;
 import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.matcher.ElementMatcher;
 
+import java.util.Collection;
+import java.util.Collections;
+
 import static net.bytebuddy.matcher.ElementMatchers.named;
 import static net.bytebuddy.matcher.ElementMatchers.takesArgument;
 
@@ -18,13 +21,22 @@ import static net.bytebuddy.matcher.ElementMatchers.takesArgument;
  */
 @SuppressWarnings("unused")
 public class HttpServletTransformer extends AbsDelegateTransformer.AbsServlet {
+    private static final String HTTP_SERVLET_CLS = "javax.servlet.http.HttpServlet";
 
     /**
      * {@inheritDoc}
      */
     @Override
     public ElementMatcher<? super TypeDescription> typeMatcher() {
-        return named("javax.servlet.http.HttpServlet");
+        return named(HTTP_SERVLET_CLS);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> typeNames() {
+        return Collections.singletonList(HTTP_SERVLET_CLS);
     }
 
     /**
@@ -36,4 +48,12 @@ public class HttpServletTransformer extends AbsDelegateTransformer.AbsServlet {
             .and(takesArgument(0, named("javax.servlet.http.HttpServletRequest")))
             .and(takesArgument(1, named("javax.servlet.http.HttpServletResponse")));
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean adviceMode() {
+        return true;
+    }
 }
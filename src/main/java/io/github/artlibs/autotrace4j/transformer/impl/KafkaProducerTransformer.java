@@ -1,7 +1,6 @@
 package io.github.artlibs.autotrace4j.transformer.impl;
 
-import io.github.artlibs.autotrace4j.context.MethodWrapper;
-import io.github.artlibs.autotrace4j.context.ReflectUtils;
+import io.github.artlibs.autotrace4j.context.Accessors;
 import io.github.artlibs.autotrace4j.context.TraceContext;
 import io.github.artlibs.autotrace4j.transformer.abs.AbsVisitorTransformer;
 import net.bytebuddy.asm.Advice;
@@ -9,6 +8,8 @@ import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.implementation.bytecode.assign.Assigner;
 import net.bytebuddy.matcher.ElementMatcher;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Objects;
 
 import static net.bytebuddy.matcher.ElementMatchers.*;
@@ -23,10 +24,16 @@ import static net.bytebuddy.matcher.ElementMatchers.*;
  */
 @SuppressWarnings("unused")
 public class KafkaProducerTransformer extends AbsVisitorTransformer {
+    private static final String KAFKA_PRODUCER_CLS = "org.apache.kafka.clients.producer.KafkaProducer";
 
     @Override
     public ElementMatcher<? super TypeDescription> typeMatcher() {
-        return hasSuperType(named("org.apache.kafka.clients.producer.KafkaProducer"));
+        return hasSuperType(named(KAFKA_PRODUCER_CLS));
+    }
+
+    @Override
+    public Collection<String> superTypeNames() {
+        return Collections.singletonList(KAFKA_PRODUCER_CLS);
     }
 
     @Override
@@ -49,17 +56,15 @@ public class KafkaProducerTransformer extends AbsVisitorTransformer {
         if (Objects.isNull(producerRecord) || Objects.isNull(traceId)) {
             return;
         }
-        Object headers = ReflectUtils.getMethod(producerRecord
-                        , "headers").invoke();
+        Object headers = Accessors.HEADERS.invoke(producerRecord);
         if (Objects.isNull(headers)) {
             return;
         }
-        MethodWrapper method = ReflectUtils.getMethod(headers
-                , "add", String.class, byte[].class);
 
-        method.invoke(TraceContext.TRACE_KEY, traceId.getBytes());
-        if (Objects.nonNull(TraceContext.getSpanId())) {
-            method.invoke(TraceContext.SPAN_KEY, TraceContext.getSpanId().getBytes());
+        Accessors.ADD_HEADER.invoke(headers, TraceContext.TRACE_KEY, traceId.getBytes());
+        final String spanId = TraceContext.getSpanId();
+        if (Objects.nonNull(spanId)) {
+            Accessors.ADD_HEADER.invoke(headers, TraceContext.SPAN_KEY, spanId.getBytes());
         }
     }
 }
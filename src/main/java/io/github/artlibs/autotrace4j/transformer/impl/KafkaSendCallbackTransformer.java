@@ -5,6 +5,9 @@ import net.bytebuddy.description.method.MethodDescription;
 import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.matcher.ElementMatcher;
 
+import java.util.Collection;
+import java.util.Collections;
+
 import static net.bytebuddy.matcher.ElementMatchers.*;
 
 /**
@@ -17,13 +20,20 @@ import static net.bytebuddy.matcher.ElementMatchers.*;
  */
 @SuppressWarnings("unused")
 public class KafkaSendCallbackTransformer extends AbsDelegateTransformer.AbsAnonymousInterface {
+    private static final String CALLBACK_CLS = "org.apache.kafka.clients.producer.Callback";
+
     @Override
     public ElementMatcher<? super TypeDescription> typeMatcher() {
         return not(isAbstract()).and(not(isInterface()))
-                .and(hasSuperType(named("org.apache.kafka.clients.producer.Callback")));
+                .and(hasSuperType(named(CALLBACK_CLS)));
 
     }
 
+    @Override
+    public Collection<String> superTypeNames() {
+        return Collections.singletonList(CALLBACK_CLS);
+    }
+
     @Override
     protected ElementMatcher<? super MethodDescription> methodMatcher() {
         return named("onCompletion");
@@ -1,14 +1,15 @@
 package io.github.artlibs.autotrace4j.transformer.impl;
 
-import io.github.artlibs.autotrace4j.context.MethodWrapper;
-import io.github.artlibs.autotrace4j.context.ReflectUtils;
+import io.github.artlibs.autotrace4j.context.Accessors;
 import io.github.artlibs.autotrace4j.context.TraceContext;
+import io.github.artlibs.autotrace4j.context.TraceSnapshot;
 import io.github.artlibs.autotrace4j.transformer.abs.AbsVisitorTransformer;
 import net.bytebuddy.asm.Advice;
 import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.matcher.ElementMatcher;
 
-import java.util.Iterator;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Objects;
 
 import static net.bytebuddy.matcher.ElementMatchers.*;
@@ -26,11 +27,17 @@ import static net.bytebuddy.matcher.ElementMatchers.*;
  */
 @SuppressWarnings("unused")
 public class KafkaSpringConsumerTransformer extends AbsVisitorTransformer {
+    private static final String LISTENER_CONSUMER_CLS = "org.springframework.kafka.listener." +
+            "KafkaMessageListenerContainer$ListenerConsumer";
 
     @Override
     public ElementMatcher<? super TypeDescription> typeMatcher() {
-        return hasSuperType(named("org.springframework.kafka.listener." +
-                "KafkaMessageListenerContainer$ListenerConsumer"));
+        return hasSuperType(named(LISTENER_CONSUMER_CLS));
+    }
+
+    @Override
+    public Collection<String> superTypeNames() {
+        return Collections.singletonList(LISTENER_CONSUMER_CLS);
     }
 
     @Override
@@ -51,32 +58,19 @@ public class KafkaSpringConsumerTransformer extends AbsVisitorTransformer {
     @Advice.OnMethodEnter
     public static void adviceOnMethodEnter(@Advice.Argument(value = 0) Object recOrRecs) {
         Object consumerRecord = recOrRecs;
-        if (Iterable.class.isAssignableFrom(recOrRecs.getClass())) {
-            Iterator<?> iterator = ReflectUtils.getMethod(recOrRecs
-                    , "iterator").invoke();
-            consumerRecord = ReflectUtils.getMethod(iterator
-                    , "next").invoke();
+        if (recOrRecs instanceof Iterable) {
+            consumerRecord = ((Iterable<?>) recOrRecs).iterator().next();
         }
-        Object headers = ReflectUtils.getMethod(consumerRecord
-                , "headers").invoke();
-        MethodWrapper lastHeader = ReflectUtils.getMethod(headers
-                , "lastHeader", String.class);
+        Object headers = Accessors.HEADERS.invoke(consumerRecord);
 
-        Object traceIdHeader = lastHeader.invoke(TraceContext.TRACE_KEY);
-        byte[] traceIdByte = ReflectUtils.getMethod(traceIdHeader
-                        , "value").invoke();
-        Object spanIdHeader = lastHeader.invoke(TraceContext.SPAN_KEY);
-        byte[] spanIdByte = ReflectUtils.getMethod(spanIdHeader
-                        , "value").invoke();
+        Object traceIdHeader = Accessors.LAST_HEADER.invoke(headers, TraceContext.TRACE_KEY);
+        byte[] traceIdByte = Accessors.HEADER_VALUE.invoke(traceIdHeader);
+        Object spanIdHeader = Accessors.LAST_HEADER.invoke(headers, TraceContext.SPAN_KEY);
+        byte[] spanIdByte = Accessors.HEADER_VALUE.invoke(spanIdHeader);
 
-        if (Objects.isNull(traceIdByte)) {
-            traceIdByte = TraceContext.generate().getBytes();
-        }
-        TraceContext.setTraceId(new String(traceIdByte));
-        TraceContext.setSpanId(TraceContext.generate());
-        if (Objects.nonNull(spanIdByte)) {
-            TraceContext.setParentSpanId(new String(spanIdByte));
-        }
+        TraceContext.restore(TraceSnapshot.newSpan(
+                Objects.isNull(traceIdByte) ? null : new String(traceIdByte),
+                Objects.isNull(spanIdByte) ? null : new String(spanIdByte)));
     }
 
     /**
@@ -4,9 +4,11 @@ import io.github.artlibs.autotrace4j.context.TraceInjector;
 import io.github.artlibs.autotrace4j.transformer.abs.AbsVisitorTransformer;
 import net.bytebuddy.asm.Advice;
 import net.bytebuddy.description.type.TypeDescription;
-import net.bytebuddy.implementation.bytecode.assign.Assigner;
 import net.bytebuddy.matcher.ElementMatcher;
 
+import java.util.Collection;
+import java.util.Collections;
+
 import static net.bytebuddy.matcher.ElementMatchers.*;
 
 /**
@@ -19,6 +21,7 @@ import static net.bytebuddy.matcher.ElementMatchers.*;
  */
 @SuppressWarnings("unused")
 public class Log4j2StringLayoutTransformer extends AbsVisitorTransformer {
+    private static final String ENCODER_CLS = "org.apache.logging.log4j.core.layout.Encoder";
 
     /**
      * {@inheritDoc}
@@ -28,7 +31,15 @@ public class Log4j2StringLayoutTransformer extends AbsVisitorTransformer {
         // log4j2: org.apache.logging.log4j.core.appender.AbstractOutputStreamAppender
         // method: directEncodeEvent & writeByteArrayToManager -> layout:encode & layout:toByteArray
         // StringLayout有诸多实现：pattern, json, xml, yaml, csv等等，需要注意可能的破坏格式
-        return hasSuperType(named("org.apache.logging.log4j.core.layout.Encoder"));
+        return hasSuperType(named(ENCODER_CLS));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> superTypeNames() {
+        return Collections.singletonList(ENCODER_CLS);
     }
 
     /**
@@ -50,9 +61,8 @@ public class Log4j2StringLayoutTransformer extends AbsVisitorTransformer {
      */
     @Advice.OnMethodEnter
     public static void adviceOnMethodEnter(
-            @Advice.Argument(value = 0, typing = Assigner.Typing.DYNAMIC
-                    , readOnly = false) StringBuilder builder) {
-        builder = new StringBuilder(TraceInjector.DF.injectTrace(builder.toString()));
+            @Advice.Argument(value = 0) StringBuilder builder) {
+        TraceInjector.DF.injectTrace(builder);
     }
 
 }
@@ -7,6 +7,9 @@ import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.implementation.bytecode.assign.Assigner;
 import net.bytebuddy.matcher.ElementMatcher;
 
+import java.util.Collection;
+import java.util.Collections;
+
 import static net.bytebuddy.matcher.ElementMatchers.*;
 
 /**
@@ -19,13 +22,22 @@ import static net.bytebuddy.matcher.ElementMatchers.*;
  */
 @SuppressWarnings("unused")
 public class Log4jQuietWriterTransformer extends AbsVisitorTransformer {
+    private static final String QUIET_WRITER_CLS = "org.apache.log4j.helpers.QuietWriter";
 
     /**
      * {@inheritDoc}
      */
     @Override
     public ElementMatcher<? super TypeDescription> typeMatcher() {
-        return hasSuperType(named("org.apache.log4j.helpers.QuietWriter"));
+        return hasSuperType(named(QUIET_WRITER_CLS));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> superTypeNames() {
+        return Collections.singletonList(QUIET_WRITER_CLS);
     }
 
     /**
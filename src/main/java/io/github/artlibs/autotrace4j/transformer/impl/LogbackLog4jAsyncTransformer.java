@@ -1,13 +1,17 @@
 package io.github.artlibs.autotrace4j.transformer.impl;
 
-import io.github.artlibs.autotrace4j.context.ReflectUtils;
+import io.github.artlibs.autotrace4j.context.Accessors;
 import io.github.artlibs.autotrace4j.context.TraceContext;
+import io.github.artlibs.autotrace4j.context.TraceSnapshot;
 import io.github.artlibs.autotrace4j.transformer.abs.AbsVisitorTransformer;
 import net.bytebuddy.asm.Advice;
 import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.implementation.bytecode.assign.Assigner;
 import net.bytebuddy.matcher.ElementMatcher;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Objects;
 
 import static net.bytebuddy.matcher.ElementMatchers.*;
@@ -23,17 +27,37 @@ import static net.bytebuddy.matcher.ElementMatchers.*;
  */
 @SuppressWarnings("unused")
 public class LogbackLog4jAsyncTransformer extends AbsVisitorTransformer {
+    private static final String LOGBACK_ATTACHABLE_CLS = "ch.qos.logback.core.spi.AppenderAttachableImpl";
+    private static final String LOG4J_ATTACHABLE_CLS = "org.apache.log4j.helpers.AppenderAttachableImpl";
+    private static final String LOG4J2_APPENDER_CONTROL_CLS = "org.apache.logging.log4j.core.config.AppenderControl";
+
     /**
      * {@inheritDoc}
      */
     @Override
     public ElementMatcher<? super TypeDescription> typeMatcher() {
         return // logback - appendLoopOnAppenders
-                named("ch.qos.logback.core.spi.AppenderAttachableImpl")
+                named(LOGBACK_ATTACHABLE_CLS)
                         // log4j - appendLoopOnAppenders
-                .or(named("org.apache.log4j.helpers.AppenderAttachableImpl"))
+                .or(named(LOG4J_ATTACHABLE_CLS))
                         // log4j2 -
-                .or(hasSuperType(named("org.apache.logging.log4j.core.config.AppenderControl")));
+                .or(hasSuperType(named(LOG4J2_APPENDER_CONTROL_CLS)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> typeNames() {
+        return Arrays.asList(LOGBACK_ATTACHABLE_CLS, LOG4J_ATTACHABLE_CLS);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> superTypeNames() {
+        return Collections.singletonList(LOG4J2_APPENDER_CONTROL_CLS);
     }
 
     /**
@@ -52,23 +76,15 @@ public class LogbackLog4jAsyncTransformer extends AbsVisitorTransformer {
     public static void adviceOnMethodEnter(
             @Advice.Argument(value = 0, typing = Assigner.Typing.DYNAMIC
                     , readOnly = false) Object logEvent) {
-        String traceId = ReflectUtils.getMethod(logEvent, TraceContext.TRACE_KEY_GETTER).invoke();
-        String spanId = ReflectUtils.getMethod(logEvent, TraceContext.SPAN_KEY_GETTER).invoke();
-        String parentSpanId = ReflectUtils.getMethod(logEvent, TraceContext.PARENT_SPAN_KEY_GETTER).invoke();
+        TraceSnapshot snapshot = Accessors.GET_TRACE_SNAPSHOT.invoke(logEvent);
 
         // 异步的情况下：上下文没有traceId或者traceId对不上
-        String ctxTraceId = TraceContext.getTraceId();
-        String ctxSpanId = TraceContext.getSpanId();
-        String ctxParentSpanId = TraceContext.getParentSpanId();
-        boolean isSyncLogger = Objects.equals(ctxTraceId, traceId) &&
-                Objects.equals(ctxSpanId, spanId) &&
-                Objects.equals(ctxParentSpanId, parentSpanId);
+        TraceSnapshot ctxSnapshot = TraceContext.capture();
+        boolean isSyncLogger = snapshot == ctxSnapshot || Objects.equals(ctxSnapshot, snapshot);
 
         // Worker只有一个线程，上一次设置之后并未清空，需要通过重复覆盖设置才能覆盖上一次的值
-        if (Objects.nonNull(traceId) && !isSyncLogger) {
-            TraceContext.setTraceId(traceId);
-            TraceContext.setSpanId(spanId);
-            TraceContext.setParentSpanId(parentSpanId);
+        if (Objects.nonNull(snapshot) && snapshot.hasTraceId() && !isSyncLogger) {
+            TraceContext.restore(snapshot);
         }
     }
 }
@@ -4,6 +4,9 @@ import io.github.artlibs.autotrace4j.transformer.abs.AbsVisitorTransformer;
 import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.matcher.ElementMatcher;
 
+import java.util.Arrays;
+import java.util.Collection;
+
 import static net.bytebuddy.matcher.ElementMatchers.*;
 
 /**
@@ -16,6 +19,10 @@ import static net.bytebuddy.matcher.ElementMatchers.*;
  */
 @SuppressWarnings("unused")
 public class LogbackLog4jEventTransformer extends AbsVisitorTransformer.AbsConstructor {
+    private static final String LOGBACK_EVENT_CLS = "ch.qos.logback.classic.spi.ILoggingEvent";
+    private static final String LOG4J_EVENT_CLS = "org.apache.log4j.spi.LoggingEvent";
+    private static final String LOG4J2_EVENT_CLS = "org.apache.logging.log4j.core.LogEvent";
+
     /**
      * 只往类注入属性
      * <p>
@@ -25,12 +32,20 @@ public class LogbackLog4jEventTransformer extends AbsVisitorTransformer.AbsConst
     public ElementMatcher<? super TypeDescription> typeMatcher() {
         return not(isInterface()).and(not(isAbstract())).and(
                 // logback
-                  hasSuperType(named("ch.qos.logback.classic.spi.ILoggingEvent")).or(
+                  hasSuperType(named(LOGBACK_EVENT_CLS)).or(
                           // log4j
-                          hasSuperType(named("org.apache.log4j.spi.LoggingEvent"))
+                          hasSuperType(named(LOG4J_EVENT_CLS))
                           // log4j2
-                  ).or( hasSuperType(named("org.apache.logging.log4j.core.LogEvent")) )
+                  ).or( hasSuperType(named(LOG4J2_EVENT_CLS)) )
         );
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> superTypeNames() {
+        return Arrays.asList(LOGBACK_EVENT_CLS, LOG4J_EVENT_CLS, LOG4J2_EVENT_CLS);
+    }
+
 }
@@ -7,6 +7,9 @@ import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.implementation.bytecode.assign.Assigner;
 import net.bytebuddy.matcher.ElementMatcher;
 
+import java.util.Collection;
+import java.util.Collections;
+
 import static net.bytebuddy.matcher.ElementMatchers.*;
 
 /**
@@ -19,6 +22,7 @@ import static net.bytebuddy.matcher.ElementMatchers.*;
  */
 @SuppressWarnings("unused")
 public class LogbackOutStreamTransformer extends AbsVisitorTransformer {
+    private static final String OUTPUT_STREAM_APPENDER_CLS = "ch.qos.logback.core.OutputStreamAppender";
 
     /**
      * {@inheritDoc}
@@ -26,7 +30,15 @@ public class LogbackOutStreamTransformer extends AbsVisitorTransformer {
     @Override
     public ElementMatcher<? super TypeDescription> typeMatcher() {
         // Supports FileAppender, RollingFileAppender, ConsoleAppender e.g.
-        return hasSuperType(named("ch.qos.logback.core.OutputStreamAppender"));
+        return hasSuperType(named(OUTPUT_STREAM_APPENDER_CLS));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> superTypeNames() {
+        return Collections.singletonList(OUTPUT_STREAM_APPENDER_CLS);
     }
 
     /**
@@ -48,7 +60,7 @@ public class LogbackOutStreamTransformer extends AbsVisitorTransformer {
     public static void adviceOnMethodEnter(
             @Advice.Argument(value = 0, typing = Assigner.Typing.DYNAMIC
                     , readOnly = false) byte[] byteArray) {
-        byteArray = TraceInjector.DF.injectTrace(new String(byteArray)).getBytes();
+        byteArray = TraceInjector.DF.injectTrace(byteArray);
     }
 
 }
@@ -8,6 +8,8 @@ import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.matcher.ElementMatcher;
 
 import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 
@@ -24,13 +26,22 @@ import static net.bytebuddy.matcher.ElementMatchers.named;
  */
 @SuppressWarnings("unused")
 public class OkHttp3HttpClientTransformer extends AbsDelegateTransformer.AbsInstance {
+    private static final String HEADERS_BUILDER_CLS = "okhttp3.Headers$Builder";
 
     /**
      * {@inheritDoc}
      */
     @Override
     public ElementMatcher<? super TypeDescription> typeMatcher() {
-        return named("okhttp3.Headers$Builder");
+        return named(HEADERS_BUILDER_CLS);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> typeNames() {
+        return Collections.singletonList(HEADERS_BUILDER_CLS);
     }
 
     /**
@@ -41,6 +52,14 @@ public class OkHttp3HttpClientTransformer extends AbsDelegateTransformer.AbsInst
         return named("build");
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean adviceMode() {
+        return true;
+    }
+
     /**
      * {@inheritDoc}
      */
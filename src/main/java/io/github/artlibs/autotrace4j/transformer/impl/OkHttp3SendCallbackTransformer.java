@@ -5,6 +5,9 @@ import net.bytebuddy.description.method.MethodDescription;
 import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.matcher.ElementMatcher;
 
+import java.util.Collection;
+import java.util.Collections;
+
 import static net.bytebuddy.matcher.ElementMatchers.*;
 
 /**
@@ -17,10 +20,17 @@ import static net.bytebuddy.matcher.ElementMatchers.*;
  */
 @SuppressWarnings("unused")
 public class OkHttp3SendCallbackTransformer extends AbsDelegateTransformer.AbsAnonymousInterface {
+    private static final String CALLBACK_CLS = "okhttp3.Callback";
+
     @Override
     public ElementMatcher<? super TypeDescription> typeMatcher() {
         return not(isAbstract()).and(not(isInterface())).and(
-                hasSuperType(named("okhttp3.Callback")));
+                hasSuperType(named(CALLBACK_CLS)));
+    }
+
+    @Override
+    public Collection<String> superTypeNames() {
+        return Collections.singletonList(CALLBACK_CLS);
     }
 
     @Override
@@ -1,6 +1,7 @@
 package io.github.artlibs.autotrace4j.transformer.impl;
 
 import io.github.artlibs.autotrace4j.context.TraceContext;
+import io.github.artlibs.autotrace4j.context.TraceSnapshot;
 import io.github.artlibs.autotrace4j.transformer.abs.AbsDelegateTransformer;
 import net.bytebuddy.description.method.MethodDescription;
 import net.bytebuddy.description.type.TypeDescription;
@@ -8,6 +9,9 @@ import net.bytebuddy.matcher.ElementMatcher;
 
 import java.lang.reflect.Method;
 
+import java.util.Collection;
+import java.util.Collections;
+
 import static net.bytebuddy.matcher.ElementMatchers.*;
 
 /**
@@ -19,16 +23,25 @@ import static net.bytebuddy.matcher.ElementMatchers.*;
  */
 @SuppressWarnings("unused")
 public class PowerJobSchdTaskTransformer extends AbsDelegateTransformer.AbsInstance {
+    private static final String BASIC_PROCESSOR_CLS = "tech.powerjob.worker.core.processor.sdk.BasicProcessor";
 
     /**
      * {@inheritDoc}
      */
     @Override
     public ElementMatcher<? super TypeDescription> typeMatcher() {
-        return hasSuperType(named("tech.powerjob.worker.core.processor.sdk.BasicProcessor"))
+        return hasSuperType(named(BASIC_PROCESSOR_CLS))
                 .and(not(isInterface())).and(not(isAbstract()));
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> superTypeNames() {
+        return Collections.singletonList(BASIC_PROCESSOR_CLS);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -43,10 +56,8 @@ public class PowerJobSchdTaskTransformer extends AbsDelegateTransformer.AbsInsta
      */
     @Override
     protected void onMethodEnter(Object obj, Object[] allArgs, Method originMethod) throws Exception {
-        TraceContext.setTraceId(TraceContext.generate());
-        TraceContext.setSpanId(TraceContext.generate());
         // There will be no parent span as this is a startup context
-        TraceContext.setParentSpanId(null);
+        TraceContext.restore(TraceSnapshot.newTrace());
     }
 
     /**
@@ -1,15 +1,17 @@
 package io.github.artlibs.autotrace4j.transformer.impl;
 
-import io.github.artlibs.autotrace4j.context.MethodWrapper;
-import io.github.artlibs.autotrace4j.context.ReflectUtils;
+import io.github.artlibs.autotrace4j.context.Accessors;
 import io.github.artlibs.autotrace4j.context.TraceContext;
+import io.github.artlibs.autotrace4j.context.TraceSnapshot;
 import io.github.artlibs.autotrace4j.transformer.abs.AbsDelegateTransformer;
 import net.bytebuddy.description.method.MethodDescription;
 import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.matcher.ElementMatcher;
 
 import java.lang.reflect.Method;
-import java.util.Objects;
+
+import java.util.Collection;
+import java.util.Collections;
 
 import static net.bytebuddy.matcher.ElementMatchers.named;
 
@@ -23,14 +25,22 @@ import static net.bytebuddy.matcher.ElementMatchers.named;
  */
 @SuppressWarnings("unused")
 public class RocketMqListenerTransformer extends AbsDelegateTransformer.AbsInstance {
-    private static final String GUP = "getUserProperty";
+    private static final String LISTENER_CONTAINER_CLS = "org.apache.rocketmq.spring.support.DefaultRocketMQListenerContainer";
 
     /**
      * {@inheritDoc}
      */
     @Override
     public ElementMatcher<? super TypeDescription> typeMatcher() {
-        return named("org.apache.rocketmq.spring.support.DefaultRocketMQListenerContainer");
+        return named(LISTENER_CONTAINER_CLS);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> typeNames() {
+        return Collections.singletonList(LISTENER_CONTAINER_CLS);
     }
 
     /**
@@ -46,18 +56,19 @@ public class RocketMqListenerTransformer extends AbsDelegateTransformer.AbsInsta
      * {@inheritDoc}
      */
     @Override
-    protected void onMethodEnter(Object thiz, Object[] allArgs, Method originMethod) throws Exception {
-        MethodWrapper methodWrapper = ReflectUtils.getMethod(allArgs[0], GUP, String.class);
+    protected boolean adviceMode() {
+        return true;
+    }
 
-        String traceId = methodWrapper.invoke(TraceContext.TRACE_KEY);
-        String parentSpanId = methodWrapper.invoke(TraceContext.SPAN_KEY);
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onMethodEnter(Object thiz, Object[] allArgs, Method originMethod) throws Exception {
+        String traceId = Accessors.GET_USER_PROPERTY.invoke(allArgs[0], TraceContext.TRACE_KEY);
+        String parentSpanId = Accessors.GET_USER_PROPERTY.invoke(allArgs[0], TraceContext.SPAN_KEY);
 
-        if (Objects.isNull(traceId)) {
-            traceId = TraceContext.generate();
-        }
-        TraceContext.setTraceId(traceId);
-        TraceContext.setParentSpanId(parentSpanId);
-        TraceContext.setSpanId(TraceContext.generate());
+        TraceContext.restore(TraceSnapshot.newSpan(traceId, parentSpanId));
     }
 
 }
@@ -2,12 +2,15 @@ package io.github.artlibs.autotrace4j.transformer.impl;
 
 import io.github.artlibs.autotrace4j.context.ReflectUtils;
 import io.github.artlibs.autotrace4j.context.TraceContext;
+import io.github.artlibs.autotrace4j.context.TraceSnapshot;
 import io.github.artlibs.autotrace4j.transformer.abs.AbsDelegateTransformer;
 import net.bytebuddy.description.method.MethodDescription;
 import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.matcher.ElementMatcher;
 
 import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Objects;
 
@@ -25,13 +28,22 @@ import static net.bytebuddy.matcher.ElementMatchers.*;
 public class RocketMqProducerTransformer extends AbsDelegateTransformer.AbsInstance {
     private static final String SEND_CB_TYPE = "org.apache.rocketmq.common.message.Message";
     private static final String MESSAGE_TYPE = "org.apache.rocketmq.client.producer.SendCallback";
+    private static final String PRODUCER_IMPL_CLS = "org.apache.rocketmq.client.impl.producer.DefaultMQProducerImpl";
 
     /**
      * {@inheritDoc}
      */
     @Override
     public ElementMatcher<? super TypeDescription> typeMatcher() {
-        return named("org.apache.rocketmq.client.impl.producer.DefaultMQProducerImpl");
+        return named(PRODUCER_IMPL_CLS);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> typeNames() {
+        return Collections.singletonList(PRODUCER_IMPL_CLS);
     }
 
     /**
@@ -59,6 +71,14 @@ public class RocketMqProducerTransformer extends AbsDelegateTransformer.AbsInsta
                 ).or(named("sendKernelImpl"));
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean adviceMode() {
+        return true;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -69,8 +89,7 @@ public class RocketMqProducerTransformer extends AbsDelegateTransformer.AbsInsta
             String spanId = properties.get(TraceContext.SPAN_KEY);
             String traceId = properties.get(TraceContext.TRACE_KEY);
             if (Objects.nonNull(traceId)) {
-                TraceContext.setSpanId(spanId);
-                TraceContext.setTraceId(traceId);
+                TraceContext.restore(TraceSnapshot.of(traceId, spanId, TraceContext.getParentSpanId()));
             } else {
                 spanId = TraceContext.getSpanId();
                 traceId = TraceContext.getTraceId();
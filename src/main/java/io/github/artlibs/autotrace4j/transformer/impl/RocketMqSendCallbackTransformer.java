@@ -5,6 +5,9 @@ import net.bytebuddy.description.method.MethodDescription;
 import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.matcher.ElementMatcher;
 
+import java.util.Arrays;
+import java.util.Collection;
+
 import static net.bytebuddy.matcher.ElementMatchers.*;
 
 /**
@@ -17,13 +20,21 @@ import static net.bytebuddy.matcher.ElementMatchers.*;
  */
 @SuppressWarnings("unused")
 public class RocketMqSendCallbackTransformer extends AbsDelegateTransformer.AbsAnonymousInterface {
+    private static final String SEND_CALLBACK_CLS = "org.apache.rocketmq.client.producer.SendCallback";
+    private static final String ONS_SEND_CALLBACK_CLS = "com.aliyun.openservices.ons.api.SendCallback";
+
     @Override
     public ElementMatcher<? super TypeDescription> typeMatcher() {
-        return hasSuperType(named("org.apache.rocketmq.client.producer.SendCallback")
-                .or(named("com.aliyun.openservices.ons.api.SendCallback")))
+        return hasSuperType(named(SEND_CALLBACK_CLS)
+                .or(named(ONS_SEND_CALLBACK_CLS)))
                 .and(not(isAbstract()).and(not(isInterface())));
     }
 
+    @Override
+    public Collection<String> superTypeNames() {
+        return Arrays.asList(SEND_CALLBACK_CLS, ONS_SEND_CALLBACK_CLS);
+    }
+
     @Override
     protected ElementMatcher<? super MethodDescription> methodMatcher() {
         return named("onSuccess").or(named("onException"));
@@ -7,6 +7,8 @@ import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.matcher.ElementMatcher;
 
 import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Objects;
 
 import static net.bytebuddy.matcher.ElementMatchers.*;
@@ -25,13 +27,23 @@ import static net.bytebuddy.matcher.ElementMatchers.*;
  */
 @SuppressWarnings("unused")
 public class Slf4JLog4jMdcTransformer extends AbsDelegateTransformer.AbsStatic {
+    private static final String SLF4J_MDC_CLS = "org.slf4j.MDC";
+    private static final String LOG4J_MDC_CLS = "org.apache.log4j.MDC";
 
     /**
      * {@inheritDoc}
      */
     @Override
     public ElementMatcher<? super TypeDescription> typeMatcher() {
-        return named("org.slf4j.MDC").or(named("org.apache.log4j.MDC"));
+        return named(SLF4J_MDC_CLS).or(named(LOG4J_MDC_CLS));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> typeNames() {
+        return Arrays.asList(SLF4J_MDC_CLS, LOG4J_MDC_CLS);
     }
 
     /**
@@ -43,6 +55,14 @@ public class Slf4JLog4jMdcTransformer extends AbsDelegateTransformer.AbsStatic {
                 .and(takesArgument(0, String.class)));
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean adviceMode() {
+        return true;
+    }
+
     /**
      * {@inheritDoc}
      */
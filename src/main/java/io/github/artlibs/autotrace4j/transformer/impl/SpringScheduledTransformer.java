@@ -1,6 +1,7 @@
 package io.github.artlibs.autotrace4j.transformer.impl;
 
 import io.github.artlibs.autotrace4j.context.TraceContext;
+import io.github.artlibs.autotrace4j.context.TraceSnapshot;
 import io.github.artlibs.autotrace4j.transformer.abs.AbsDelegateTransformer;
 import net.bytebuddy.description.method.MethodDescription;
 import net.bytebuddy.description.type.TypeDescription;
@@ -37,15 +38,21 @@ public class SpringScheduledTransformer extends AbsDelegateTransformer.AbsInstan
         return isAnnotatedWith(named("org.springframework.scheduling.annotation.Scheduled"));
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean adviceMode() {
+        return true;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     protected void onMethodEnter(Object obj, Object[] allArgs, Method originMethod) throws Exception {
-        TraceContext.setSpanId(TraceContext.generate());
-        TraceContext.setTraceId(TraceContext.generate());
         // There will be no parent span as this is a startup context
-        TraceContext.setParentSpanId(null);
+        TraceContext.restore(TraceSnapshot.newTrace());
     }
 
     /**
@@ -1,6 +1,7 @@
 package io.github.artlibs.autotrace4j.transformer.impl;
 
 import io.github.artlibs.autotrace4j.context.TraceContext;
+import io.github.artlibs.autotrace4j.context.TraceSnapshot;
 import io.github.artlibs.autotrace4j.transformer.abs.AbsDelegateTransformer;
 import net.bytebuddy.description.method.MethodDescription;
 import net.bytebuddy.description.type.TypeDescription;
@@ -41,15 +42,21 @@ public class XxlJobSchdTaskTransformer extends AbsDelegateTransformer.AbsInstanc
                 .or(named("execute").and(takesArgument(0, String.class)));
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean adviceMode() {
+        return true;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     protected void onMethodEnter(Object obj, Object[] allArgs, Method originMethod) throws Exception {
-        TraceContext.setTraceId(TraceContext.generate());
-        TraceContext.setSpanId(TraceContext.generate());
         // There will be no parent span as this is a startup context
-        TraceContext.setParentSpanId(null);
+        TraceContext.restore(TraceSnapshot.newTrace());
     }
 
     /**
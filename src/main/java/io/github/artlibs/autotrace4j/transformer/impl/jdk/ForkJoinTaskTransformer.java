@@ -5,6 +5,9 @@ import net.bytebuddy.description.method.MethodDescription;
 import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.matcher.ElementMatcher;
 
+import java.util.Collection;
+import java.util.Collections;
+
 import static net.bytebuddy.matcher.ElementMatchers.named;
 
 /**
@@ -18,13 +21,22 @@ import static net.bytebuddy.matcher.ElementMatchers.named;
  */
 @SuppressWarnings("unused")
 public class ForkJoinTaskTransformer extends AbsVisitorTransformer.AbsTask {
+    private static final String FORK_JOIN_TASK_CLS = "java.util.concurrent.ForkJoinTask";
 
     /**
      * {@inheritDoc}
      */
     @Override
     public ElementMatcher<? super TypeDescription> typeMatcher() {
-        return named("java.util.concurrent.ForkJoinTask");
+        return named(FORK_JOIN_TASK_CLS);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> typeNames() {
+        return Collections.singletonList(FORK_JOIN_TASK_CLS);
     }
 
     /**
@@ -1,6 +1,7 @@
 package io.github.artlibs.autotrace4j.transformer.impl.jdk;
 
 import io.github.artlibs.autotrace4j.context.TraceContext;
+import io.github.artlibs.autotrace4j.context.TraceSnapshot;
 import io.github.artlibs.autotrace4j.context.jdk.ThreadTask;
 import io.github.artlibs.autotrace4j.transformer.abs.AbsVisitorTransformer;
 import net.bytebuddy.asm.Advice;
@@ -9,6 +10,8 @@ import net.bytebuddy.implementation.bytecode.assign.Assigner;
 import net.bytebuddy.matcher.ElementMatcher;
 
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Objects;
 
 import static net.bytebuddy.matcher.ElementMatchers.*;
@@ -27,13 +30,22 @@ public class JavaThreadTransformer extends AbsVisitorTransformer {
     private static final String RUNNABLE_CLS = "java.lang.Runnable";
     private static final String THREAD_GROUP_CLS = "java.lang.ThreadGroup";
     private static final String STRING_CLS = "java.lang.String";
+    private static final String THREAD_CLS = "java.lang.Thread";
 
     /**
      * {@inheritDoc}
      */
     @Override
     public ElementMatcher<? super TypeDescription> typeMatcher() {
-        return named("java.lang.Thread");
+        return named(THREAD_CLS);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> typeNames() {
+        return Collections.singletonList(THREAD_CLS);
     }
 
     /**
@@ -72,9 +84,10 @@ public class JavaThreadTransformer extends AbsVisitorTransformer {
             @Advice.Argument(value = 3, typing = Assigner.Typing.DYNAMIC
                     , readOnly = false) Runnable runnable) {
             // Wrap only when there is trace info in the context
-            String traceId = TraceContext.getTraceId();
-            if (Objects.nonNull(traceId) && Objects.nonNull(runnable) && !(runnable instanceof ThreadTask)) {
-                runnable = new ThreadTask(runnable, traceId, TraceContext.getSpanId());
+            TraceSnapshot snapshot = TraceContext.capture();
+            if (Objects.nonNull(snapshot) && snapshot.hasTraceId()
+                    && Objects.nonNull(runnable) && !(runnable instanceof ThreadTask)) {
+                runnable = new ThreadTask(runnable, snapshot);
             }
         }
     }
@@ -91,11 +104,12 @@ public class JavaThreadTransformer extends AbsVisitorTransformer {
             @Advice.Argument(value = 1, typing = Assigner.Typing.DYNAMIC
                     , readOnly = false) Runnable runnable) {
             // Wrap only when there is trace info in the context
-            String traceId = TraceContext.getTraceId();
-            if (Objects.isNull(traceId) || Objects.isNull(runnable) || runnable instanceof ThreadTask) {
+            TraceSnapshot snapshot = TraceContext.capture();
+            if (Objects.isNull(snapshot) || !snapshot.hasTraceId()
+                    || Objects.isNull(runnable) || runnable instanceof ThreadTask) {
                 return;
             }
-            runnable = new ThreadTask(runnable, traceId, TraceContext.getSpanId());
+            runnable = new ThreadTask(runnable, snapshot);
         }
     }
 }
@@ -7,6 +7,9 @@ import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.implementation.bytecode.assign.Assigner;
 import net.bytebuddy.matcher.ElementMatcher;
 
+import java.util.Collection;
+import java.util.Collections;
+
 import static net.bytebuddy.matcher.ElementMatchers.*;
 
 /**
@@ -30,6 +33,14 @@ public class JavaUtilLoggingTransformer extends AbsVisitorTransformer {
         return hasSuperType(named(FORMATTER_CLS));
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> superTypeNames() {
+        return Collections.singletonList(FORMATTER_CLS);
+    }
+
     @Override
     protected MethodMatcherHolder methodMatchers() {
         return ofMatcher(isOverriddenFrom(named(FORMATTER_CLS))
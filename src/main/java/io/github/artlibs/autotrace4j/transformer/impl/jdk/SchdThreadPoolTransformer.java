@@ -1,6 +1,7 @@
 package io.github.artlibs.autotrace4j.transformer.impl.jdk;
 
 import io.github.artlibs.autotrace4j.context.TraceContext;
+import io.github.artlibs.autotrace4j.context.TraceSnapshot;
 import io.github.artlibs.autotrace4j.context.jdk.ScheduledTask;
 import io.github.artlibs.autotrace4j.transformer.abs.AbsVisitorTransformer;
 import net.bytebuddy.asm.Advice;
@@ -8,6 +9,8 @@ import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.implementation.bytecode.assign.Assigner;
 import net.bytebuddy.matcher.ElementMatcher;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Objects;
 import java.util.concurrent.RunnableScheduledFuture;
 
@@ -23,13 +26,22 @@ import static net.bytebuddy.matcher.ElementMatchers.*;
  */
 @SuppressWarnings("unused")
 public class SchdThreadPoolTransformer extends AbsVisitorTransformer {
+    private static final String SCHEDULED_EXECUTOR_CLS = "java.util.concurrent.ScheduledThreadPoolExecutor";
 
     /**
      * {@inheritDoc}
      */
     @Override
     public ElementMatcher<? super TypeDescription> typeMatcher() {
-        return named("java.util.concurrent.ScheduledThreadPoolExecutor");
+        return named(SCHEDULED_EXECUTOR_CLS);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> typeNames() {
+        return Collections.singletonList(SCHEDULED_EXECUTOR_CLS);
     }
 
     /**
@@ -55,9 +67,10 @@ public class SchdThreadPoolTransformer extends AbsVisitorTransformer {
     ) {
         try {
             if (Objects.nonNull(task)) {
-                String traceId = TraceContext.getTraceId();
-                if (Objects.nonNull(traceId) && !(task instanceof ScheduledTask)) {
-                    task = new ScheduledTask<>(task, traceId, TraceContext.getSpanId());
+                TraceSnapshot snapshot = TraceContext.capture();
+                if (Objects.nonNull(snapshot) && snapshot.hasTraceId()
+                        && !(task instanceof ScheduledTask)) {
+                    task = new ScheduledTask<>(task, snapshot);
                 }
             }
         } catch (Exception e) {
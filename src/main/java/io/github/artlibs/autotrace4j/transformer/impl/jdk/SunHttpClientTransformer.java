@@ -1,7 +1,6 @@
 package io.github.artlibs.autotrace4j.transformer.impl.jdk;
 
-import io.github.artlibs.autotrace4j.context.MethodWrapper;
-import io.github.artlibs.autotrace4j.context.ReflectUtils;
+import io.github.artlibs.autotrace4j.context.Accessors;
 import io.github.artlibs.autotrace4j.context.TraceContext;
 import io.github.artlibs.autotrace4j.transformer.abs.AbsVisitorTransformer;
 import net.bytebuddy.asm.Advice;
@@ -10,6 +9,8 @@ import net.bytebuddy.implementation.bytecode.assign.Assigner;
 import net.bytebuddy.matcher.ElementMatcher;
 import net.bytebuddy.matcher.ElementMatchers;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Objects;
 
 import static net.bytebuddy.matcher.ElementMatchers.named;
@@ -26,17 +27,25 @@ import static net.bytebuddy.matcher.ElementMatchers.takesArgument;
  */
 @SuppressWarnings("unused")
 public class SunHttpClientTransformer extends AbsVisitorTransformer {
-    private static final String SET_IF_NOT_SET = "setIfNotSet";
     private static final String WRITE_REQUESTS = "writeRequests";
     private static final String POS_CLASS = "sun.net.www.http.PosterOutputStream";
     private static final String MESSAGE_HEADER_CLS = "sun.net.www.MessageHeader";
+    private static final String HTTP_CLIENT_CLS = "sun.net.www.http.HttpClient";
 
     /**
      * {@inheritDoc}
      */
     @Override
     public ElementMatcher<? super TypeDescription> typeMatcher() {
-        return ElementMatchers.named("sun.net.www.http.HttpClient");
+        return ElementMatchers.named(HTTP_CLIENT_CLS);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> typeNames() {
+        return Collections.singletonList(HTTP_CLIENT_CLS);
     }
 
     /**
@@ -73,13 +82,11 @@ public class SunHttpClientTransformer extends AbsVisitorTransformer {
         try {
             final String traceId = TraceContext.getTraceId();
             if (Objects.nonNull(traceId)) {
-                MethodWrapper methodWrapper = ReflectUtils.getMethod(msgHeader
-                    , SET_IF_NOT_SET, String.class, String.class);
-                methodWrapper.invoke(TraceContext.ATO_TRACE_ID, traceId);
+                Accessors.SET_IF_NOT_SET.invoke(msgHeader, TraceContext.ATO_TRACE_ID, traceId);
 
                 final String spanId = TraceContext.getSpanId();
                 if (Objects.nonNull(spanId)) {
-                    methodWrapper.invoke(TraceContext.ATO_SPAN_ID, spanId);
+                    Accessors.SET_IF_NOT_SET.invoke(msgHeader, TraceContext.ATO_SPAN_ID, spanId);
                 }
             }
         } catch (Exception ignore) {
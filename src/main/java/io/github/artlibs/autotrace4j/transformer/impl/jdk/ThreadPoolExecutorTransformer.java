@@ -1,6 +1,7 @@
 package io.github.artlibs.autotrace4j.transformer.impl.jdk;
 
 import io.github.artlibs.autotrace4j.context.TraceContext;
+import io.github.artlibs.autotrace4j.context.TraceSnapshot;
 import io.github.artlibs.autotrace4j.context.jdk.PriorityTask;
 import io.github.artlibs.autotrace4j.context.jdk.ThreadTask;
 import io.github.artlibs.autotrace4j.transformer.abs.AbsVisitorTransformer;
@@ -9,6 +10,8 @@ import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.implementation.bytecode.assign.Assigner;
 import net.bytebuddy.matcher.ElementMatcher;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Objects;
 
 import static net.bytebuddy.matcher.ElementMatchers.named;
@@ -24,13 +27,22 @@ import static net.bytebuddy.matcher.ElementMatchers.takesArgument;
  */
 @SuppressWarnings("unused")
 public class ThreadPoolExecutorTransformer extends AbsVisitorTransformer {
+    private static final String THREAD_POOL_EXECUTOR_CLS = "java.util.concurrent.ThreadPoolExecutor";
 
     /**
      * {@inheritDoc}
      */
     @Override
     public ElementMatcher<? super TypeDescription> typeMatcher() {
-        return named("java.util.concurrent.ThreadPoolExecutor");
+        return named(THREAD_POOL_EXECUTOR_CLS);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> typeNames() {
+        return Collections.singletonList(THREAD_POOL_EXECUTOR_CLS);
     }
 
     /**
@@ -46,12 +58,13 @@ public class ThreadPoolExecutorTransformer extends AbsVisitorTransformer {
         , typing = Assigner.Typing.DYNAMIC) Runnable task) {
         try {
             if (Objects.nonNull(task)) {
-                String traceId = TraceContext.getTraceId();
-                if (Objects.nonNull(traceId) && !(task instanceof ThreadTask)) {
+                TraceSnapshot snapshot = TraceContext.capture();
+                if (Objects.nonNull(snapshot) && snapshot.hasTraceId()
+                        && !(task instanceof ThreadTask)) {
                     if (task instanceof Comparable) {
-                        task = new PriorityTask(task, traceId, TraceContext.getSpanId());
+                        task = new PriorityTask(task, snapshot);
                     } else {
-                        task = new ThreadTask(task, traceId, TraceContext.getSpanId());
+                        task = new ThreadTask(task, snapshot);
                     }
                 }
             }
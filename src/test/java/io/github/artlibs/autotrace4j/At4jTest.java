@@ -2,10 +2,25 @@ package io.github.artlibs.autotrace4j;
 
 import com.alibaba.fastjson2.JSON;
 import com.alibaba.fastjson2.JSONObject;
+import io.github.artlibs.autotrace4j.context.DefaultIdGenerator;
+import io.github.artlibs.autotrace4j.context.ReflectUtils;
 import io.github.artlibs.autotrace4j.context.TraceContext;
+import io.github.artlibs.autotrace4j.context.TraceInjector;
+import io.github.artlibs.autotrace4j.context.TraceSnapshot;
+import io.github.artlibs.autotrace4j.support.ClassIndex;
+import io.github.artlibs.autotrace4j.support.Constants;
+import io.github.artlibs.autotrace4j.support.FileUtils;
+import io.github.artlibs.autotrace4j.transformer.At4jTransformer;
+import io.github.artlibs.autotrace4j.transformer.ClassNamePrefilter;
+import io.github.artlibs.autotrace4j.transformer.TransformCache;
 import io.github.artlibs.testsupport.*;
 import io.github.artlibs.testsupport.XxlJobCase.*;
 import net.bytebuddy.agent.ByteBuddyAgent;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.ClassFileLocator;
+import net.bytebuddy.matcher.ElementMatcher;
+import net.bytebuddy.matcher.ElementMatchers;
+import net.bytebuddy.pool.TypePool;
 import okhttp3.*;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
@@ -23,6 +38,12 @@ import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.logging.Formatter;
@@ -116,6 +137,17 @@ public class At4jTest {
         }
     }
 
+    @Test
+    void testTraceInjectorBytes() {
+        // ids set by users may contain non-ascii characters
+        TraceContext.setTraceId("链路-" + initTraceId);
+        for (String log : Arrays.asList("2024-12-15 INFO 日志 message\n", "{\"msg\":\"日志\"}\n")) {
+            byte[] injected = TraceInjector.DF.injectTrace(log.getBytes(StandardCharsets.UTF_8));
+            Assertions.assertEquals(TraceInjector.DF.injectTrace(log), new String(injected, StandardCharsets.UTF_8));
+            Assertions.assertTrue(new String(injected, StandardCharsets.UTF_8).contains("链路-" + initTraceId));
+        }
+    }
+
     @Test
     void testJavaThread() throws InterruptedException {
         // 01.Prepare
@@ -417,6 +449,222 @@ public class At4jTest {
         }
     }
 
+    @Test
+    void testIdGenerator() {
+        for (DefaultIdGenerator generator : DefaultIdGenerator.values()) {
+            String traceId = generator.generateTraceId();
+            String spanId = generator.generateSpanId();
+            Assertions.assertEquals(generator == DefaultIdGenerator.W3C ? 32 : 16, traceId.length());
+            Assertions.assertEquals(16, spanId.length());
+            Assertions.assertTrue(traceId.matches("[0-9a-f]+"));
+            Assertions.assertTrue(spanId.matches("[0-9a-f]+"));
+            Assertions.assertNotEquals(spanId, generator.generateSpanId());
+        }
+
+        // ids kept as long are rendered lazily and keep the same value
+        TraceSnapshot root = TraceSnapshot.newTrace();
+        TraceSnapshot child = root.newChildSpan();
+        Assertions.assertEquals(16, root.getTraceId().length());
+        Assertions.assertEquals(root.getTraceId(), child.getTraceId());
+        Assertions.assertEquals(root.getSpanId(), child.getParentSpanId());
+        Assertions.assertNotEquals(root.getSpanId(), child.getSpanId());
+        Assertions.assertSame(child.getSpanId(), child.getSpanId());
+    }
+
+    @Test
+    void testTransformCache() throws Exception {
+        Path tempDir = Files.createTempDirectory("autotrace4j-test");
+        Path root = tempDir.resolve("cache");
+        System.setProperty(Constants.SYSTEM_PROPERTY_CACHE_ENABLE, "true");
+        System.setProperty(Constants.SYSTEM_PROPERTY_CACHE_DIR, root.toString());
+        try {
+            // 01.store and hit, also in a new instance(the next JVM run)
+            TransformCache cache = TransformCache.create(Collections.emptyList());
+            Assertions.assertNotNull(cache);
+            Path directory = ReflectUtils.getDeclaredFieldValue(cache, "directory");
+            byte[] original = "original bytecode".getBytes(StandardCharsets.UTF_8);
+            byte[] transformed = "transformed bytecode".getBytes(StandardCharsets.UTF_8);
+            byte[] key = ReflectUtils.getDeclaredMethod(TransformCache.class, "key", byte[].class, boolean.class)
+                    .invoke(original, false);
+            String typeName = "io.github.artlibs.Cached";
+            Assertions.assertNull(loadCache(cache, typeName, key));
+            ReflectUtils.getDeclaredMethod(cache, "store", String.class, byte[].class, byte[].class)
+                    .invoke(typeName, key, transformed);
+            Assertions.assertArrayEquals(transformed, loadCache(cache, typeName, key));
+            cache = TransformCache.create(Collections.emptyList());
+            Assertions.assertNotNull(cache);
+            Assertions.assertArrayEquals(transformed, loadCache(cache, typeName, key));
+
+            // 02.tampered bytes or hmac
+            String hex = ReflectUtils.getDeclaredMethod(TransformCache.class, "hex", byte[].class, int.class)
+                    .invoke(key, key.length);
+            Path file = directory.resolve(typeName + "@" + hex + ".class");
+            byte[] stored = Files.readAllBytes(file);
+            for (int index : new int[]{ stored.length - 1, 0 }) {
+                byte[] tampered = stored.clone();
+                tampered[index] ^= 1;
+                Files.write(file, tampered);
+                Assertions.assertNull(loadCache(cache, typeName, key));
+            }
+            Files.write(file, stored);
+            Assertions.assertArrayEquals(transformed, loadCache(cache, typeName, key));
+
+            // 03.renamed to another class
+            String otherTypeName = "io.github.artlibs.Other";
+            Files.copy(file, directory.resolve(otherTypeName + "@" + hex + ".class"));
+            Assertions.assertNull(loadCache(cache, otherTypeName, key));
+
+            // 04.remove only the cache files of the other fingerprints
+            Path staleDir = Files.createDirectory(root.resolve("autotrace4j-cache-0123456789abcdef"));
+            Files.createFile(staleDir.resolve("a.B@00.class"));
+            Files.createFile(staleDir.resolve("a.B@00.class1.tmp"));
+            Files.createFile(staleDir.resolve("user.txt"));
+            Path emptiedDir = Files.createDirectory(root.resolve("autotrace4j-cache-fedcba9876543210"));
+            Files.createFile(emptiedDir.resolve("a.B@00.class"));
+            Path userDir = Files.createDirectory(root.resolve("autotrace4j-cache-user"));
+            Files.createFile(userDir.resolve("a.B@00.class"));
+            Path userFile = Files.createFile(root.resolve("user.class"));
+            Assertions.assertNotNull(TransformCache.create(Collections.emptyList()));
+            Assertions.assertFalse(Files.exists(staleDir.resolve("a.B@00.class")));
+            Assertions.assertFalse(Files.exists(staleDir.resolve("a.B@00.class1.tmp")));
+            Assertions.assertTrue(Files.exists(staleDir.resolve("user.txt")));
+            Assertions.assertFalse(Files.exists(emptiedDir));
+            Assertions.assertTrue(Files.exists(userDir.resolve("a.B@00.class")));
+            Assertions.assertTrue(Files.exists(userFile));
+            Assertions.assertTrue(Files.exists(file));
+
+            // 05.disabled when other users can write the directory, or it's a symbolic link
+            if (root.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+                for (String permissions : new String[]{ "rwxrwx---", "rwx---rwx" }) {
+                    Files.setPosixFilePermissions(root, PosixFilePermissions.fromString(permissions));
+                    Assertions.assertNull(TransformCache.create(Collections.emptyList()), permissions);
+                }
+                Files.setPosixFilePermissions(root, PosixFilePermissions.fromString("rwx------"));
+                Assertions.assertNotNull(TransformCache.create(Collections.emptyList()));
+            }
+            Path link = Files.createSymbolicLink(tempDir.resolve("link"), root);
+            System.setProperty(Constants.SYSTEM_PROPERTY_CACHE_DIR, link.toString());
+            Assertions.assertNull(TransformCache.create(Collections.emptyList()));
+        } finally {
+            System.clearProperty(Constants.SYSTEM_PROPERTY_CACHE_ENABLE);
+            System.clearProperty(Constants.SYSTEM_PROPERTY_CACHE_DIR);
+            Files.deleteIfExists(tempDir.resolve("link"));
+            FileUtils.deleteDirectoryRecursively(tempDir);
+        }
+    }
+
+    private static byte[] loadCache(TransformCache cache, String typeName, byte[] key) {
+        return ReflectUtils.getDeclaredMethod(cache, "load", String.class, byte[].class).invoke(typeName, key);
+    }
+
+    @Test
+    void testClassNamePrefilter() throws Exception {
+        List<At4jTransformer> transformers = new ArrayList<>();
+        for (String className : Objects.requireNonNull(ClassIndex.read(Constants.TRANSFORMER_CLASS_INDEX))) {
+            transformers.add((At4jTransformer) Class.forName(className).getDeclaredConstructor().newInstance());
+        }
+        ClassNamePrefilter prefilter = ClassNamePrefilter.create(transformers,
+                "jdk.jfr.", "com.intellij.rt.", AutoTrace4j.class.getPackage().getName());
+        Set<String> superTypeNames = new HashSet<>();
+        for (At4jTransformer transformer : transformers) {
+            for (String typeName : transformer.typeNames()) {
+                Assertions.assertFalse(prefilter.rejects(typeName), typeName);
+            }
+            superTypeNames.addAll(transformer.superTypeNames());
+        }
+        for (String superTypeName : superTypeNames) {
+            Assertions.assertFalse(prefilter.rejects(superTypeName), superTypeName);
+        }
+
+        // known subtypes outside the package of the declared super type
+        for (String subType : Arrays.asList(
+                "com.sun.jersey.spi.container.servlet.ServletContainer",
+                "org.glassfish.jersey.servlet.ServletContainer",
+                "javax.faces.webapp.FacesServlet",
+                "ch.qos.logback.core.rolling.RollingFileAppender",
+                "ch.qos.logback.classic.spi.LoggingEvent",
+                "org.apache.logging.log4j.core.impl.Log4jLogEvent",
+                "org.springframework.web.filter.CharacterEncodingFilter")) {
+            Assertions.assertFalse(prefilter.rejects(subType), subType);
+        }
+        Assertions.assertTrue(prefilter.rejects("java.util.HashMap"));
+        Assertions.assertTrue(prefilter.rejects(AutoTrace4j.class.getName()));
+
+        // no class of the running JDK that is rejected may be a subtype of a declared super type
+        FileSystem jrt;
+        try {
+            jrt = FileSystems.getFileSystem(URI.create("jrt:/"));
+        } catch (Exception e) {
+            // Java 8 has no jrt file system
+            return;
+        }
+        TypePool typePool = TypePool.Default.of(ClassFileLocator.ForClassLoader.ofSystemLoader());
+        ElementMatcher<TypeDescription> subTypeMatcher =
+                ElementMatchers.hasSuperType(ElementMatchers.namedOneOf(superTypeNames.toArray(new String[0])));
+        List<String> rejectedSubTypes = new ArrayList<>();
+        try (java.util.stream.Stream<Path> files = Files.walk(jrt.getPath("/modules"))) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                // /modules/<module>/<package path>/<class>.class
+                if (file.getNameCount() < 3 || !file.toString().endsWith(".class")
+                        || file.getFileName().toString().equals("module-info.class")) {
+                    continue;
+                }
+                String relative = file.subpath(2, file.getNameCount()).toString();
+                String typeName = relative.substring(0, relative.length() - ".class".length()).replace('/', '.');
+                if (!prefilter.rejects(typeName)) {
+                    continue;
+                }
+                try {
+                    if (subTypeMatcher.matches(typePool.describe(typeName).resolve())) {
+                        rejectedSubTypes.add(typeName);
+                    }
+                } catch (Exception ignored) {
+                    // super types from modules that are not resolvable here
+                }
+            }
+        }
+        Assertions.assertTrue(rejectedSubTypes.isEmpty(), rejectedSubTypes.toString());
+    }
+
+    public void benchMarkIdGenerator() throws InterruptedException {
+        Runnable uuid = () -> UUID.randomUUID().toString().substring(18).replace("-", "");
+        Runnable random = DefaultIdGenerator.DEFAULT::generateSpanId;
+        for (int threads : new int[]{1, 8, 64}) {
+            System.out.println("threads: " + threads
+                    + ", uuid toast: " + benchMark(uuid, threads, 1000000)
+                    + ", random toast: " + benchMark(random, threads, 1000000));
+        }
+    }
+
+    /**
+     * MDC.get is enhanced in advice mode, run with -Dautotrace4j.advice.disable=true
+     * to compare with the method delegation mode
+     */
+    public void benchMarkAdvice() throws InterruptedException {
+        Runnable mdcGet = () -> MDC.get(ATO_TRACE_ID);
+        for (int threads : new int[]{1, 8}) {
+            System.out.println("threads: " + threads + ", MDC.get toast: " + benchMark(mdcGet, threads, 10000000));
+        }
+    }
+
+    private long benchMark(Runnable task, int threads, int total) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch latch = new CountDownLatch(threads);
+        long startTime = System.currentTimeMillis();
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < total / threads; i++) {
+                    task.run();
+                }
+                latch.countDown();
+            });
+        }
+        latch.await();
+        long endTime = System.currentTimeMillis();
+        executor.shutdown();
+        return endTime - startTime;
+    }
+
     private TupleResult extractTraceIdFromHeader(String response) {
         JSONObject headerObj = JSON.parseObject(response)
                 .getJSONObject("headers");
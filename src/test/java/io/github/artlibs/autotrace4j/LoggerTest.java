@@ -5,17 +5,23 @@ import io.github.artlibs.autotrace4j.logger.DefaultLogger;
 import io.github.artlibs.autotrace4j.logger.Logger;
 import io.github.artlibs.autotrace4j.logger.LoggerFactory;
 import io.github.artlibs.autotrace4j.logger.appender.*;
+import io.github.artlibs.autotrace4j.logger.event.DefaultLogEvent;
 import io.github.artlibs.autotrace4j.logger.event.Level;
 import io.github.artlibs.autotrace4j.logger.event.LogEvent;
+import io.github.artlibs.autotrace4j.logger.layout.BinaryLayout;
+import io.github.artlibs.autotrace4j.logger.layout.BinaryLogDecoder;
 import io.github.artlibs.autotrace4j.logger.layout.DefaultLayout;
 import io.github.artlibs.autotrace4j.support.SystemUtils;
 import org.junit.jupiter.api.*;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.math.BigInteger;
 import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -27,9 +33,11 @@ import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static io.github.artlibs.autotrace4j.context.ReflectUtils.getDeclaredField;
@@ -81,6 +89,56 @@ public class LoggerTest {
         System.out.println("toast: " + (endTime - startTime));
     }
 
+    public void benchMarkLayout() {
+        DefaultLayout defaultLayout = new DefaultLayout();
+        Logger logger = newLogger(LoggerTest.class.getCanonicalName(), null, INFO);
+        LogEvent logEvent = buildLogEvent(logger, "benchMark %s cost %d ms", new Object[]{ "layout", 12 });
+        StringBuilder sb = new StringBuilder(256);
+        int rounds = 1000000;
+        long hash = 0;
+        for (int warmup = 0; warmup < 3; warmup++) {
+            long startTime = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                hash += legacyFormat(logEvent).length();
+            }
+            long legacyTime = System.nanoTime() - startTime;
+
+            startTime = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                hash += defaultLayout.format(logEvent).length();
+            }
+            long stringTime = System.nanoTime() - startTime;
+
+            startTime = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                sb.setLength(0);
+                defaultLayout.format(logEvent, sb);
+                hash += sb.length();
+            }
+            long builderTime = System.nanoTime() - startTime;
+            System.out.printf("legacy: %d ns/op, format: %d ns/op, format(sb): %d ns/op%n",
+                legacyTime / rounds, stringTime / rounds, builderTime / rounds);
+        }
+        System.out.println(hash);
+    }
+
+    /**
+     * 优化前的DefaultLayout: 每条日志都LocalDateTime.toString()与String.format
+     */
+    private static String legacyFormat(LogEvent event) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(buildItem(LocalDateTime
+            .ofInstant(Instant.ofEpochMilli(event.getEventTime()), ZoneId.systemDefault())
+            .toString())).append(SPACE);
+        sb.append(buildItem(event.getThreadName())).append(SPACE);
+        sb.append(buildItem(event.getLevel().name())).append(SPACE);
+        sb.append(buildItem(event.getLogger().getName())).append(SPACE);
+        sb.append("-").append(SPACE);
+        sb.append(String.format(event.getMessage(), event.getArguments()));
+        sb.append(System.lineSeparator());
+        return sb.toString();
+    }
+
     @Test
     @Order(1)
     void defaultLayout() {
@@ -185,11 +243,6 @@ public class LoggerTest {
         Path cleanExpiredFileDir = LOG_DIR.resolve("cleanExpiredFile");
         Files.createDirectories(cleanExpiredFileDir);
         int logFileRetentionDays = 7;
-        FileAppender fileAppender = new FileAppender(
-            new DefaultLayout(),
-            cleanExpiredFileDir,
-            logFileRetentionDays
-        );
         // make expired log file, here we needn't create file,because the appender will create it.
         Path unExpiredFile1 = cleanExpiredFileDir.resolve(FileAppender.dateToLogFileName(now) + ".log");
 
@@ -201,6 +254,12 @@ public class LoggerTest {
         Path expiredFile2 = cleanExpiredFileDir
             .resolve(FileAppender.dateToLogFileName(now.minusDays(logFileRetentionDays + 1)) + ".log");
         Files.createFile(expiredFile2);
+        // the appender indexes the existing log files on creation
+        FileAppender fileAppender = new FileAppender(
+            new DefaultLayout(),
+            cleanExpiredFileDir,
+            logFileRetentionDays
+        );
 
         System.out.println("before clean,log files: ");
         printDirectory(cleanExpiredFileDir);
@@ -296,7 +355,7 @@ public class LoggerTest {
         );
         boolean fileAppendExists = false;
         boolean consoleAppendExists = false;
-        List<Appender<?>> appenderList = getDeclaredFieldValue(appenderCombiner, "appenderList");
+        List<Appender<LogEvent>> appenderList = appenderCombiner.getAppenders();
         Assertions.assertNotNull(appenderList);
         for (Appender<?> appender : appenderList) {
             if (appender instanceof FileAppender) {
@@ -314,6 +373,222 @@ public class LoggerTest {
         }
     }
 
+    @Test
+    @Order(7)
+    void binaryLogFile() throws Exception {
+        Logger logger = newLogger(LoggerTest.class.getCanonicalName(), null, INFO);
+        Logger otherLogger = newLogger("日志.Other", null, INFO);
+        long now = System.currentTimeMillis();
+        List<LogEvent> events = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            events.add(new DefaultLogEvent(INFO, "main", now + i, logger,
+                "args %s %d %d %d %d %d %s %s %s %.3f %s %s %s %c %s %x %x %x %c",
+                new Object[]{ "str-" + (i % 7), i, (long) i << 40, (short) -i, (byte) i, BigInteger.valueOf(-i),
+                    BigInteger.ONE.shiftLeft(70), 1.1d / (i + 1), 1.1f, 1.1f * i, true, null, '中', 'c',
+                    Level.WARN, -i - 1, (short) -i, (byte) -i, 0x4E2D + i }));
+            events.add(new DefaultLogEvent(Level.values()[i % Level.values().length], "线程-" + (i % 3),
+                // 时间可能回退
+                now + i - 5, otherLogger, "no args 100%% 😀", null));
+        }
+        events.add(new DefaultLogEvent(Level.ERROR, "main", null, logger, "failed %s", new Object[]{ "x" },
+            new IllegalStateException("boom", new IOException("cause"))));
+        events.add(new DefaultLogEvent(null, null, now, null, "null fields", new Object[0]));
+        DefaultLayout defaultLayout = new DefaultLayout();
+        StringBuilder expected = new StringBuilder();
+        events.forEach(event -> defaultLayout.format(event, expected));
+
+        for (boolean mmap : new boolean[]{ false, true }) {
+            Path binaryDir = LOG_DIR.resolve(mmap ? "binaryMmap" : "binary");
+            FileAppender fileAppender = new FileAppender(new BinaryLayout(), binaryDir, 0, 0, 1024, 0, mmap);
+            // 按记录数滚动出多个文件，每个新文件重新定义字符串
+            ReflectUtils.setDeclaredFieldValue(fileAppender, "logFileSizeBytes", 8 * 1024);
+            fileAppender.start();
+            events.forEach(fileAppender::append);
+            fileAppender.stop();
+            while (getDeclaredField(AsyncAppender.class, "worker").get(fileAppender) != null) {
+                Thread.sleep(1);
+            }
+            try (Stream<Path> files = Files.list(binaryDir)) {
+                Assertions.assertTrue(files.count() > 1);
+            }
+            Assertions.assertEquals(expected.toString(), decodeBinaryLogs(binaryDir));
+            if (mmap) {
+                // 进程异常退出时未截断的文件末尾残留映射区预分配的0字节
+                try (Stream<Path> s = Files.list(binaryDir)) {
+                    for (Path file : (Iterable<Path>) s::iterator) {
+                        Files.write(file, new byte[4096], StandardOpenOption.APPEND);
+                    }
+                }
+                Assertions.assertEquals(expected.toString(), decodeBinaryLogs(binaryDir));
+            }
+        }
+    }
+
+    @Test
+    @Order(8)
+    void ringBuffer() throws InterruptedException {
+        Assertions.assertEquals(2, new RingBuffer<>(0).capacity());
+        Assertions.assertEquals(4, new RingBuffer<>(3).capacity());
+        Assertions.assertEquals(8, new RingBuffer<>(8).capacity());
+        // 超过2^30的容量向上取整会溢出为负数
+        for (int capacity : new int[]{ 1 << 30, (1 << 30) + 1, Integer.MAX_VALUE }) {
+            int size = ReflectUtils.getDeclaredMethod(RingBuffer.class, "sizeFor", int.class).invoke(capacity);
+            Assertions.assertEquals(1 << 30, size);
+        }
+
+        RingBuffer<Integer> queue = new RingBuffer<>(4);
+        Assertions.assertNull(queue.poll());
+        for (int round = 0; round < 3; round++) {
+            // 多轮写满、读空，覆盖序号回绕
+            for (int i = 0; i < 4; i++) {
+                Assertions.assertTrue(queue.offer(round * 4 + i));
+            }
+            Assertions.assertFalse(queue.offer(-1));
+            Assertions.assertEquals(4, queue.size());
+            Assertions.assertEquals(round * 4, queue.poll());
+            Object[] batch = new Object[2];
+            Assertions.assertEquals(2, queue.drain(batch));
+            Assertions.assertArrayEquals(new Object[]{ round * 4 + 1, round * 4 + 2 }, batch);
+            Assertions.assertEquals(round * 4 + 3, queue.poll());
+            Assertions.assertTrue(queue.isEmpty());
+        }
+
+        // 多生产者多消费者: 每个元素恰好被取出一次
+        RingBuffer<Integer> mpmc = new RingBuffer<>(64);
+        int producers = 4;
+        int perProducer = 100000;
+        LongAdder sum = new LongAdder();
+        LongAdder count = new LongAdder();
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            threads.add(new Thread(() -> {
+                for (int i = 1; i <= perProducer; i++) {
+                    while (!mpmc.offer(i)) {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+        for (int c = 0; c < 2; c++) {
+            threads.add(new Thread(() -> {
+                while (count.sum() < (long) producers * perProducer) {
+                    Integer element = mpmc.poll();
+                    if (element == null) {
+                        Thread.yield();
+                    } else {
+                        sum.add(element);
+                        count.increment();
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assertions.assertEquals((long) producers * perProducer, count.sum());
+        Assertions.assertEquals((long) producers * perProducer * (perProducer + 1) / 2, sum.sum());
+        Assertions.assertTrue(mpmc.isEmpty());
+    }
+
+    @Test
+    @Order(9)
+    void overflowPolicy() throws Exception {
+        Logger logger = newLogger(LoggerTest.class.getCanonicalName(), null, INFO);
+        PrintStream discard = new PrintStream(new ByteArrayOutputStream());
+        try {
+            // 默认不阻塞
+            Assertions.assertEquals(AsyncAppender.OverflowPolicy.COUNT_AND_DISCARD,
+                getDeclaredField(AsyncAppender.class, "overflowPolicy")
+                    .get(new ConsoleAppender(new DefaultLayout(), discard, discard)));
+
+            // 无法识别的值使用默认值，不能抛出异常
+            System.setProperty(SYSTEM_PROPERTY_LOG_QUEUE_WAIT, "parking");
+            System.setProperty(SYSTEM_PROPERTY_LOG_QUEUE_OVERFLOW, "discard-newest");
+            ConsoleAppender fallback = new ConsoleAppender(new DefaultLayout(), discard, discard);
+            Assertions.assertEquals(AsyncAppender.WaitStrategy.PARK,
+                getDeclaredField(AsyncAppender.class, "waitStrategy").get(fallback));
+            Assertions.assertEquals(AsyncAppender.OverflowPolicy.COUNT_AND_DISCARD,
+                getDeclaredField(AsyncAppender.class, "overflowPolicy").get(fallback));
+            System.clearProperty(SYSTEM_PROPERTY_LOG_QUEUE_WAIT);
+
+            System.setProperty(SYSTEM_PROPERTY_LOG_QUEUE_SIZE, "2");
+            for (AsyncAppender.OverflowPolicy policy : AsyncAppender.OverflowPolicy.values()) {
+                // drop-oldest与drop_oldest等同
+                System.setProperty(SYSTEM_PROPERTY_LOG_QUEUE_OVERFLOW, policy.name().toLowerCase().replace('_', '-'));
+                // 未启动: 没有消费线程，队列满后按策略处理(BLOCK在未启动时丢弃)
+                ConsoleAppender appender = new ConsoleAppender(new DefaultLayout(), discard, discard);
+                List<LogEvent> events = new ArrayList<>();
+                for (int i = 0; i < 4; i++) {
+                    events.add(buildLogEvent(logger, "event" + i, new Object[0]));
+                    appender.append(events.get(i));
+                }
+                RingBuffer<?> queue = (RingBuffer<?>) getDeclaredField(AsyncAppender.class, "queue").get(appender);
+                Assertions.assertEquals(2, appender.getDiscardedCount(), policy.name());
+                int first = policy == AsyncAppender.OverflowPolicy.DROP_OLDEST ? 2 : 0;
+                Assertions.assertSame(events.get(first), queue.poll(), policy.name());
+                Assertions.assertSame(events.get(first + 1), queue.poll(), policy.name());
+            }
+
+            // BLOCK: 生产者等待消费线程腾出空位，不丢弃
+            System.setProperty(SYSTEM_PROPERTY_LOG_QUEUE_OVERFLOW, AsyncAppender.OverflowPolicy.BLOCK.name());
+            CountDownLatch release = new CountDownLatch(1);
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            PrintStream blocking = new PrintStream(new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                    output.write(b);
+                }
+            });
+            ConsoleAppender appender = new ConsoleAppender(new DefaultLayout(), blocking, blocking);
+            appender.start();
+            int total = 8;
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < total; i++) {
+                    appender.append(buildLogEvent(logger, "block" + i, new Object[0]));
+                }
+            });
+            producer.start();
+            producer.join(200);
+            Assertions.assertTrue(producer.isAlive());
+            release.countDown();
+            producer.join();
+            waitingForAsyncAppend(appender);
+            appender.stop();
+            Assertions.assertEquals(0, appender.getDiscardedCount());
+            Assertions.assertEquals(total, output.toString(StandardCharsets.UTF_8.name())
+                .split(System.lineSeparator()).length);
+        } finally {
+            System.clearProperty(SYSTEM_PROPERTY_LOG_QUEUE_SIZE);
+            System.clearProperty(SYSTEM_PROPERTY_LOG_QUEUE_WAIT);
+            System.clearProperty(SYSTEM_PROPERTY_LOG_QUEUE_OVERFLOW);
+        }
+    }
+
+    private static String decodeBinaryLogs(Path binaryDir) throws IOException {
+        List<Path> files;
+        try (Stream<Path> s = Files.list(binaryDir)) {
+            // 2024-12-15.bin, 2024-12-15_1.bin, ...
+            files = s.sorted(Comparator.comparing(path -> {
+                String name = path.getFileName().toString();
+                int segment = name.indexOf('_');
+                return segment < 0 ? 0 : Integer.parseInt(name.substring(segment + 1, name.indexOf('.')));
+            })).collect(Collectors.toList());
+        }
+        StringBuilder decoded = new StringBuilder();
+        for (Path file : files) {
+            try (InputStream in = Files.newInputStream(file)) {
+                BinaryLogDecoder.decode(in, decoded);
+            }
+        }
+        return decoded.toString();
+    }
+
     private static Logger newLogger(String name, Appender<?> appender, Level level) {
         try {
             Constructor<DefaultLogger> declaredConstructor = DefaultLogger.class
@@ -326,17 +601,15 @@ public class LoggerTest {
     }
 
     private static void waitingForLoggerFactoryAsyncAppend() throws IllegalAccessException, InterruptedException {
-        List<Appender<?>> appenders = getDeclaredFieldValue(
-                getDeclaredFieldValue(LoggerFactory.class, "APPENDER_COMBINER"),
-            "appenderList"
-        );
+        AppenderCombiner<LogEvent> appenderCombiner = getDeclaredFieldValue(LoggerFactory.class, "APPENDER_COMBINER");
+        List<Appender<LogEvent>> appenders = appenderCombiner.getAppenders();
         boolean allEmpty = false;
         while (!allEmpty) {
             allEmpty = true;
             Assertions.assertNotNull(appenders);
             for (Appender<?> appender : appenders) {
                 if (appender instanceof AsyncAppender) {
-                    BlockingQueue<?> queue = (BlockingQueue<?>) getDeclaredField(AsyncAppender.class, "queue").get(appender);
+                    RingBuffer<?> queue = (RingBuffer<?>) getDeclaredField(AsyncAppender.class, "queue").get(appender);
                     if (queue != null) {
                         allEmpty &= queue.isEmpty();
                     }
@@ -349,7 +622,7 @@ public class LoggerTest {
     }
 
     private static void waitingForAsyncAppend(AsyncAppender<?> asyncAppender) throws IllegalAccessException, InterruptedException {
-        BlockingQueue<?> queue = (BlockingQueue<?>) getDeclaredField(AsyncAppender.class, "queue").get(asyncAppender);
+        RingBuffer<?> queue = (RingBuffer<?>) getDeclaredField(AsyncAppender.class, "queue").get(asyncAppender);
         if (queue != null) {
             while (!queue.isEmpty()) {
                 Thread.yield();